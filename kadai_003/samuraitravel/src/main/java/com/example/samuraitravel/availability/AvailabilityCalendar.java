@@ -0,0 +1,162 @@
+package com.example.samuraitravel.availability;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.repository.ReservationRepository;
+
+/**
+ * 民宿ごとの予約状況を「1泊 = 1ビット」で持つ空室カレンダー。
+ *
+ * 民宿ごとに基準日（起動した年の1月1日）からの経過日数をビット位置とする BitSet（long[] のワード列）を持ち、
+ * チェックイン日からチェックアウト日の前日までの宿泊日に予約済みのビットを立てる。
+ * 重複の確認は、ワード単位（64日ずつ）に予約済みのビットを探すだけで済むため、
+ * reservationsテーブルを走査する必要はない。
+ * 起動時に基準日以降の予約から構築し、以降は ReservationService の予約登録に合わせて更新する。
+ * 削除した民宿は HouseService が取り除き、取りこぼしや年の切り替わりに備えて毎日作り直す。
+ */
+@Component
+public class AvailabilityCalendar {
+	private final ReservationRepository reservationRepository;
+
+	// ビット位置 0 に対応する日（これより前の宿泊日は管理しない）
+	private volatile LocalDate baseDate = LocalDate.now().withDayOfYear(1);
+	// 民宿ID -> 予約済みの宿泊日
+	private final Map<Integer, BitSet> occupancies = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public AvailabilityCalendar(ReservationRepository reservationRepository) {
+		this.reservationRepository = reservationRepository;
+	}
+
+	/**
+	 * 基準日以降に宿泊日がある予約からカレンダーを構築する（起動時と、毎日 samuraitravel.availability.rebuild-cron の時刻に実行）。
+	 * 作り直すたびに基準日を今年の1月1日に進め、削除済みの民宿や過ぎた年の宿泊日を取り除く
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Scheduled(cron = "${samuraitravel.availability.rebuild-cron:0 10 4 * * *}")
+	public void rebuild() {
+		// 読み込みの後にコミットされた予約の reserve が、作り直す前のカレンダーに反映されて消えないよう、
+		// 読み込む前にロックを取る（reserve はコミット後に呼ばれるため、読み込みに含まれない予約はロックの解放後に反映される）
+		lock.writeLock().lock();
+		try {
+			LocalDate newBaseDate = LocalDate.now().withDayOfYear(1);
+			List<Object[]> stays = reservationRepository.findStaysCheckingOutAfter(newBaseDate);
+			baseDate = newBaseDate;
+			occupancies.clear();
+			for (Object[] stay : stays) {
+				reserveInternal((Integer) stay[0], (LocalDate) stay[1], (LocalDate) stay[2]);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 宿泊日を予約済みにする
+	 * @param houseId 民宿ID
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日（この日の夜は予約済みにしない）
+	 */
+	public void reserve(Integer houseId, LocalDate checkinDate, LocalDate checkoutDate) {
+		lock.writeLock().lock();
+		try {
+			reserveInternal(houseId, checkinDate, checkoutDate);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 削除した民宿の宿泊日を取り除く
+	 * @param houseId 民宿ID
+	 */
+	public void remove(Integer houseId) {
+		lock.writeLock().lock();
+		try {
+			occupancies.remove(houseId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 指定した期間に予約が入っていないかを確認する
+	 * @param houseId 民宿ID
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日
+	 * @return すべての宿泊日が空いている場合はtrue
+	 */
+	public boolean isAvailable(Integer houseId, LocalDate checkinDate, LocalDate checkoutDate) {
+		lock.readLock().lock();
+		try {
+			BitSet occupancy = occupancies.get(houseId);
+			if (occupancy == null) {
+				return true;
+			}
+			int from = Math.max(0, index(checkinDate));
+			int to = index(checkoutDate);
+			if (from >= to) {
+				return true;
+			}
+			// 期間内に予約済みの宿泊日が1つでもあれば重複
+			int reserved = occupancy.nextSetBit(from);
+			return reserved < 0 || reserved >= to;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 指定した期間に1泊でも予約が入っている民宿をまとめて求める。
+	 * 民宿ごとに重複確認のクエリを発行せず、カレンダーを1回走査するだけで済む。
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日
+	 * @return 予約が入っている民宿IDの集合
+	 */
+	public Set<Integer> findReservedHouseIds(LocalDate checkinDate, LocalDate checkoutDate) {
+		lock.readLock().lock();
+		try {
+			Set<Integer> houseIds = new HashSet<>();
+			int from = Math.max(0, index(checkinDate));
+			int to = index(checkoutDate);
+			if (from >= to) {
+				return houseIds;
+			}
+			for (Map.Entry<Integer, BitSet> entry : occupancies.entrySet()) {
+				int reserved = entry.getValue().nextSetBit(from);
+				if (reserved >= 0 && reserved < to) {
+					houseIds.add(entry.getKey());
+				}
+			}
+			return houseIds;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void reserveInternal(Integer houseId, LocalDate checkinDate, LocalDate checkoutDate) {
+		int from = Math.max(0, index(checkinDate));
+		int to = index(checkoutDate);
+		if (from < to) {
+			occupancies.computeIfAbsent(houseId, id -> new BitSet()).set(from, to);
+		}
+	}
+
+	// 基準日からの経過日数（基準日より前の日は負の値）
+	private int index(LocalDate date) {
+		return (int) (date.toEpochDay() - baseDate.toEpochDay());
+	}
+}
@@ -0,0 +1,43 @@
+package com.example.samuraitravel.availability;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 民宿ごとに予約の登録を直列化するためのロック。
+ *
+ * 民宿IDから決まる固定数のロック（ストライプ）のいずれかを使うため、民宿の数によらずロックの数は一定で、
+ * 別の民宿の予約はほとんどの場合並行して登録できる。同じ民宿の予約は同じロックで順番に登録されるので、
+ * 空室の確認から登録までの間に他の予約が割り込むことはない。
+ */
+@Component
+public class HouseLocks {
+	private final Lock[] stripes;
+
+	public HouseLocks(@Value("${samuraitravel.reservation.lock-stripes:64}") int stripeCount) {
+		stripes = new Lock[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * 民宿のロックを取得した状態で処理を実行する
+	 * @param houseId 民宿ID
+	 * @param action 実行する処理
+	 * @return 処理の結果
+	 */
+	public <T> T withLock(Integer houseId, Supplier<T> action) {
+		Lock lock = stripes[Math.floorMod(houseId.hashCode(), stripes.length)];
+		lock.lock();
+		try {
+			return action.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.example.samuraitravel.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * キャッシュの更新をトランザクションのコミット後に行うためのユーティリティ。
+ *
+ * コミット前に反映すると、ロールバックされた変更や、まだ他のトランザクションから見えない変更が
+ * キャッシュに残ってしまうため、トランザクション中の場合はコミット後まで遅らせる。
+ */
+public final class CacheTransactions {
+
+	private CacheTransactions() {
+	}
+
+	/**
+	 * トランザクション中の場合はコミット後に、そうでない場合はすぐに処理を実行する
+	 * @param action キャッシュを更新する処理
+	 */
+	public static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+		});
+	}
+}
@@ -0,0 +1,127 @@
+package com.example.samuraitravel.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.form.ReservationRegisterForm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 予約確認ページで作成した Stripe Checkout Session のIDを、予約内容（ユーザー・民宿・日程・人数・金額）ごとに短時間保持するキャッシュ。
+ *
+ * 予約確認ページの再読み込みやブラウザの戻る操作のたびにセッションを作り直さず、まだ支払いが済んでいないセッションを使い回す。
+ * 保持期間（samuraitravel.checkout-session-cache.ttl-seconds）はセッションの有効期限（SESSION_LIFETIME）より短くし、
+ * 期限切れのセッションを返さないようにする。支払いが完了したセッションや期限切れになったセッションは、
+ * StripeService が checkout.session.completed / checkout.session.expired の Webhook を受け取った時点で破棄する。
+ * ヒットのたびに Stripe API で状態を確認することはしないため、支払いの完了から Webhook の処理までの間に再読み込みされると、
+ * 支払い済みのセッションを返すことがある（その場合も Stripe の決済ページが支払い済みと表示するだけで、二重に請求されることはない）。
+ * ヒット・ミスの回数は samuraitravel.cache.requests（cache=checkoutSessions, result=hit/miss）として記録する。
+ */
+@Component
+public class CheckoutSessionCache {
+	/**
+	 * 作成する Checkout Session の有効期限。
+	 * Stripe はリクエストを受け付けた時点から30分未満の expires_at を拒否するため、通信の遅れや時計のずれを見込んで35分にする
+	 */
+	public static final Duration SESSION_LIFETIME = Duration.ofMinutes(35);
+	// 保持期間の上限（有効期限が切れる前に、決済ページで支払いを終えられるだけの時間を残す）
+	private static final Duration MAX_TTL = SESSION_LIFETIME.minusMinutes(15);
+
+	private static final String CACHE_NAME = "checkoutSessions";
+	// 保持するセッション数の上限（超えた場合は最も古いものから破棄する）
+	private static final int MAX_ENTRIES = 10000;
+
+	private final long ttlMillis;
+	private final Counter hitCounter;
+	private final Counter missCounter;
+
+	// 予約内容 -> セッションID と保持期限（作成順に並べる）
+	private final Map<ReservationRegisterForm, Entry> sessions = new LinkedHashMap<>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ReservationRegisterForm, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	public CheckoutSessionCache(@Value("${samuraitravel.checkout-session-cache.ttl-seconds:600}") long ttlSeconds,
+			MeterRegistry meterRegistry) {
+		if (Duration.ofSeconds(ttlSeconds).compareTo(MAX_TTL) > 0) {
+			throw new IllegalArgumentException(
+					"samuraitravel.checkout-session-cache.ttl-seconds must not exceed " + MAX_TTL.toSeconds());
+		}
+		this.ttlMillis = ttlSeconds * 1000;
+		this.hitCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.missCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "miss")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 予約内容に対応するセッションIDを返す（保持していない場合は作成して保存する）
+	 * @param reservationRegisterForm 予約内容
+	 * @param creator セッションを作成する処理（作成に失敗した場合は空文字を返す）
+	 * @return セッションID
+	 */
+	public String get(ReservationRegisterForm reservationRegisterForm, Supplier<String> creator) {
+		long now = System.currentTimeMillis();
+		synchronized (sessions) {
+			Entry entry = sessions.get(reservationRegisterForm);
+			if (entry != null && entry.expiresAt > now) {
+				hitCounter.increment();
+				return entry.sessionId;
+			}
+		}
+
+		missCounter.increment();
+		String sessionId = creator.get();
+		if (sessionId != null && !sessionId.isEmpty()) {
+			synchronized (sessions) {
+				// 作り直した場合は作成順の末尾に移す
+				sessions.remove(reservationRegisterForm);
+				sessions.put(reservationRegisterForm, new Entry(sessionId, now + ttlMillis));
+			}
+		}
+		return sessionId;
+	}
+
+	/**
+	 * 支払いが完了した、または期限切れになった予約内容のセッションを破棄する
+	 * @param reservationRegisterForm 予約内容
+	 */
+	public void evict(ReservationRegisterForm reservationRegisterForm) {
+		synchronized (sessions) {
+			sessions.remove(reservationRegisterForm);
+		}
+	}
+
+	/**
+	 * 保持期限を過ぎたセッションを破棄する（samuraitravel.checkout-session-cache.purge-interval-ms ごとに実行）
+	 */
+	@Scheduled(fixedDelayString = "${samuraitravel.checkout-session-cache.purge-interval-ms:60000}")
+	public void purgeExpired() {
+		long now = System.currentTimeMillis();
+		synchronized (sessions) {
+			// 作成順に並んでいるため、期限内のものが見つかった時点で打ち切る
+			Iterator<Entry> iterator = sessions.values().iterator();
+			while (iterator.hasNext() && iterator.next().expiresAt <= now) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private record Entry(String sessionId, long expiresAt) {
+	}
+}
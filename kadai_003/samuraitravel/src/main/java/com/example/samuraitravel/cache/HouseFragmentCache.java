@@ -0,0 +1,109 @@
+package com.example.samuraitravel.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 民宿詳細ページのうち、ユーザーによって内容が変わらない部分を描画済みのHTMLとして保持するキャッシュ。
+ *
+ * 民宿IDごとに「断片の種類・ロケール」をキーとしてHTMLを保持し（ロケールはリクエストで指定できるため、民宿ごとの件数にも上限を設ける）、
+ * 民宿やレビューの登録・更新・削除のコミット後に、その民宿の断片をまとめて破棄する。
+ * ヒット・ミスの回数は samuraitravel.cache.requests（cache=houseFragments, result=hit/miss）として記録する。
+ */
+@Component
+public class HouseFragmentCache {
+	private static final String CACHE_NAME = "houseFragments";
+	// 断片を保持する民宿数の上限（超えた場合は最も長く参照されていない民宿から破棄する）
+	private static final int MAX_HOUSES = 1000;
+	// 民宿ごとに保持する断片の数の上限（超えた場合は最も長く参照されていない断片から破棄する）
+	private static final int MAX_FRAGMENTS_PER_HOUSE = 16;
+
+	private final Counter hitCounter;
+	private final Counter missCounter;
+
+	// 民宿ID -> 断片のキー -> 描画済みのHTML（民宿単位で参照順に並べる）
+	private final Map<Integer, Map<String, String>> fragments = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Map<String, String>> eldest) {
+			return size() > MAX_HOUSES;
+		}
+	};
+	// 破棄のたびに進め、描画中に破棄された断片を保存しないようにする
+	private final AtomicLong generation = new AtomicLong();
+
+	public HouseFragmentCache(MeterRegistry meterRegistry) {
+		this.hitCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.missCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "miss")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 描画済みの断片を返す（キャッシュがない場合のみ描画して保存する）
+	 * @param houseId 民宿ID
+	 * @param key 断片の種類・ロケールを表すキー
+	 * @param renderer 断片を描画する処理
+	 * @return 描画済みのHTML
+	 */
+	public String get(Integer houseId, String key, Supplier<String> renderer) {
+		long startGeneration = generation.get();
+		synchronized (fragments) {
+			Map<String, String> houseFragments = fragments.get(houseId);
+			String html = houseFragments == null ? null : houseFragments.get(key);
+			if (html != null) {
+				hitCounter.increment();
+				return html;
+			}
+		}
+
+		missCounter.increment();
+		String html = renderer.get();
+		synchronized (fragments) {
+			if (generation.get() == startGeneration) {
+				fragments.computeIfAbsent(houseId, id -> new LinkedHashMap<>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+						return size() > MAX_FRAGMENTS_PER_HOUSE;
+					}
+				}).put(key, html);
+			}
+		}
+		return html;
+	}
+
+	/**
+	 * 民宿の断片をすべて破棄する（トランザクション中の場合はコミット後に反映）
+	 * @param houseId 民宿ID
+	 */
+	public void evict(Integer houseId) {
+		CacheTransactions.afterCommit(() -> {
+			synchronized (fragments) {
+				generation.incrementAndGet();
+				fragments.remove(houseId);
+			}
+		});
+	}
+
+	/**
+	 * すべての民宿の断片を破棄する（レビュー投稿者の名前の変更など、複数の民宿にまたがる変更のとき）
+	 */
+	public void clear() {
+		CacheTransactions.afterCommit(() -> {
+			synchronized (fragments) {
+				generation.incrementAndGet();
+				fragments.clear();
+			}
+		});
+	}
+}
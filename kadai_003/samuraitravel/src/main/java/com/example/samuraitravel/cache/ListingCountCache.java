@@ -0,0 +1,128 @@
+package com.example.samuraitravel.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 一覧ページの総件数キャッシュ。
+ *
+ * 一覧ページの COUNT(*) はページリンクの表示にしか使わないため、毎回テーブルを数え直さずに済むよう、
+ * ・絞り込みなしの一覧は、初回だけDBで数えた件数を登録・削除のたびに増減させる正確なカウンター
+ * ・絞り込みありの一覧は、条件ごとに一定時間（TTL）だけ保持する概算件数
+ * として保持する。
+ */
+@Component
+public class ListingCountCache {
+	// 絞り込みなしの一覧のキー
+	public static final String HOUSES = "houses";
+	public static final String USERS = "users";
+
+	// 絞り込みありの件数を保持する上限数
+	private static final int MAX_FILTERED_ENTRIES = 10_000;
+
+	private final long filteredTtlMillis;
+
+	private final Map<String, AtomicLong> exactCounts = new ConcurrentHashMap<>();
+	private final Map<String, FilteredCount> filteredCounts = new ConcurrentHashMap<>();
+
+	public ListingCountCache(@Value("${samuraitravel.count-cache.ttl-seconds:60}") long ttlSeconds) {
+		this.filteredTtlMillis = ttlSeconds * 1000L;
+	}
+
+	/**
+	 * レビュー一覧（民宿ごと）のキー
+	 * @param houseId 民宿ID
+	 * @return キー
+	 */
+	public static String reviews(Integer houseId) {
+		return "reviews:" + houseId;
+	}
+
+	/**
+	 * 絞り込みなしの一覧の正確な件数を返す（初回のみDBで数える）
+	 * @param key 一覧のキー
+	 * @param counter DBで件数を数える処理
+	 * @return 件数
+	 */
+	public long exact(String key, LongSupplier counter) {
+		return exactCounts.computeIfAbsent(key, k -> new AtomicLong(counter.getAsLong())).get();
+	}
+
+	/**
+	 * 行の登録に合わせて件数を1増やす（まだ数えていない一覧は次回DBで数えるため何もしない）
+	 * @param key 一覧のキー
+	 */
+	public void increment(String key) {
+		AtomicLong count = exactCounts.get(key);
+		if (count != null) {
+			count.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 行の削除に合わせて件数を1減らす
+	 * @param key 一覧のキー
+	 */
+	public void decrement(String key) {
+		AtomicLong count = exactCounts.get(key);
+		if (count != null) {
+			count.updateAndGet(value -> Math.max(0, value - 1));
+		}
+	}
+
+	/**
+	 * 正確なカウンターを破棄し、次回DBで数え直させる
+	 * @param key 一覧のキー
+	 */
+	public void evict(String key) {
+		exactCounts.remove(key);
+	}
+
+	/**
+	 * 絞り込みありの一覧の件数を返す（TTLの間はキャッシュした値を返す）
+	 * @param key 一覧と絞り込み条件を表すキー
+	 * @param counter DBで件数を数える処理
+	 * @return 件数
+	 */
+	public long filtered(String key, LongSupplier counter) {
+		long now = System.currentTimeMillis();
+		FilteredCount cached = filteredCounts.get(key);
+		if (cached != null && cached.expiresAt > now) {
+			return cached.count;
+		}
+
+		long count = counter.getAsLong();
+		if (filteredCounts.size() >= MAX_FILTERED_ENTRIES) {
+			evictExpired(now);
+		}
+		if (filteredCounts.size() < MAX_FILTERED_ENTRIES) {
+			filteredCounts.put(key, new FilteredCount(count, now + filteredTtlMillis));
+		}
+		return count;
+	}
+
+	private void evictExpired(long now) {
+		Iterator<FilteredCount> iterator = filteredCounts.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().expiresAt <= now) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static class FilteredCount {
+		private final long count;
+		private final long expiresAt;
+
+		private FilteredCount(long count, long expiresAt) {
+			this.count = count;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
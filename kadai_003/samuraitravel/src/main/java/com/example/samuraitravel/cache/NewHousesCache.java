@@ -0,0 +1,129 @@
+package com.example.samuraitravel.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.repository.HouseRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * トップページに表示する新着民宿（作成日時の新しい順に10件）のキャッシュ。
+ *
+ * 一度DBから読み込んだ一覧を保持し、以降は HouseService の登録・更新・削除に合わせて
+ * コミット後に差分で更新するため、通常時はDBへ問い合わせずにトップページを表示できる。
+ * ヒット・ミスの回数は samuraitravel.cache.requests（cache=newHouses, result=hit/miss）として記録する。
+ */
+@Component
+public class NewHousesCache {
+	private static final String CACHE_NAME = "newHouses";
+	// トップページに表示する件数（HouseRepository#findTop10ByOrderByCreatedAtDesc に合わせる）
+	private static final int SIZE = 10;
+
+	private final HouseRepository houseRepository;
+	private final Counter hitCounter;
+	private final Counter missCounter;
+
+	// 登録・更新・削除のたびに新しい Snapshot に置き換え、読み込み中だった一覧で上書きされないようにする
+	private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(null));
+
+	public NewHousesCache(HouseRepository houseRepository, MeterRegistry meterRegistry) {
+		this.houseRepository = houseRepository;
+		this.hitCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.missCounter = Counter.builder("samuraitravel.cache.requests")
+				.tag("cache", CACHE_NAME)
+				.tag("result", "miss")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * 新着民宿の一覧を返す（キャッシュがない場合のみDBから読み込む）
+	 * @return 作成日時の新しい順に並んだ民宿のリスト
+	 */
+	public List<House> get() {
+		Snapshot current = snapshot.get();
+		if (current.houses != null) {
+			hitCounter.increment();
+			return current.houses;
+		}
+
+		missCounter.increment();
+		List<House> loaded = List.copyOf(houseRepository.findTop10ByOrderByCreatedAtDesc());
+		// 読み込み中に登録・更新・削除があった場合は Snapshot が置き換わっているため保存しない
+		snapshot.compareAndSet(current, new Snapshot(loaded));
+		return loaded;
+	}
+
+	/**
+	 * 登録した民宿を一覧の先頭に追加する（トランザクション中の場合はコミット後に反映）
+	 * @param house 登録した民宿（作成日時を読み直したもの）
+	 */
+	public void added(House house) {
+		CacheTransactions.afterCommit(() -> snapshot.updateAndGet(current -> {
+			// 作成日時が読み込まれていない場合は、並び順を誤らないよう次回DBから読み込み直す
+			if (current.houses == null || house.getCreatedAt() == null) {
+				return new Snapshot(null);
+			}
+			List<House> updated = new ArrayList<>(SIZE);
+			updated.add(house);
+			updated.addAll(current.houses.subList(0, Math.min(current.houses.size(), SIZE - 1)));
+			return new Snapshot(List.copyOf(updated));
+		}));
+	}
+
+	/**
+	 * 更新した民宿が一覧に含まれていれば置き換える（トランザクション中の場合はコミット後に反映）
+	 * @param house 更新した民宿
+	 */
+	public void updated(House house) {
+		CacheTransactions.afterCommit(() -> snapshot.updateAndGet(current -> {
+			int index = current.houses == null ? -1 : indexOf(current.houses, house.getId());
+			if (index < 0) {
+				return new Snapshot(current.houses);
+			}
+			List<House> updated = new ArrayList<>(current.houses);
+			updated.set(index, house);
+			return new Snapshot(List.copyOf(updated));
+		}));
+	}
+
+	/**
+	 * 削除した民宿が一覧に含まれていれば、11件目を読み込み直すためにキャッシュを破棄する
+	 * （トランザクション中の場合はコミット後に反映）
+	 * @param houseId 削除した民宿のID
+	 */
+	public void removed(Integer houseId) {
+		CacheTransactions.afterCommit(() -> snapshot.updateAndGet(current -> {
+			if (current.houses == null || indexOf(current.houses, houseId) < 0) {
+				return new Snapshot(current.houses);
+			}
+			return new Snapshot(null);
+		}));
+	}
+
+	private static int indexOf(List<House> houses, Integer houseId) {
+		for (int i = 0; i < houses.size(); i++) {
+			if (houses.get(i).getId().equals(houseId)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// キャッシュしている一覧（未読み込み・破棄済みの場合はnull）
+	private static class Snapshot {
+		private final List<House> houses;
+
+		private Snapshot(List<House> houses) {
+			this.houses = houses;
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.example.samuraitravel.controller;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,13 +14,17 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.form.HouseEditForm;
 import com.example.samuraitravel.form.HouseRegisterForm;
+import com.example.samuraitravel.image.ImageUploadException;
+import com.example.samuraitravel.image.StreamingHouseUploadFilter;
 import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.service.HouseService;
 
@@ -27,11 +33,14 @@ import com.example.samuraitravel.service.HouseService;
 public class AdminHouseController {
 	private final HouseRepository houseRepository; // 物件リポジトリ
 	private final HouseService houseService; // 物件サービス
+	private final ListingCountCache listingCountCache; // 一覧の件数キャッシュ
 
 	// コンストラクタインジェクションで依存関係を注入
-	public AdminHouseController(HouseRepository houseRepository, HouseService houseService) {
+	public AdminHouseController(HouseRepository houseRepository, HouseService houseService,
+			ListingCountCache listingCountCache) {
 		this.houseRepository = houseRepository;
 		this.houseService = houseService;
+		this.listingCountCache = listingCountCache;
 	}
 
 	// 物件一覧ページを表示するメソッド
@@ -42,12 +51,18 @@ public class AdminHouseController {
 
 		Page<House> housePage;
 
-		// 検索キーワードが指定された場合、キーワードに一致する物件を検索
+		// データはCOUNTなしで取得し、総件数は ListingCountCache から補う
 		if (keyword != null && !keyword.isEmpty()) {
-			housePage = houseRepository.findByNameLike("%" + keyword + "%", pageable);
+			// 検索キーワードが指定された場合、キーワードに一致する物件を検索（件数はTTL付きでキャッシュ）
+			Slice<House> houseSlice = houseRepository.findSliceByNameLike("%" + keyword + "%", pageable);
+			housePage = PageableExecutionUtils.getPage(houseSlice.getContent(), pageable,
+					() -> listingCountCache.filtered(ListingCountCache.HOUSES + "?name=" + keyword,
+							() -> houseRepository.countByNameLike("%" + keyword + "%")));
 		} else {
-			// キーワードが指定されていない場合、全ての物件をページネーション付きで表示
-			housePage = houseRepository.findAll(pageable);
+			// キーワードが指定されていない場合、全ての物件をページネーション付きで表示（件数は正確なカウンター）
+			Slice<House> houseSlice = houseRepository.findSliceBy(pageable);
+			housePage = PageableExecutionUtils.getPage(houseSlice.getContent(), pageable,
+					() -> listingCountCache.exact(ListingCountCache.HOUSES, houseRepository::count));
 		}
 
 		model.addAttribute("housePage", housePage); // 物件のページデータをモデルに追加
@@ -77,15 +92,22 @@ public class AdminHouseController {
 	// 新しい物件を登録するメソッド
 	@PostMapping("/create")
 	public String create(@ModelAttribute @Validated HouseRegisterForm houseRegisterForm, BindingResult bindingResult,
+			@RequestAttribute(name = StreamingHouseUploadFilter.UPLOAD_ERROR_ATTRIBUTE, required = false) String uploadError,
 			RedirectAttributes redirectAttributes) {
+		rejectImageFile(bindingResult, uploadError);
 
 		// 入力内容にエラーがある場合、物件登録フォームに戻る
 		if (bindingResult.hasErrors()) {
 			return "admin/houses/register";
 		}
 
-		// サービスを通じて物件を登録
-		houseService.create(houseRegisterForm);
+		// サービスを通じて物件を登録（画像を保存できない場合は物件登録フォームに戻る）
+		try {
+			houseService.create(houseRegisterForm);
+		} catch (ImageUploadException e) {
+			rejectImageFile(bindingResult, e.getMessage());
+			return "admin/houses/register";
+		}
 		redirectAttributes.addFlashAttribute("successMessage", "民宿を登録しました。"); // 登録成功メッセージをフラッシュリダイレクト
 
 		return "redirect:/admin/houses"; // 物件一覧ページにリダイレクト
@@ -111,15 +133,22 @@ public class AdminHouseController {
 	// 物件情報を更新するメソッド
 	@PostMapping("/{id}/update")
 	public String update(@ModelAttribute @Validated HouseEditForm houseEditForm, BindingResult bindingResult,
+			@RequestAttribute(name = StreamingHouseUploadFilter.UPLOAD_ERROR_ATTRIBUTE, required = false) String uploadError,
 			RedirectAttributes redirectAttributes) {
+		rejectImageFile(bindingResult, uploadError);
 
 		// 入力内容にエラーがある場合、物件編集フォームに戻る
 		if (bindingResult.hasErrors()) {
 			return "admin/houses/edit";
 		}
 
-		// サービスを通じて物件情報を更新
-		houseService.update(houseEditForm);
+		// サービスを通じて物件情報を更新（画像を保存できない場合は物件編集フォームに戻る）
+		try {
+			houseService.update(houseEditForm);
+		} catch (ImageUploadException e) {
+			rejectImageFile(bindingResult, e.getMessage());
+			return "admin/houses/edit";
+		}
 		// 更新成功メッセージをフラッシュリダイレクト
 		redirectAttributes.addFlashAttribute("successMessage", "民宿情報を編集しました。"); 
 		// 物件一覧ページにリダイレクト
@@ -129,10 +158,17 @@ public class AdminHouseController {
 	// 物件を削除するメソッド
 	@PostMapping("/{id}/delete")
 	public String delete(@PathVariable(name = "id") Integer id, RedirectAttributes redirectAttributes) {
-		houseRepository.deleteById(id); // 指定されたIDの物件を削除
+		houseService.delete(id); // 指定されたIDの物件を削除
 
 		redirectAttributes.addFlashAttribute("successMessage", "民宿を削除しました。"); // 削除成功メッセージをフラッシュリダイレクト
 
 		return "redirect:/admin/houses"; // 物件一覧ページにリダイレクト
 	}
+
+	// 画像を保存できなかった理由を画像の入力欄のエラーとして表示する
+	private void rejectImageFile(BindingResult bindingResult, String message) {
+		if (message != null) {
+			bindingResult.rejectValue("imageFile", "imageUpload", message);
+		}
+	}
 }
@@ -2,7 +2,9 @@ package com.example.samuraitravel.controller;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -11,6 +13,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.User;
 import com.example.samuraitravel.repository.UserRepository;
 
@@ -18,10 +21,12 @@ import com.example.samuraitravel.repository.UserRepository;
 @RequestMapping("/admin/users")
 public class AdminUserController {
 	private final UserRepository userRepository; // ユーザーリポジトリ
+	private final ListingCountCache listingCountCache; // 一覧の件数キャッシュ
 
-	// コンストラクタインジェクションでUserRepositoryを受け取る
-	public AdminUserController(UserRepository userRepository) {
+	// コンストラクタインジェクションでUserRepositoryとListingCountCacheを受け取る
+	public AdminUserController(UserRepository userRepository, ListingCountCache listingCountCache) {
 		this.userRepository = userRepository;
+		this.listingCountCache = listingCountCache;
 	}
 
 	// ユーザー側の一覧ページを表示するメソッド
@@ -32,12 +37,19 @@ public class AdminUserController {
 
 		Page<User> userPage;
 
-		// 検索キーワードが指定されている場合、ユーザー名やフリガナを検索
+		// データはCOUNTなしで取得し、総件数は ListingCountCache から補う
 		if (keyword != null && !keyword.isEmpty()) {
-			userPage = userRepository.findByNameLikeOrFuriganaLike("%" + keyword + "%", "%" + keyword + "%", pageable);
+			// 検索キーワードが指定されている場合、ユーザー名やフリガナを検索（件数はTTL付きでキャッシュ）
+			Slice<User> userSlice = userRepository.findSliceByNameLikeOrFuriganaLike("%" + keyword + "%",
+					"%" + keyword + "%", pageable);
+			userPage = PageableExecutionUtils.getPage(userSlice.getContent(), pageable,
+					() -> listingCountCache.filtered(ListingCountCache.USERS + "?keyword=" + keyword,
+							() -> userRepository.countByNameLikeOrFuriganaLike("%" + keyword + "%", "%" + keyword + "%")));
 		} else {
-			// キーワードが指定されていない場合、すべてのユーザーをページネーションで表示
-			userPage = userRepository.findAll(pageable);
+			// キーワードが指定されていない場合、すべてのユーザーをページネーションで表示（件数は正確なカウンター）
+			Slice<User> userSlice = userRepository.findSliceBy(pageable);
+			userPage = PageableExecutionUtils.getPage(userSlice.getContent(), pageable,
+					() -> listingCountCache.exact(ListingCountCache.USERS, userRepository::count));
 		}
 
 		// モデルにユーザーのページ情報と検索キーワードを追加
@@ -1,7 +1,9 @@
 package com.example.samuraitravel.controller;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -9,11 +11,13 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.samuraitravel.entity.Favorite;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.User;
+import com.example.samuraitravel.pagination.KeysetCursor;
 import com.example.samuraitravel.repository.FavoriteRepository;
 import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.security.UserDetailsImpl;
@@ -34,11 +38,32 @@ public class FavoriteController {
 
 	@GetMapping("/favorites")
 	public String index(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
-			@PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable, Model model) {
+			@PageableDefault(page = 0, size = 10, sort = "id", direction = Direction.DESC) Pageable pageable,
+			@RequestParam(name = "cursor", required = false) String cursor, Model model) {
 		User user = userDetailsImpl.getUser();
-		Page<Favorite> favoritePage = favoriteRepository.findByUserOrderByCreatedAtDesc(user, pageable);
 
-		model.addAttribute("favoritePage", favoritePage);
+		Slice<Favorite> favoriteSlice;
+		if (cursor != null) {
+			// キーセット方式（件数取得なし）で (作成日, ID) より後ろのお気に入りを取得
+			KeysetCursor keysetCursor = KeysetCursor.decode(cursor, KeysetCursor.CREATED_AT);
+			Pageable limit = PageRequest.of(0, pageable.getPageSize());
+			favoriteSlice = keysetCursor == null
+					? favoriteRepository.findByUserOrderByCreatedAtDescIdDesc(user, limit)
+					: favoriteRepository.findByUserAfter(user, keysetCursor.getCreatedAtTimestamp(),
+							keysetCursor.getId(), limit);
+		} else {
+			favoriteSlice = favoriteRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+		}
+
+		// どちらの方式でも「次」のリンクはカーソルで次のページへ進める
+		String nextCursor = null;
+		if (favoriteSlice.hasNext()) {
+			Favorite last = favoriteSlice.getContent().get(favoriteSlice.getNumberOfElements() - 1);
+			nextCursor = KeysetCursor.of(last.getCreatedAt(), last.getId()).encode();
+		}
+		model.addAttribute("favoritePage", favoriteSlice);
+		model.addAttribute("nextCursor", nextCursor);
+		model.addAttribute("cursor", cursor);
 
 		return "favorites/index";
 	}
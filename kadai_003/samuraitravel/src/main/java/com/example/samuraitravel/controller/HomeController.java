@@ -6,23 +6,23 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import com.example.samuraitravel.cache.NewHousesCache;
 import com.example.samuraitravel.entity.House;
-import com.example.samuraitravel.repository.HouseRepository;
 
 @Controller
 public class HomeController {
-	private final HouseRepository houseRepository;
+	private final NewHousesCache newHousesCache;
 
-	// コンストラクタインジェクションでHouseRepositoryを注入
-	public HomeController(HouseRepository houseRepository) {
-		this.houseRepository = houseRepository;
+	// コンストラクタインジェクションでNewHousesCacheを注入
+	public HomeController(NewHousesCache newHousesCache) {
+		this.newHousesCache = newHousesCache;
 	}
 
 	// トップページ（ホームページ）を表示する
 	@GetMapping("/")
 	public String index(Model model) {
-		// 最新の10件の民宿情報を取得（作成日順）
-		List<House> newHouses = houseRepository.findTop10ByOrderByCreatedAtDesc();
+		// 最新の10件の民宿情報を取得（作成日順、通常はキャッシュから取得しDBには問い合わせない）
+		List<House> newHouses = newHousesCache.get();
 
 		// 取得した新しい民宿情報をモデルに追加
 		model.addAttribute("newHouses", newHouses);
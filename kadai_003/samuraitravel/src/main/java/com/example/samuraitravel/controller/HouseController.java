@@ -1,8 +1,20 @@
 package com.example.samuraitravel.controller;
 
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -12,6 +24,8 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.samuraitravel.cache.HouseFragmentCache;
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.Favorite;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.Review;
@@ -22,84 +36,98 @@ import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.repository.ReviewRepository;
 import com.example.samuraitravel.security.UserDetailsImpl;
 import com.example.samuraitravel.service.FavoriteService;
+import com.example.samuraitravel.service.HouseRatingService;
+import com.example.samuraitravel.service.HouseSearchService;
+import com.example.samuraitravel.view.FragmentRenderer;
 
 @Controller
 @RequestMapping("/houses") // /houses URLにアクセスした場合にこのコントローラーが処理を担当
 public class HouseController {
+	// 民宿詳細ページのうちキャッシュする断片のテンプレート
+	private static final String SHOW_FRAGMENTS = "houses/show-fragments";
+	// レビュー一覧の断片をキャッシュするページ（show の @PageableDefault と同じ既定の先頭ページ）
+	private static final Pageable DEFAULT_REVIEW_PAGE = PageRequest.of(0, 6, Sort.by("id"));
 
 	private final HouseRepository houseRepository; // HouseRepositoryのインジェクション
 	private final ReviewRepository reviewRepository;
 	private final FavoriteRepository favoriteRepository;
 	private final FavoriteService favoriteService;
+	private final HouseSearchService houseSearchService;
+	private final ListingCountCache listingCountCache;
+	private final HouseFragmentCache houseFragmentCache;
+	private final FragmentRenderer fragmentRenderer;
+	private final HouseRatingService houseRatingService;
 
 	// コンストラクタインジェクション
 	public HouseController(HouseRepository houseRepository, ReviewRepository reviewRepository,
-			FavoriteRepository favoriteRepository, FavoriteService favoriteService) {
+			FavoriteRepository favoriteRepository, FavoriteService favoriteService,
+			HouseSearchService houseSearchService, ListingCountCache listingCountCache,
+			HouseFragmentCache houseFragmentCache, FragmentRenderer fragmentRenderer,
+			HouseRatingService houseRatingService) {
 		this.houseRepository = houseRepository;
 		this.reviewRepository = reviewRepository;
 		this.favoriteRepository = favoriteRepository;
 		this.favoriteService = favoriteService;
+		this.houseSearchService = houseSearchService;
+		this.listingCountCache = listingCountCache;
+		this.houseFragmentCache = houseFragmentCache;
+		this.fragmentRenderer = fragmentRenderer;
+		this.houseRatingService = houseRatingService;
 
 	}
 
 	// 物件一覧を表示するためのメソッド
 	@GetMapping
 	public String index(
-			@RequestParam(name = "keyword", required = false) String keyword, // 検索キーワード（物件名や住所）
+			@RequestParam(name = "keyword", required = false) String keyword, // 検索キーワード（物件名や住所、説明）
 			@RequestParam(name = "area", required = false) String area, // エリアによる絞り込み
 			@RequestParam(name = "price", required = false) Integer price, // 価格の絞り込み
+			@RequestParam(name = "capacity", required = false) Integer capacity, // 宿泊人数の絞り込み
+			@RequestParam(name = "checkinDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkinDate, // チェックイン日
+			@RequestParam(name = "checkoutDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate checkoutDate, // チェックアウト日
 			@RequestParam(name = "order", required = false) String order, // ソート順（価格順など）
+			@RequestParam(name = "cursor", required = false) String cursor, // キーセット方式のカーソル
 			@PageableDefault(page = 0, size = 10, sort = "id", direction = Direction.ASC) Pageable pageable, // ページング設定
 			Model model) {
 
-		// ページ情報を格納するためのPage<House>オブジェクト
-		Page<House> housePage;
-
-		// 検索キーワードが入力されている場合の処理
-		if (keyword != null && !keyword.isEmpty()) {
-			// ソート順が"priceAsc"なら価格昇順で検索
-			if (order != null && order.equals("priceAsc")) {
-				housePage = houseRepository.findByNameLikeOrAddressLikeOrderByPriceAsc("%" + keyword + "%",
-						"%" + keyword + "%", pageable);
-			} else {
-				// デフォルトは新しいものから順に並べる
-				housePage = houseRepository.findByNameLikeOrAddressLikeOrderByCreatedAtDesc("%" + keyword + "%",
-						"%" + keyword + "%", pageable);
-			}
-		} else if (area != null && !area.isEmpty()) {
-			// エリアで絞り込みがある場合
-			if (order != null && order.equals("priceAsc")) {
-				// 価格昇順で並べる
-				housePage = houseRepository.findByAddressLikeOrderByPriceAsc("%" + area + "%", pageable);
-			} else {
-				// 新しいものから順に並べる
-				housePage = houseRepository.findByAddressLikeOrderByCreatedAtDesc("%" + area + "%", pageable);
-			}
-		} else if (price != null) {
-			// 価格による絞り込みがある場合
-			if (order != null && order.equals("priceAsc")) {
-				// 価格昇順で並べる
-				housePage = houseRepository.findByPriceLessThanEqualOrderByPriceAsc(price, pageable);
-			} else {
-				// 新しいものから順に並べる
-				housePage = houseRepository.findByPriceLessThanEqualOrderByCreatedAtDesc(price, pageable);
-			}
+		// 評価が高い順はキーセット方式に対応していないため、ページ番号方式で表示する
+		if ("ratingDesc".equals(order)) {
+			cursor = null;
+		}
+
+		// 宿泊期間はチェックイン日とチェックアウト日がそろい、1泊以上の場合だけ絞り込みに使う
+		if (checkinDate == null || checkoutDate == null || !checkinDate.isBefore(checkoutDate)) {
+			checkinDate = null;
+			checkoutDate = null;
+		}
+
+		if (cursor != null) {
+			// カーソルが指定された場合はキーセット方式（件数取得なし）で次のページを取得
+			Slice<House> houseSlice = houseSearchService.searchAfter(keyword, area, price, capacity, checkinDate,
+					checkoutDate, order, cursor, pageable.getPageSize());
+			model.addAttribute("housePage", houseSlice);
+			model.addAttribute("nextCursor", houseSearchService.nextCursor(houseSlice, order));
+			model.addAttribute("ratings", houseRatingService.findByHouses(houseSlice.getContent()));
 		} else {
-			// 特に条件がない場合はデフォルトで全件を取得
-			if (order != null && order.equals("priceAsc")) {
-				// 価格昇順で並べる
-				housePage = houseRepository.findAllByOrderByPriceAsc(pageable);
-			} else {
-				// 新しいものから順に並べる
-				housePage = houseRepository.findAllByOrderByCreatedAtDesc(pageable);
+			// キーワード・エリア・価格・宿泊人数・宿泊期間をまとめて1本のクエリで検索
+			Page<House> housePage = houseSearchService.search(keyword, area, price, capacity, checkinDate,
+					checkoutDate, order, pageable);
+			model.addAttribute("housePage", housePage); // ページングされた物件リスト
+			// 「次」のリンクはカーソルで次のページへ進める（評価が高い順はページ番号で進める）
+			if (!"ratingDesc".equals(order)) {
+				model.addAttribute("nextCursor", houseSearchService.nextCursor(housePage, order));
 			}
+			model.addAttribute("ratings", houseRatingService.findByHouses(housePage.getContent())); // 物件ごとの評価の集計
 		}
 
 		// モデルに情報をセット
-		model.addAttribute("housePage", housePage); // ページングされた物件リスト
+		model.addAttribute("cursor", cursor); // キーセット方式のカーソル
 		model.addAttribute("keyword", keyword); // 検索キーワード
 		model.addAttribute("area", area); // エリア
 		model.addAttribute("price", price); // 価格
+		model.addAttribute("capacity", capacity); // 宿泊人数
+		model.addAttribute("checkinDate", checkinDate); // チェックイン日
+		model.addAttribute("checkoutDate", checkoutDate); // チェックアウト日
 		model.addAttribute("order", order); // ソート順
 
 		// 物件一覧ページ（houses/index）を表示
@@ -111,7 +139,7 @@ public class HouseController {
 	public String show(@PathVariable(name = "id") Integer id,
 			@PageableDefault(page = 0, size = 6, sort = "id") Pageable pageable, Model model,
 			@AuthenticationPrincipal UserDetailsImpl userDetailsImpl) {
-		// 物件IDに基づいて物件情報を取得
+		// 物件IDに基づいて物件情報を取得（参照のみ。断片がキャッシュ済みの場合はDBから読み込まない）
 		House house = houseRepository.getReferenceById(id);
 		boolean hasUserAlreadyReviewed = false;
 		Favorite favorite = null;
@@ -123,14 +151,43 @@ public class HouseController {
 			if (isFavorite) {
 				favorite = favoriteRepository.findByHouseAndUser(house, user);
 			}
+			hasUserAlreadyReviewed = reviewRepository.findByHouseAndUser(house, user) != null;
+		}
+
+		// ユーザーによって内容が変わらない部分は描画済みのHTMLをキャッシュから取得する
+		Locale locale = LocaleContextHolder.getLocale();
+		for (String fragment : List.of("houseName", "houseImage")) {
+			model.addAttribute(fragment + "Html", houseFragmentCache.get(id, fragment + ":" + locale,
+					() -> fragmentRenderer.render(SHOW_FRAGMENTS, fragment, locale, Map.of("house", house))));
+		}
+		// 詳細情報には評価の集計（平均点・件数・星ごとの件数）も表示する
+		model.addAttribute("houseDetailHtml", houseFragmentCache.get(id, "houseDetail:" + locale, () -> {
+			Map<String, Object> variables = new HashMap<>();
+			variables.put("house", house);
+			variables.put("rating", houseRatingService.find(id));
+			return fragmentRenderer.render(SHOW_FRAGMENTS, "houseDetail", locale, variables);
+		}));
+
+		if (hasUserAlreadyReviewed) {
+			// 自分のレビューには編集・削除リンクを表示するため、レビュー一覧はその都度描画する
+			model.addAttribute("reviewPage", reviewPage(house, pageable));
+		} else if (!DEFAULT_REVIEW_PAGE.equals(pageable)) {
+			// ページや件数はリクエストで自由に指定できるため、既定の先頭ページ以外はキャッシュせずに描画する
+			model.addAttribute("reviewListHtml", fragmentRenderer.render(SHOW_FRAGMENTS, "reviewList", locale,
+					Map.of("house", house, "reviewPage", reviewPage(house, pageable))));
+		} else {
+			model.addAttribute("reviewListHtml", houseFragmentCache.get(id, "reviewList:" + locale,
+					() -> fragmentRenderer.render(SHOW_FRAGMENTS, "reviewList", locale,
+							Map.of("house", house, "reviewPage", reviewPage(house, pageable)))));
 		}
-		Page<Review> reviewPage = reviewRepository.findByHouseOrderByCreatedAtDesc(house, pageable);
 
 		// モデルに物件データをセット
 		model.addAttribute("house", house);
-		model.addAttribute("reservationInputForm", new ReservationInputForm()); // 予約フォームを表示するための準備
+		// 予約フォームを表示するための準備（予約入力のエラーで戻ってきた場合は入力内容とエラーを引き継ぐ）
+		if (!model.containsAttribute("reservationInputForm")) {
+			model.addAttribute("reservationInputForm", new ReservationInputForm());
+		}
 		model.addAttribute("hasUserAlreadyReviewed", hasUserAlreadyReviewed);
-		model.addAttribute("reviewPage", reviewPage);
 		model.addAttribute("favorite", favorite);
 		model.addAttribute("isFavorite", isFavorite);
 
@@ -138,4 +195,13 @@ public class HouseController {
 		return "houses/show";
 
 	}
+
+	// 民宿のレビューを新しい順に1ページ分取得する
+	private Page<Review> reviewPage(House house, Pageable pageable) {
+		// レビューはCOUNTなしで取得し、総件数は民宿ごとのカウンターから補う
+		Slice<Review> reviewSlice = reviewRepository.findSliceByHouseOrderByCreatedAtDesc(house, pageable);
+		return PageableExecutionUtils.getPage(reviewSlice.getContent(), pageable,
+				() -> listingCountCache.exact(ListingCountCache.reviews(house.getId()),
+						() -> reviewRepository.countByHouse(house)));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.example.samuraitravel.controller;
+
+import java.io.IOException;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import com.example.samuraitravel.image.ImageResponseWriter;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+@Controller
+public class HouseImageController {
+	private final ImageResponseWriter imageResponseWriter;
+
+	public HouseImageController(ImageResponseWriter imageResponseWriter) {
+		this.imageResponseWriter = imageResponseWriter;
+	}
+
+	// 民宿画像を配信する（キャッシュ用のヘッダー・Range ヘッダーへの対応は ImageResponseWriter が行う）
+	@GetMapping("/storage/{imageName:.+}")
+	public void show(@PathVariable(name = "imageName") String imageName, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		imageResponseWriter.write(imageName, request, response);
+	}
+}
@@ -2,8 +2,9 @@ package com.example.samuraitravel.controller;
 
 import java.time.LocalDate;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -15,6 +16,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 //import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
@@ -23,6 +25,7 @@ import com.example.samuraitravel.entity.Reservation;
 import com.example.samuraitravel.entity.User;
 import com.example.samuraitravel.form.ReservationInputForm;
 import com.example.samuraitravel.form.ReservationRegisterForm;
+import com.example.samuraitravel.pagination.KeysetCursor;
 import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.repository.ReservationRepository;
 import com.example.samuraitravel.security.UserDetailsImpl;
@@ -50,16 +53,36 @@ public class ReservationController {
 	// ユーザーの予約一覧ページを表示するメソッド
 	@GetMapping("/reservations")
 	public String index(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
-			@PageableDefault(page = 0, size = 10, sort = "id", direction = Direction.ASC) Pageable pageable,
+			@PageableDefault(page = 0, size = 10, sort = "id", direction = Direction.DESC) Pageable pageable,
+			@RequestParam(name = "cursor", required = false) String cursor,
 			Model model) {
 		// ログインしているユーザー情報を取得
 		User user = userDetailsImpl.getUser();
 
-		// ユーザーの予約履歴をページネーションを使って取得
-		Page<Reservation> reservationPage = reservationRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+		Slice<Reservation> reservationSlice;
+		if (cursor != null) {
+			// カーソルが指定された場合はキーセット方式（件数取得なし）で (作成日, ID) より後ろの予約を取得
+			KeysetCursor keysetCursor = KeysetCursor.decode(cursor, KeysetCursor.CREATED_AT);
+			Pageable limit = PageRequest.of(0, pageable.getPageSize());
+			reservationSlice = keysetCursor == null
+					? reservationRepository.findByUserOrderByCreatedAtDescIdDesc(user, limit)
+					: reservationRepository.findByUserAfter(user, keysetCursor.getCreatedAtTimestamp(),
+							keysetCursor.getId(), limit);
+		} else {
+			// ユーザーの予約履歴をページネーションを使って取得
+			reservationSlice = reservationRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+		}
 
+		// どちらの方式でも「次」のリンクはカーソルで次のページへ進める
+		String nextCursor = null;
+		if (reservationSlice.hasNext()) {
+			Reservation last = reservationSlice.getContent().get(reservationSlice.getNumberOfElements() - 1);
+			nextCursor = KeysetCursor.of(last.getCreatedAt(), last.getId()).encode();
+		}
 		// 取得した予約情報をモデルに追加
-		model.addAttribute("reservationPage", reservationPage);
+		model.addAttribute("reservationPage", reservationSlice);
+		model.addAttribute("nextCursor", nextCursor);
+		model.addAttribute("cursor", cursor);
 
 		// 予約一覧ページを返す
 		return "reservations/index";
@@ -70,8 +93,7 @@ public class ReservationController {
 	public String input(@PathVariable(name = "id") Integer id,
 			@ModelAttribute @Validated ReservationInputForm reservationInputForm,
 			BindingResult bindingResult,
-			RedirectAttributes redirectAttributes,
-			Model model) {
+			RedirectAttributes redirectAttributes) {
 		// 物件情報を取得
 		House house = houseRepository.getReferenceById(id);
 		Integer numberOfPeople = reservationInputForm.getNumberOfPeople();
@@ -87,11 +109,22 @@ public class ReservationController {
 			}
 		}
 
-		// バインディング結果にエラーがある場合、物件詳細ページに戻す
+		// 宿泊期間にすでに予約が入っていないか確認
+		if (!bindingResult.hasFieldErrors("fromCheckinDateToCheckoutDate")
+				&& !reservationService.isAvailable(id, reservationInputForm.getCheckinDate(),
+						reservationInputForm.getCheckoutDate())) {
+			FieldError fieldError = new FieldError(bindingResult.getObjectName(), "fromCheckinDateToCheckoutDate",
+					"選択した日程はすでに予約が入っています。");
+			bindingResult.addError(fieldError);
+		}
+
+		// バインディング結果にエラーがある場合、入力内容とエラーを引き継いで物件詳細ページに戻す
+		// （物件詳細ページはキャッシュした断片を組み立てるため、HouseController#show で表示する）
 		if (bindingResult.hasErrors()) {
-			model.addAttribute("house", house);
-			model.addAttribute("errorMessage", "予約内容に不備があります。");
-			return "houses/show";
+			redirectAttributes.addFlashAttribute("reservationInputForm", reservationInputForm);
+			redirectAttributes.addFlashAttribute(BindingResult.MODEL_KEY_PREFIX + "reservationInputForm", bindingResult);
+			redirectAttributes.addFlashAttribute("errorMessage", "予約内容に不備があります。");
+			return "redirect:/houses/{id}";
 		}
 
 		// エラーがなければ、予約確認ページへリダイレクト
@@ -106,6 +139,7 @@ public class ReservationController {
 			@ModelAttribute ReservationInputForm reservationInputForm,
 			@AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
 			HttpServletRequest httpServletRequest,
+			RedirectAttributes redirectAttributes,
 			Model model) {
 		// 物件情報を取得
 		House house = houseRepository.getReferenceById(id);
@@ -116,9 +150,15 @@ public class ReservationController {
 		LocalDate checkinDate = reservationInputForm.getCheckinDate();
 		LocalDate checkoutDate = reservationInputForm.getCheckoutDate();
 
+		// 入力後に他の予約が入った場合は、Stripeセッションを作成せずに物件詳細ページに戻す
+		if (!reservationService.isAvailable(id, checkinDate, checkoutDate)) {
+			redirectAttributes.addFlashAttribute("errorMessage", "選択した日程はすでに予約が入っています。");
+			return "redirect:/houses/{id}";
+		}
+
 		// 宿泊料金を計算
 		Integer price = house.getPrice();
-		Integer amount = reservationService.calculateAmount(checkinDate, checkoutDate, price);
+		Integer amount = reservationService.calculateAmount(id, checkinDate, checkoutDate, price);
 
 		// 予約確認フォームの作成
 		ReservationRegisterForm reservationRegisterForm = new ReservationRegisterForm(house.getId(), user.getId(),
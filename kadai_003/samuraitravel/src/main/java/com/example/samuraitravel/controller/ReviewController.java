@@ -1,7 +1,10 @@
 package com.example.samuraitravel.controller;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
@@ -13,13 +16,16 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.Review;
 import com.example.samuraitravel.entity.User;
 import com.example.samuraitravel.form.ReviewEditForm;
 import com.example.samuraitravel.form.ReviewPostForm;
+import com.example.samuraitravel.pagination.KeysetCursor;
 import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.repository.ReviewRepository;
 import com.example.samuraitravel.security.UserDetailsImpl;
@@ -31,20 +37,46 @@ public class ReviewController {
    private final ReviewRepository reviewRepository;
    private final HouseRepository houseRepository; 
    private final ReviewService reviewService; 
+   private final ListingCountCache listingCountCache;
    
-   public ReviewController(ReviewRepository reviewRepository, HouseRepository houseRepository, ReviewService reviewService) {        
+   public ReviewController(ReviewRepository reviewRepository, HouseRepository houseRepository, ReviewService reviewService,
+                           ListingCountCache listingCountCache) {        
        this.reviewRepository = reviewRepository;
        this.houseRepository = houseRepository;
        this.reviewService = reviewService;
+       this.listingCountCache = listingCountCache;
    }     
    
    @GetMapping
-   public String index(@PathVariable(name = "houseId") Integer houseId, @PageableDefault(page = 0, size = 10, sort = "id") Pageable pageable, Model model) {
+   public String index(@PathVariable(name = "houseId") Integer houseId, @PageableDefault(page = 0, size = 10, sort = "id", direction = Direction.DESC) Pageable pageable,
+                       @RequestParam(name = "cursor", required = false) String cursor, Model model) {
        House house = houseRepository.getReferenceById(houseId);
-       Page<Review> reviewPage = reviewRepository.findByHouseOrderByCreatedAtDesc(house, pageable);       
-                   
+
+       Slice<Review> reviewSlice;
+       if (cursor != null) {
+           // キーセット方式（件数取得なし）で (作成日, ID) より後ろのレビューを取得
+           KeysetCursor keysetCursor = KeysetCursor.decode(cursor, KeysetCursor.CREATED_AT);
+           Pageable limit = PageRequest.of(0, pageable.getPageSize());
+           reviewSlice = keysetCursor == null
+                   ? reviewRepository.findByHouseOrderByCreatedAtDescIdDesc(house, limit)
+                   : reviewRepository.findByHouseAfter(house, keysetCursor.getCreatedAtLocalDateTime(), keysetCursor.getId(), limit);
+       } else {
+           // データはCOUNTなしで取得し、総件数は民宿ごとのカウンターから補う
+           Slice<Review> contentSlice = reviewRepository.findSliceByHouseOrderByCreatedAtDesc(house, pageable);
+           reviewSlice = PageableExecutionUtils.getPage(contentSlice.getContent(), pageable,
+                   () -> listingCountCache.exact(ListingCountCache.reviews(houseId), () -> reviewRepository.countByHouse(house)));
+       }
+
+       // どちらの方式でも「次」のリンクはカーソルで次のページへ進める
+       String nextCursor = null;
+       if (reviewSlice.hasNext()) {
+           Review last = reviewSlice.getContent().get(reviewSlice.getNumberOfElements() - 1);
+           nextCursor = KeysetCursor.of(last.getCreatedAt(), last.getId()).encode();
+       }
+       model.addAttribute("reviewPage", reviewSlice);
+       model.addAttribute("nextCursor", nextCursor);
        model.addAttribute("house", house); 
-       model.addAttribute("reviewPage", reviewPage);                
+       model.addAttribute("cursor", cursor);
        
        return "reviews/index";
    }    
@@ -120,7 +152,7 @@ public class ReviewController {
    
    @PostMapping("/{reviewId}/delete")
    public String delete(@PathVariable(name = "reviewId") Integer reviewId, RedirectAttributes redirectAttributes) {        
-       reviewRepository.deleteById(reviewId);
+       reviewService.delete(reviewId);
                
        redirectAttributes.addFlashAttribute("successMessage", "レビューを削除しました。");
        
@@ -9,48 +9,65 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 
 import com.example.samuraitravel.service.StripeService;
-import com.stripe.Stripe;
+import com.example.samuraitravel.service.StripeWebhookQueueService;
+import com.example.samuraitravel.stripe.StripeGateway;
 import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
-import com.stripe.net.Webhook;
 
 @Controller
 public class StripeWebhookController {
     private final StripeService stripeService;
-
-    // Stripe APIキーを外部設定ファイルから取得
-    @Value("${stripe.api-key}")
-    private String stripeApiKey;
+    private final StripeWebhookQueueService stripeWebhookQueueService;
+    private final StripeGateway stripeGateway;
 
     // Webhookのシークレットキーを外部設定ファイルから取得
     @Value("${stripe.webhook-secret}")
     private String webhookSecret;
 
-    // コンストラクタインジェクションでStripeServiceを注入
-    public StripeWebhookController(StripeService stripeService) {
+    // trueの場合はイベントをキューに保存してすぐに応答し、予約の登録は StripeWebhookWorker が非同期に行う
+    @Value("${samuraitravel.stripe.webhook.async:true}")
+    private boolean async;
+
+    // コンストラクタインジェクションでStripeService、Webhookの受信キュー、Stripe APIのクライアントを注入
+    public StripeWebhookController(StripeService stripeService, StripeWebhookQueueService stripeWebhookQueueService,
+            StripeGateway stripeGateway) {
         this.stripeService = stripeService;
+        this.stripeWebhookQueueService = stripeWebhookQueueService;
+        this.stripeGateway = stripeGateway;
     }
 
     // Stripe Webhookのエンドポイントを受け取るメソッド
     @PostMapping("/stripe/webhook")
     public ResponseEntity<String> webhook(@RequestBody String payload, // Webhookのペイロード（イベントデータ）
             @RequestHeader("Stripe-Signature") String sigHeader) { // Stripeから送られてくる署名ヘッダー
-        // Stripe APIキーを設定
-        Stripe.apiKey = stripeApiKey;
         Event event = null;
 
         try {
             // Webhookの署名を検証してイベントデータを構築
-            event = Webhook.constructEvent(payload, sigHeader, webhookSecret);
+            event = stripeGateway.constructEvent(payload, sigHeader, webhookSecret);
         } catch (SignatureVerificationException e) {
             // 署名検証に失敗した場合、400 Bad Requestを返す
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
         }
 
         // 受け取ったイベントが "checkout.session.completed" なら、セッション完了処理を行う
-        if ("checkout.session.completed".equals(event.getType())) {
-            // セッション完了イベントを処理
-            stripeService.processSessionCompleted(event);
+        // "checkout.session.expired" なら、期限切れになったセッションを予約確認ページのキャッシュから破棄する
+        if ("checkout.session.completed".equals(event.getType())
+                || "checkout.session.expired".equals(event.getType())) {
+            if (async) {
+                // イベントをキューに保存するだけで応答する（保存済みの再送は保存しない）
+                stripeWebhookQueueService.enqueue(event, payload);
+            } else if ("checkout.session.expired".equals(event.getType())) {
+                stripeService.processSessionExpired(event);
+            } else {
+                try {
+                    // セッション完了イベントを処理
+                    stripeService.processSessionCompleted(event);
+                } catch (StripeException e) {
+                    e.printStackTrace();
+                }
+            }
         }
 
         // Webhookの処理が成功した場合、200 OKを返す
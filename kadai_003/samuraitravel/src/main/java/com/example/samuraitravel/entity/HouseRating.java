@@ -0,0 +1,47 @@
+package com.example.samuraitravel.entity;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Entity
+@Table(name = "house_ratings")
+@Data
+public class HouseRating {
+	@Id
+	@Column(name = "house_id")
+	private Integer houseId;
+
+	@Column(name = "review_count")
+	private Integer reviewCount;
+
+	@Column(name = "score_sum")
+	private Integer scoreSum;
+
+	@Column(name = "star1_count")
+	private Integer star1Count;
+
+	@Column(name = "star2_count")
+	private Integer star2Count;
+
+	@Column(name = "star3_count")
+	private Integer star3Count;
+
+	@Column(name = "star4_count")
+	private Integer star4Count;
+
+	@Column(name = "star5_count")
+	private Integer star5Count;
+
+	// review_count と score_sum から計算される生成列（レビューがない場合はnull）
+	@Column(name = "average_score", insertable = false, updatable = false)
+	private BigDecimal averageScore;
+
+	@Column(name = "updated_at", insertable = false, updatable = false)
+	private Timestamp updatedAt;
+}
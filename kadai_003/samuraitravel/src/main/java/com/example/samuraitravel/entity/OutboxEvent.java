@@ -0,0 +1,24 @@
+package com.example.samuraitravel.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+@Entity
+@Table(name = "outbox_events")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class OutboxEvent extends QueuedEvent {
+	// イベントの種類
+	public static final String RESERVATION_CREATED = "RESERVATION_CREATED";
+
+	@Column(name = "event_type")
+	private String eventType;
+
+	@Column(name = "reservation_id")
+	private Integer reservationId;
+}
@@ -0,0 +1,56 @@
+package com.example.samuraitravel.entity;
+
+import java.sql.Timestamp;
+
+import org.hibernate.annotations.ColumnDefault;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+import lombok.Data;
+
+/**
+ * DBのテーブルをキューとして使うイベント（Webhookの受信キュー、outbox）に共通の列。
+ *
+ * status: PENDING（処理待ち）/ PROCESSING（処理中）/ DONE（処理済み）/ DEAD（再試行の上限に達した）
+ */
+@MappedSuperclass
+@Data
+public abstract class QueuedEvent {
+	public static final String PENDING = "PENDING";
+	public static final String PROCESSING = "PROCESSING";
+	public static final String DONE = "DONE";
+	public static final String DEAD = "DEAD";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "id")
+	private Integer id;
+
+	// 状態・試行回数・次の試行時刻は登録時にDBの既定値を使う（テストでエンティティから作るテーブルにも既定値を付ける）
+	@ColumnDefault("'PENDING'")
+	@Column(name = "status", insertable = false)
+	private String status;
+
+	@ColumnDefault("0")
+	@Column(name = "attempts", insertable = false)
+	private Integer attempts;
+
+	@ColumnDefault("CURRENT_TIMESTAMP")
+	@Column(name = "next_attempt_at", insertable = false)
+	private Timestamp nextAttemptAt;
+
+	@Column(name = "locked_until")
+	private Timestamp lockedUntil;
+
+	@Column(name = "last_error")
+	private String lastError;
+
+	@Column(name = "created_at", insertable = false, updatable = false)
+	private Timestamp createdAt;
+
+	@Column(name = "updated_at", insertable = false, updatable = false)
+	private Timestamp updatedAt;
+}
@@ -0,0 +1,24 @@
+package com.example.samuraitravel.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+@Entity
+@Table(name = "stripe_webhook_events")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class StripeWebhookEvent extends QueuedEvent {
+	@Column(name = "event_id")
+	private String eventId;
+
+	@Column(name = "event_type")
+	private String eventType;
+
+	@Column(name = "payload")
+	private String payload;
+}
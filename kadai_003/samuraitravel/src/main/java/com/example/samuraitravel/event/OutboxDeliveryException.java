@@ -0,0 +1,24 @@
+package com.example.samuraitravel.event;
+
+import java.util.Set;
+
+/**
+ * OutboxEventHandler が渡されたイベントの一部だけを届けられなかったことを表す例外。
+ * OutboxRelay は failedEventIds のイベントだけを再試行し、残りは送信済みにする。
+ */
+public class OutboxDeliveryException extends Exception {
+	private final Set<Integer> failedEventIds;
+
+	/**
+	 * @param failedEventIds 届けられなかったイベントのID
+	 * @param cause 失敗の原因
+	 */
+	public OutboxDeliveryException(Set<Integer> failedEventIds, Throwable cause) {
+		super(failedEventIds.size() + "件のイベントを届けられませんでした", cause);
+		this.failedEventIds = Set.copyOf(failedEventIds);
+	}
+
+	public Set<Integer> getFailedEventIds() {
+		return failedEventIds;
+	}
+}
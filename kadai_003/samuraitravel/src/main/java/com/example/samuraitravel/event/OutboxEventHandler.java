@@ -0,0 +1,26 @@
+package com.example.samuraitravel.event;
+
+import java.util.List;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+
+/**
+ * OutboxRelay が送信待ちのイベントを渡す先（確認メールの送信など）。
+ *
+ * 同じ種類のイベントはまとめて handle に渡す。一部のイベントだけを届けられなかった場合は OutboxDeliveryException で
+ * そのイベントを知らせる（それ以外の例外を投げた場合は渡したイベントをすべて再試行する）。
+ * 同じイベントを重ねて受け取っても問題ないように実装する。
+ */
+public interface OutboxEventHandler {
+	/**
+	 * @param eventType イベントの種類
+	 * @return この種類のイベントを受け取る場合はtrue
+	 */
+	boolean supports(String eventType);
+
+	/**
+	 * @param outboxEvents 同じ種類のイベント
+	 * @throws OutboxDeliveryException 一部のイベントを届けられなかった場合
+	 */
+	void handle(List<OutboxEvent> outboxEvents) throws Exception;
+}
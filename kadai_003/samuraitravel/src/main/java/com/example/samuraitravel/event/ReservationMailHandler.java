@@ -0,0 +1,109 @@
+package com.example.samuraitravel.event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+import com.example.samuraitravel.entity.Reservation;
+import com.example.samuraitravel.repository.ReservationRepository;
+
+/**
+ * 予約の確定を、予約したユーザーと民宿の管理者（samuraitravel.mail.host-address。未設定の場合は送らない）にメールで知らせる。
+ *
+ * まとめて渡された予約は1回のクエリで取得し、JavaMailSender の1回の送信（1つのSMTP接続）で送る。
+ * 一部のメールだけが送れなかった場合は、MailSendException の失敗したメールから元のイベントを求めて
+ * OutboxDeliveryException で知らせ、そのイベントだけを再試行させる（ユーザーと管理者の片方だけが失敗した場合、
+ * 再試行で送れていた方にも重ねて届く）。
+ */
+@Component
+public class ReservationMailHandler implements OutboxEventHandler {
+	private final ReservationRepository reservationRepository;
+	private final JavaMailSender javaMailSender;
+	private final String senderAddress;
+	private final String hostAddress;
+
+	public ReservationMailHandler(ReservationRepository reservationRepository, JavaMailSender javaMailSender,
+			@Value("${samuraitravel.mail.sender-address:springboot.samuraitravel@example.com}") String senderAddress,
+			@Value("${samuraitravel.mail.host-address:}") String hostAddress) {
+		this.reservationRepository = reservationRepository;
+		this.javaMailSender = javaMailSender;
+		this.senderAddress = senderAddress;
+		this.hostAddress = hostAddress;
+	}
+
+	@Override
+	public boolean supports(String eventType) {
+		return OutboxEvent.RESERVATION_CREATED.equals(eventType);
+	}
+
+	@Override
+	public void handle(List<OutboxEvent> outboxEvents) throws OutboxDeliveryException {
+		// 予約ID -> その予約のイベント（同じ予約のイベントが重ねて渡されることがある）
+		Map<Integer, List<OutboxEvent>> eventsByReservationId = new HashMap<>();
+		for (OutboxEvent outboxEvent : outboxEvents) {
+			eventsByReservationId.computeIfAbsent(outboxEvent.getReservationId(), reservationId -> new ArrayList<>())
+					.add(outboxEvent);
+		}
+
+		// メール -> 元のイベント（SimpleMailMessage は内容で比較されるため、インスタンスで対応付ける）
+		Map<SimpleMailMessage, List<OutboxEvent>> eventsByMailMessage = new IdentityHashMap<>();
+		for (Reservation reservation : reservationRepository.findByIdIn(eventsByReservationId.keySet())) {
+			List<OutboxEvent> reservationEvents = eventsByReservationId.get(reservation.getId());
+			String details = "民宿名: " + reservation.getHouse().getName()
+					+ "\nチェックイン日: " + reservation.getCheckinDate()
+					+ "\nチェックアウト日: " + reservation.getCheckoutDate()
+					+ "\n宿泊人数: " + reservation.getNumberOfPeople() + "名"
+					+ "\n宿泊料金: " + reservation.getAmount() + "円";
+
+			eventsByMailMessage.put(mailMessage(reservation.getUser().getEmail(), "予約確定のお知らせ",
+					"以下の内容で予約が確定しました。\n\n" + details), reservationEvents);
+			if (!hostAddress.isEmpty()) {
+				eventsByMailMessage.put(mailMessage(hostAddress, "新しい予約のお知らせ",
+						reservation.getUser().getName() + "様から以下の予約が入りました。\n\n" + details), reservationEvents);
+			}
+		}
+		if (eventsByMailMessage.isEmpty()) {
+			return;
+		}
+
+		try {
+			javaMailSender.send(eventsByMailMessage.keySet().toArray(new SimpleMailMessage[0]));
+		} catch (MailSendException e) {
+			Set<Integer> failedEventIds = new HashSet<>();
+			for (Object failedMessage : e.getFailedMessages().keySet()) {
+				List<OutboxEvent> failedEvents = eventsByMailMessage.get(failedMessage);
+				if (failedEvents == null) {
+					// どのメールが失敗したか分からない場合は、すべてのイベントを再試行させる
+					throw e;
+				}
+				for (OutboxEvent failedEvent : failedEvents) {
+					failedEventIds.add(failedEvent.getId());
+				}
+			}
+			if (failedEventIds.isEmpty()) {
+				throw e;
+			}
+			throw new OutboxDeliveryException(failedEventIds, e);
+		}
+	}
+
+	private SimpleMailMessage mailMessage(String recipientAddress, String subject, String text) {
+		SimpleMailMessage mailMessage = new SimpleMailMessage();
+		mailMessage.setFrom(senderAddress);
+		mailMessage.setTo(recipientAddress);
+		mailMessage.setSubject(subject);
+		mailMessage.setText(text);
+		return mailMessage;
+	}
+}
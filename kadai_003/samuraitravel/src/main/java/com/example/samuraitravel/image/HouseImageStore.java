@@ -0,0 +1,219 @@
+package com.example.samuraitravel.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.samuraitravel.repository.HouseRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 民宿画像を内容のハッシュ値（SHA-256）をファイル名にして ImageStorage に保存するクラス。
+ *
+ * ハッシュ値はアップロードされた画像を固定長のバッファ（samuraitravel.image.upload.buffer-bytes）で一時ファイルに書き出しながら求めるため、
+ * 画像全体をメモリに読み込まない。一時ファイルは ImageStorage.createStagingFile で保存先に作り、保存は名前の付け替えで済ませる。
+ * 書き出しと同時に先頭のバイト列で形式（JPEG・PNG・GIF）を、読んだバイト数でサイズの上限（samuraitravel.image.upload.max-bytes）を確認する。
+ * 同じ内容の画像がすでに保存されている場合は一時ファイルを捨てて既存の画像を使う。
+ * 画像の参照数は民宿の image_name で数え、民宿の削除や画像の差し替えで参照されなくなった画像は
+ * コミット後の release と定期的な回収（collectGarbage）で縮小画像と合わせて削除する。
+ * 起動時には、jarに同梱した初期データの画像（classpath:static/storage）のうち、民宿から参照されていて保存先にないものを写す。
+ * 保存・再利用・削除した件数は samuraitravel.image.store（result=stored/deduplicated/collected）として記録する。
+ */
+@Component
+public class HouseImageStore {
+	private static final Logger logger = LoggerFactory.getLogger(HouseImageStore.class);
+
+	/** 画像を保存先に書き込めなかった場合にフォームに表示するメッセージ */
+	public static final String STORE_FAILED_MESSAGE = "民宿画像を保存できませんでした。時間をおいて再度お試しください。";
+
+	private static final String BUNDLED_IMAGES = "classpath:static/storage/*";
+
+	private final ImageStorage imageStorage;
+	private final HouseRepository houseRepository;
+	private final HouseImageVariants houseImageVariants;
+	// 保存・再利用した直後の画像を、民宿の登録がコミットされる前に削除しないための猶予
+	private final Duration gracePeriod;
+	// 猶予中の画像のファイル名 -> 保存・再利用した時刻
+	private final Map<String, Instant> recentlyStored = new ConcurrentHashMap<>();
+	private final long maxUploadBytes;
+	private final int bufferSize;
+	private final Counter storedCounter;
+	private final Counter deduplicatedCounter;
+	private final Counter collectedCounter;
+
+	public HouseImageStore(ImageStorage imageStorage, HouseRepository houseRepository,
+			HouseImageVariants houseImageVariants, MeterRegistry meterRegistry,
+			@Value("${samuraitravel.image.gc-grace-minutes:60}") long gracePeriodMinutes,
+			@Value("${samuraitravel.image.upload.max-bytes:5242880}") long maxUploadBytes,
+			@Value("${samuraitravel.image.upload.buffer-bytes:65536}") int bufferSize) {
+		this.imageStorage = imageStorage;
+		this.houseRepository = houseRepository;
+		this.houseImageVariants = houseImageVariants;
+		this.gracePeriod = Duration.ofMinutes(gracePeriodMinutes);
+		this.maxUploadBytes = maxUploadBytes;
+		this.bufferSize = bufferSize;
+		this.storedCounter = Counter.builder("samuraitravel.image.store")
+				.tag("result", "stored").register(meterRegistry);
+		this.deduplicatedCounter = Counter.builder("samuraitravel.image.store")
+				.tag("result", "deduplicated").register(meterRegistry);
+		this.collectedCounter = Counter.builder("samuraitravel.image.store")
+				.tag("result", "collected").register(meterRegistry);
+	}
+
+	/**
+	 * アップロードされた画像を保存する
+	 * @param imageFile アップロードされた画像
+	 * @return 保存した画像のファイル名（内容のハッシュ値 + 内容から判定した形式の拡張子）
+	 */
+	public String store(MultipartFile imageFile) throws IOException {
+		try (InputStream inputStream = imageFile.getInputStream()) {
+			return store(inputStream).imageName();
+		}
+	}
+
+	/**
+	 * 画像を読みながら形式とサイズを確認し、保存先の一時ファイルに書き出してから保存する
+	 * （拡張子は元のファイル名ではなく先頭のバイト列から判定した形式で決め、HTMLなどを画像として配信しない）
+	 * @param inputStream 画像の内容（閉じるのは呼び出し元）
+	 * @return 保存した画像
+	 * @throws ImageUploadException 画像の形式やサイズが受け付けられない場合
+	 */
+	public StoredImage store(InputStream inputStream) throws IOException {
+		Path staging = imageStorage.createStagingFile();
+		try {
+			MessageDigest messageDigest = sha256();
+			ValidatingImageInputStream validatingInputStream = new ValidatingImageInputStream(inputStream,
+					maxUploadBytes);
+			try (OutputStream outputStream = Files.newOutputStream(staging)) {
+				byte[] buffer = new byte[bufferSize];
+				for (int read; (read = validatingInputStream.read(buffer, 0, buffer.length)) >= 0;) {
+					messageDigest.update(buffer, 0, read);
+					outputStream.write(buffer, 0, read);
+				}
+			}
+			String imageName = HexFormat.of().formatHex(messageDigest.digest())
+					+ validatingInputStream.getExtension();
+			// 回収と競合しないよう、保存の有無を確認する前に猶予を始める
+			recentlyStored.put(imageName, Instant.now());
+			if (imageStorage.exists(imageName)) {
+				// 同じ内容の画像を再利用する
+				deduplicatedCounter.increment();
+			} else {
+				imageStorage.put(imageName, staging);
+				storedCounter.increment();
+			}
+			return new StoredImage(imageName, validatingInputStream.getCount());
+		} finally {
+			Files.deleteIfExists(staging);
+		}
+	}
+
+	/**
+	 * 参照されなくなった可能性のある画像を、どの民宿からも参照されていなければ削除する（コミット後に呼ぶ）
+	 * @param imageName 画像のファイル名
+	 */
+	public void release(String imageName) {
+		if (imageName == null || houseRepository.countByImageName(imageName) > 0) {
+			return;
+		}
+		delete(imageName);
+	}
+
+	/**
+	 * どの民宿からも参照されていない画像をまとめて削除する（samuraitravel.image.gc-interval-ms ごとに実行）
+	 */
+	@Scheduled(initialDelayString = "${samuraitravel.image.gc-interval-ms:3600000}",
+			fixedDelayString = "${samuraitravel.image.gc-interval-ms:3600000}")
+	public void collectGarbage() throws IOException {
+		Instant now = Instant.now();
+		recentlyStored.values().removeIf(storedAt -> storedAt.isBefore(now.minus(gracePeriod)));
+
+		Set<String> referencedImageNames = Set.copyOf(houseRepository.findImageNames());
+		for (String imageName : imageStorage.list()) {
+			// 縮小画像は元の画像と合わせて削除する
+			if (!ImageVariant.isVariantFile(imageName) && !referencedImageNames.contains(imageName)) {
+				delete(imageName);
+			}
+		}
+	}
+
+	/**
+	 * 起動時に、同梱の画像を保存先に写してから縮小画像の確認を始める
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() throws IOException {
+		Set<String> referencedImageNames = Set.copyOf(houseRepository.findImageNames());
+		for (Resource resource : new PathMatchingResourcePatternResolver().getResources(BUNDLED_IMAGES)) {
+			String imageName = resource.getFilename();
+			if (!referencedImageNames.contains(imageName) || imageStorage.exists(imageName)) {
+				continue;
+			}
+			Path temporary = Files.createTempFile("house-bundled-", ".tmp");
+			try {
+				try (InputStream inputStream = resource.getInputStream()) {
+					Files.copy(inputStream, temporary, StandardCopyOption.REPLACE_EXISTING);
+				}
+				imageStorage.put(imageName, temporary);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		}
+		houseImageVariants.scan();
+	}
+
+	// 猶予中でない画像とその縮小画像を削除する
+	private void delete(String imageName) {
+		Instant storedAt = recentlyStored.get(imageName);
+		if (storedAt != null && storedAt.isAfter(Instant.now().minus(gracePeriod))) {
+			return;
+		}
+		try {
+			houseImageVariants.remove(imageName);
+			imageStorage.delete(imageName);
+			recentlyStored.remove(imageName);
+			collectedCounter.increment();
+		} catch (IOException e) {
+			logger.warn("参照されていない画像を削除できませんでした。画像: {}", imageName, e);
+		}
+	}
+
+	/**
+	 * 保存した画像
+	 * @param imageName 画像のファイル名
+	 * @param size 画像のバイト数
+	 */
+	public record StoredImage(String imageName, long size) {
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package com.example.samuraitravel.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.cache.HouseFragmentCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 民宿画像から ImageVariant ごとの縮小画像を生成し、テンプレートに表示する画像のパスを返すクラス。
+ *
+ * 生成はリクエストのスレッドではなく専用のスレッド（samuraitravel.image.processing-threads）で行う。
+ * すべての種類の生成が終わるまでは元の画像のパスを返すため、生成中でも画像は表示される。
+ * 起動時には保存先（ImageStorage）を確認し、縮小画像がない画像（初期データなど）の生成を始める。
+ * 生成にかかった時間は samuraitravel.image.processing として記録する。
+ * 画素数が上限（samuraitravel.image.max-pixels）を超える画像は、ヘッダーの幅と高さを確認した時点で展開せずに諦める
+ * （ファイルは小さくても展開すると巨大になる画像で、メモリを使い果たさないようにする）。
+ */
+@Component
+public class HouseImageVariants {
+	private static final Logger logger = LoggerFactory.getLogger(HouseImageVariants.class);
+
+	/** 民宿画像を配信するパス */
+	public static final String STORAGE_PATH = "/storage/";
+	private static final float JPEG_QUALITY = 0.82f;
+
+	private final ImageStorage imageStorage;
+	private final HouseFragmentCache houseFragmentCache;
+	private final ExecutorService executorService;
+	private final Timer processingTimer;
+	private final long maxPixels;
+	// すべての種類の縮小画像を生成済みの画像のファイル名
+	private final Set<String> readyImageNames = ConcurrentHashMap.newKeySet();
+
+	public HouseImageVariants(ImageStorage imageStorage, HouseFragmentCache houseFragmentCache,
+			MeterRegistry meterRegistry,
+			@Value("${samuraitravel.image.processing-threads:2}") int processingThreads,
+			@Value("${samuraitravel.image.max-pixels:25000000}") long maxPixels) {
+		this.imageStorage = imageStorage;
+		this.houseFragmentCache = houseFragmentCache;
+		this.executorService = Executors.newFixedThreadPool(processingThreads);
+		this.processingTimer = Timer.builder("samuraitravel.image.processing").register(meterRegistry);
+		this.maxPixels = maxPixels;
+	}
+
+	/**
+	 * テンプレートに表示する画像のパスを返す（縮小画像を生成済みでない場合は元の画像）
+	 * @param imageName 元の画像のファイル名
+	 * @param imageVariant 画像の種類
+	 * @return 画像のパス
+	 */
+	public String path(String imageName, ImageVariant imageVariant) {
+		if (readyImageNames.contains(imageName)) {
+			return STORAGE_PATH + imageVariant.fileName(imageName);
+		}
+		return STORAGE_PATH + imageName;
+	}
+
+	/**
+	 * 縮小画像の生成を始める（生成が終わったら民宿詳細ページの描画済みの断片を破棄する）
+	 * @param houseId 民宿ID（起動時の生成では null）
+	 * @param imageName 元の画像のファイル名
+	 */
+	public void generate(Integer houseId, String imageName) {
+		// 同じ内容の画像を再利用した場合は生成済み
+		if (readyImageNames.contains(imageName)) {
+			if (houseId != null) {
+				houseFragmentCache.evict(houseId);
+			}
+			return;
+		}
+		executorService.execute(() -> {
+			try {
+				processingTimer.recordCallable(() -> {
+					writeVariants(imageName);
+					return null;
+				});
+				readyImageNames.add(imageName);
+				if (houseId != null) {
+					houseFragmentCache.evict(houseId);
+				} else {
+					houseFragmentCache.clear();
+				}
+			} catch (Exception e) {
+				logger.warn("縮小画像を生成できませんでした。画像: {}", imageName, e);
+			}
+		});
+	}
+
+	/**
+	 * 元の画像を削除する前に、縮小画像を削除する
+	 * @param imageName 元の画像のファイル名
+	 */
+	public void remove(String imageName) throws IOException {
+		readyImageNames.remove(imageName);
+		for (ImageVariant imageVariant : ImageVariant.values()) {
+			imageStorage.delete(imageVariant.fileName(imageName));
+		}
+	}
+
+	/**
+	 * 縮小画像を生成済みの画像を登録し、生成していない画像の生成を始める（起動時に HouseImageStore から呼ぶ）
+	 */
+	public void scan() throws IOException {
+		Set<String> storedImageNames = Set.copyOf(imageStorage.list());
+		for (String imageName : storedImageNames) {
+			if (ImageVariant.isVariantFile(imageName)) {
+				continue;
+			}
+			if (hasAllVariants(imageName, storedImageNames)) {
+				readyImageNames.add(imageName);
+			} else {
+				generate(null, imageName);
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executorService.shutdown();
+	}
+
+	private static boolean hasAllVariants(String imageName, Set<String> storedImageNames) {
+		for (ImageVariant imageVariant : ImageVariant.values()) {
+			if (!storedImageNames.contains(imageVariant.fileName(imageName))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// 元の画像を読み込み、種類ごとの幅に縮小してプログレッシブJPEGで保存する
+	private void writeVariants(String imageName) throws IOException {
+		BufferedImage original = read(imageName);
+		for (ImageVariant imageVariant : ImageVariant.values()) {
+			BufferedImage resized = resize(original, imageVariant.getWidth());
+			// 一時ファイルに書き終えてから保存先に置くため、書き込み途中の画像は配信されない
+			Path temporary = Files.createTempFile("house-image-", ".jpg");
+			try {
+				writeProgressiveJpeg(resized, temporary);
+				imageStorage.put(imageVariant.fileName(imageName), temporary);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		}
+	}
+
+	// ヘッダーの幅と高さで画素数を確認してから画像を展開する
+	private BufferedImage read(String imageName) throws IOException {
+		try (InputStream inputStream = imageStorage.open(imageName);
+				ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+			Iterator<ImageReader> imageReaders = imageInputStream == null ? null : ImageIO.getImageReaders(imageInputStream);
+			if (imageReaders == null || !imageReaders.hasNext()) {
+				throw new IOException("対応していない画像形式です: " + imageName);
+			}
+			ImageReader imageReader = imageReaders.next();
+			try {
+				imageReader.setInput(imageInputStream, true, true);
+				long pixels = (long) imageReader.getWidth(0) * imageReader.getHeight(0);
+				if (pixels > maxPixels) {
+					throw new IOException("画素数が上限を超えています: " + imageName + " (" + imageReader.getWidth(0) + "x"
+							+ imageReader.getHeight(0) + ")");
+				}
+				return imageReader.read(0);
+			} finally {
+				imageReader.dispose();
+			}
+		}
+	}
+
+	// 縦横比を保って指定した幅に縮小する（半分ずつ縮小してから目的の幅に合わせ、大きな縮小でもギザギザにしない）
+	private static BufferedImage resize(BufferedImage original, int width) {
+		int targetWidth = Math.min(width, original.getWidth());
+		BufferedImage current = toRgb(original);
+		while (current.getWidth() / 2 >= targetWidth) {
+			current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+		}
+		if (current.getWidth() != targetWidth) {
+			int targetHeight = Math.max(1, Math.round((float) original.getHeight() * targetWidth / original.getWidth()));
+			current = draw(current, targetWidth, targetHeight);
+		}
+		return current;
+	}
+
+	// JPEGは透過を扱えないため、白い背景に描いたRGBの画像にする
+	private static BufferedImage toRgb(BufferedImage image) {
+		if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+			return image;
+		}
+		return draw(image, image.getWidth(), image.getHeight());
+	}
+
+	private static BufferedImage draw(BufferedImage source, int width, int height) {
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = target.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.setColor(Color.WHITE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return target;
+	}
+
+	private static void writeProgressiveJpeg(BufferedImage image, Path path) throws IOException {
+		ImageWriter imageWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam imageWriteParam = imageWriter.getDefaultWriteParam();
+		imageWriteParam.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		imageWriteParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		imageWriteParam.setCompressionQuality(JPEG_QUALITY);
+		try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(path.toFile())) {
+			imageWriter.setOutput(imageOutputStream);
+			imageWriter.write(null, new IIOImage(image, null, null), imageWriteParam);
+		} finally {
+			imageWriter.dispose();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package com.example.samuraitravel.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 保存した民宿画像をHTTPレスポンスに書き出すクラス。
+ *
+ * ローカルのファイルは、Tomcatのsendfileが使える場合はファイル名だけを渡してカーネルから直接送り、
+ * 使えない場合も FileChannel.transferTo でアプリケーションのバッファを介さずに送る。
+ * Range ヘッダー（1つの範囲のみ）、強いETagと If-None-Match / If-Range に対応する。
+ * 内容のハッシュ値をファイル名にした画像（とその縮小画像）は内容が変わらないため1年間 immutable としてキャッシュさせ、
+ * それ以外（初期データの画像など）は毎回ETagで再検証させる。
+ * 応答の件数は samuraitravel.image.responses（status=200/206/304/416）として記録する。
+ */
+@Component
+public class ImageResponseWriter {
+	// 内容のハッシュ値（SHA-256）で始まるファイル名
+	private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}(\\..+)?");
+	private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+	private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+	// これより小さいファイルは sendfile を使わずに送る（Tomcatの DefaultServlet の既定値と同じ）
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private final ImageStorage imageStorage;
+	private final MeterRegistry meterRegistry;
+	// ファイル名がハッシュ値でない画像のETag（ファイル名・サイズ・更新日時が同じ間は使い回す）
+	private final Map<String, ComputedETag> computedETags = new ConcurrentHashMap<>();
+
+	public ImageResponseWriter(ImageStorage imageStorage, MeterRegistry meterRegistry) {
+		this.imageStorage = imageStorage;
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * 画像をレスポンスに書き出す（画像がない場合は404）
+	 * @param imageName 画像のファイル名
+	 * @param request リクエスト
+	 * @param response レスポンス
+	 */
+	public void write(String imageName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Resource resource = ImageStorage.isValidName(imageName) ? imageStorage.resource(imageName) : null;
+		if (resource == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		Path localPath = imageStorage.localPath(imageName);
+		long length = resource.contentLength();
+		boolean contentAddressed = CONTENT_ADDRESSED_NAME.matcher(imageName).matches();
+		String eTag = contentAddressed ? quote(stripExtension(imageName)) : computedETag(imageName, resource, localPath);
+
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		response.setHeader(HttpHeaders.CACHE_CONTROL, (contentAddressed ? IMMUTABLE : REVALIDATE).getHeaderValue());
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+			respond(response, HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setContentType(
+				MediaTypeFactory.getMediaType(imageName).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+		long start = 0;
+		long end = length - 1;
+		String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		// If-Range のETagが一致しない（画像が変わった）場合は全体を返す
+		if (rangeHeader != null && (ifRange == null || ifRange.equals(eTag))) {
+			try {
+				List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+				// 複数の範囲は指定されても全体を返す（民宿画像では使われない）
+				if (ranges.size() == 1) {
+					start = ranges.get(0).getRangeStart(length);
+					end = ranges.get(0).getRangeEnd(length);
+					if (start >= length || start > end) {
+						throw new IllegalArgumentException("Range not satisfiable: " + rangeHeader);
+					}
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+					respond(response, HttpServletResponse.SC_PARTIAL_CONTENT);
+				} else {
+					respond(response, HttpServletResponse.SC_OK);
+				}
+			} catch (IllegalArgumentException e) {
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+				respond(response, HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+		} else {
+			respond(response, HttpServletResponse.SC_OK);
+		}
+
+		long count = end - start + 1;
+		response.setContentLengthLong(count);
+		if ("HEAD".equals(request.getMethod()) || count <= 0) {
+			return;
+		}
+		if (localPath != null) {
+			if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+				// 本文はTomcatがsendfileで送る（終了位置は含まない）
+				request.setAttribute(SENDFILE_FILENAME, localPath.toAbsolutePath().toString());
+				request.setAttribute(SENDFILE_START, start);
+				request.setAttribute(SENDFILE_END, end + 1);
+				return;
+			}
+			transfer(localPath, start, count, response.getOutputStream());
+		} else {
+			try (InputStream inputStream = resource.getInputStream()) {
+				inputStream.skipNBytes(start);
+				copy(inputStream, count, response.getOutputStream());
+			}
+		}
+	}
+
+	private void respond(HttpServletResponse response, int status) {
+		response.setStatus(status);
+		meterRegistry.counter("samuraitravel.image.responses", "status", String.valueOf(status)).increment();
+	}
+
+	// ファイルの指定した範囲を FileChannel.transferTo で送る
+	private static void transfer(Path path, long start, long count, OutputStream outputStream) throws IOException {
+		WritableByteChannel target = Channels.newChannel(outputStream);
+		try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long transferred = fileChannel.transferTo(position, remaining, target);
+				if (transferred <= 0) {
+					break;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+		}
+		outputStream.flush();
+	}
+
+	private static void copy(InputStream inputStream, long count, OutputStream outputStream) throws IOException {
+		byte[] buffer = new byte[8192];
+		long remaining = count;
+		while (remaining > 0) {
+			int read = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read < 0) {
+				break;
+			}
+			outputStream.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+	// If-None-Match のいずれかのETagが一致するか（弱い比較）
+	private static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String candidate : ifNoneMatch.split(",")) {
+			String trimmed = candidate.trim();
+			if (trimmed.equals("*") || (trimmed.startsWith("W/") ? trimmed.substring(2) : trimmed).equals(eTag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// 内容のSHA-256からETagを求める（同じファイル名・サイズ・更新日時の間は計算し直さない）
+	private String computedETag(String imageName, Resource resource, Path localPath) throws IOException {
+		long length = resource.contentLength();
+		long lastModified = localPath != null ? Files.getLastModifiedTime(localPath).toMillis() : -1;
+		ComputedETag computed = computedETags.get(imageName);
+		if (computed != null && computed.length() == length && computed.lastModified() == lastModified) {
+			return computed.eTag();
+		}
+		MessageDigest messageDigest = sha256();
+		try (InputStream inputStream = new DigestInputStream(resource.getInputStream(), messageDigest)) {
+			inputStream.transferTo(OutputStream.nullOutputStream());
+		}
+		String eTag = quote(HexFormat.of().formatHex(messageDigest.digest()));
+		computedETags.put(imageName, new ComputedETag(length, lastModified, eTag));
+		return eTag;
+	}
+
+	private static String stripExtension(String imageName) {
+		return imageName.substring(0, imageName.lastIndexOf('.') > 0 ? imageName.lastIndexOf('.') : imageName.length());
+	}
+
+	private static String quote(String value) {
+		return "\"" + value + "\"";
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private record ComputedETag(long length, long lastModified, String eTag) {
+	}
+}
@@ -0,0 +1,80 @@
+package com.example.samuraitravel.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * 民宿画像（元の画像と縮小画像）の保存先。
+ *
+ * samuraitravel.image.storage.type で実装を選ぶ（local: ローカルのディレクトリ、s3: S3互換のオブジェクトストレージ）。
+ * 画像はファイル名だけで扱い、ディレクトリの区切りを含む名前や "." で始まる名前は受け付けない。
+ */
+public interface ImageStorage {
+	/**
+	 * 一時ファイルに書き出した画像を保存する（同じ名前の画像がある場合は置き換える）
+	 * @param imageName 画像のファイル名
+	 * @param source 一時ファイル（保存後に呼び出し元が削除する。移動済みの場合は何もしない）
+	 */
+	void put(String imageName, Path source) throws IOException;
+
+	/**
+	 * @param imageName 画像のファイル名
+	 * @return 保存されている場合はtrue
+	 */
+	boolean exists(String imageName) throws IOException;
+
+	/**
+	 * @param imageName 画像のファイル名
+	 * @return 画像の内容
+	 */
+	InputStream open(String imageName) throws IOException;
+
+	/**
+	 * 配信に使うリソースを返す
+	 * @param imageName 画像のファイル名
+	 * @return リソース（保存されていない場合は null）
+	 */
+	Resource resource(String imageName) throws IOException;
+
+	/**
+	 * @param imageName 画像のファイル名（保存されていない場合は何もしない）
+	 */
+	void delete(String imageName) throws IOException;
+
+	/**
+	 * @return 保存されているすべての画像のファイル名
+	 */
+	List<String> list() throws IOException;
+
+	/**
+	 * ローカルのファイルとして保存している場合はそのパスを返す（配信時に FileChannel から直接送るため）
+	 * @param imageName 画像のファイル名
+	 * @return ファイルのパス（ローカルのファイルでない場合は null）
+	 */
+	default Path localPath(String imageName) {
+		return null;
+	}
+
+	/**
+	 * put に渡す一時ファイルを作成する（保存先と同じ場所に作れる場合は、put で名前を付け替えるだけで済む）
+	 * @return 空の一時ファイル（呼び出し元が削除する）
+	 */
+	default Path createStagingFile() throws IOException {
+		return Files.createTempFile("house-upload-", ".tmp");
+	}
+
+	/**
+	 * 保存先で扱える画像のファイル名か
+	 * @param imageName 画像のファイル名
+	 * @return 扱える場合はtrue
+	 */
+	static boolean isValidName(String imageName) {
+		return imageName != null && !imageName.isEmpty() && !imageName.startsWith(".")
+				&& imageName.indexOf('/') < 0 && imageName.indexOf('\\') < 0;
+	}
+}
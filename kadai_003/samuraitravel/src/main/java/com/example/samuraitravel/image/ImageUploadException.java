@@ -0,0 +1,14 @@
+package com.example.samuraitravel.image;
+
+/**
+ * アップロードされた民宿画像を保存できなかったことを表す例外（メッセージはそのまま入力フォームに表示する）。
+ */
+public class ImageUploadException extends RuntimeException {
+	public ImageUploadException(String message) {
+		super(message);
+	}
+
+	public ImageUploadException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.samuraitravel.image;
+
+/**
+ * アップロードされた民宿画像から生成する、幅を固定した画像の種類。
+ *
+ * 生成した画像はプログレッシブJPEGで保存し、元の画像より幅が狭い場合は拡大しない。
+ */
+public enum ImageVariant {
+	/** 一覧・トップページのカード用 */
+	THUMBNAIL(320),
+	/** 検索結果・お気に入り一覧の横長カード用 */
+	CARD(640),
+	/** 民宿詳細ページ用 */
+	DETAIL(1280);
+
+	private final int width;
+
+	ImageVariant(int width) {
+		this.width = width;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 元の画像のファイル名から、この種類の画像のファイル名を求める（例: house01.jpg -> house01.card.jpg）
+	 * @param imageName 元の画像のファイル名
+	 * @return この種類の画像のファイル名
+	 */
+	public String fileName(String imageName) {
+		int extensionIndex = imageName.lastIndexOf('.');
+		String baseName = extensionIndex > 0 ? imageName.substring(0, extensionIndex) : imageName;
+		return baseName + "." + name().toLowerCase() + ".jpg";
+	}
+
+	/**
+	 * @param fileName ファイル名
+	 * @return 生成した画像のファイル名の場合はtrue
+	 */
+	public static boolean isVariantFile(String fileName) {
+		for (ImageVariant imageVariant : values()) {
+			if (fileName.endsWith("." + imageVariant.name().toLowerCase() + ".jpg")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
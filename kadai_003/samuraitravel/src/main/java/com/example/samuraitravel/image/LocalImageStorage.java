@@ -0,0 +1,110 @@
+package com.example.samuraitravel.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * ローカルのディレクトリ（samuraitravel.image.storage.root）に民宿画像を保存する ImageStorage。
+ *
+ * 保存先はクラスパスの外に置き、パッケージしたjarから起動しても書き込めるようにする。
+ * 画像は書き込みが終わってから同じディレクトリ内で名前を付け替えるため、書き込み途中のファイルは配信されない。
+ */
+@Component
+@ConditionalOnProperty(name = "samuraitravel.image.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalImageStorage implements ImageStorage {
+	private final Path root;
+
+	public LocalImageStorage(@Value("${samuraitravel.image.storage.root:storage}") String root) throws IOException {
+		this.root = Paths.get(root).toAbsolutePath().normalize();
+		Files.createDirectories(this.root);
+	}
+
+	@Override
+	public void put(String imageName, Path source) throws IOException {
+		Path target = resolve(imageName);
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			// 一時ファイルが別のファイルシステムにある場合は、保存先のディレクトリにコピーしてから付け替える
+			// （同じ画像を同時に保存しても重ならないよう、一時ファイルの名前は毎回変える）
+			Path temporary = Files.createTempFile(root, "." + imageName + "-", ".tmp");
+			try {
+				Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		}
+	}
+
+	@Override
+	public Path createStagingFile() throws IOException {
+		// 保存先のディレクトリに作り、put でコピーせずに付け替える（"." で始まる名前は list や配信の対象にならない）
+		return Files.createFile(root.resolve(".upload-" + UUID.randomUUID() + ".tmp"));
+	}
+
+	@Override
+	public boolean exists(String imageName) {
+		return Files.isRegularFile(resolve(imageName));
+	}
+
+	@Override
+	public InputStream open(String imageName) throws IOException {
+		return Files.newInputStream(resolve(imageName));
+	}
+
+	@Override
+	public Resource resource(String imageName) {
+		Path path = resolve(imageName);
+		return Files.isRegularFile(path) ? new FileSystemResource(path) : null;
+	}
+
+	@Override
+	public void delete(String imageName) throws IOException {
+		Files.deleteIfExists(resolve(imageName));
+	}
+
+	@Override
+	public List<String> list() throws IOException {
+		List<String> imageNames = new ArrayList<>();
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(root)) {
+			for (Path path : paths) {
+				String imageName = path.getFileName().toString();
+				// 書き込み途中の一時ファイルは対象外
+				if (ImageStorage.isValidName(imageName) && Files.isRegularFile(path)) {
+					imageNames.add(imageName);
+				}
+			}
+		}
+		return imageNames;
+	}
+
+	@Override
+	public Path localPath(String imageName) {
+		Path path = resolve(imageName);
+		return Files.isRegularFile(path) ? path : null;
+	}
+
+	// 画像のファイル名から保存先のパスを求める
+	private Path resolve(String imageName) {
+		if (!ImageStorage.isValidName(imageName)) {
+			throw new IllegalArgumentException("Invalid image name: " + imageName);
+		}
+		return root.resolve(imageName);
+	}
+}
@@ -0,0 +1,286 @@
+package com.example.samuraitravel.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * S3互換のオブジェクトストレージ（AWS S3、MinIO など）のバケットに民宿画像を保存する ImageStorage。
+ *
+ * SDKは使わず、パス形式のURL（{endpoint}/{bucket}/{prefix}{画像のファイル名}）に署名バージョン4で署名した
+ * リクエストを java.net.http.HttpClient で送る。本文は署名せず（UNSIGNED-PAYLOAD）、一時ファイルからそのまま送る。
+ */
+@Component
+@ConditionalOnProperty(name = "samuraitravel.image.storage.type", havingValue = "s3")
+public class S3ImageStorage implements ImageStorage {
+	private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+	private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+	private final URI endpoint;
+	private final String region;
+	private final String bucket;
+	private final String prefix;
+	private final String accessKey;
+	private final String secretKey;
+	private final HttpClient httpClient;
+
+	public S3ImageStorage(@Value("${samuraitravel.image.storage.s3.endpoint}") String endpoint,
+			@Value("${samuraitravel.image.storage.s3.region:us-east-1}") String region,
+			@Value("${samuraitravel.image.storage.s3.bucket}") String bucket,
+			@Value("${samuraitravel.image.storage.s3.prefix:}") String prefix,
+			@Value("${samuraitravel.image.storage.s3.access-key}") String accessKey,
+			@Value("${samuraitravel.image.storage.s3.secret-key}") String secretKey) {
+		this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+		this.region = region;
+		this.bucket = bucket;
+		this.prefix = prefix;
+		this.accessKey = accessKey;
+		this.secretKey = secretKey;
+		this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	}
+
+	@Override
+	public void put(String imageName, Path source) throws IOException {
+		HttpResponse<byte[]> response = send("PUT", key(imageName), Map.of(),
+				HttpRequest.BodyPublishers.ofFile(source), HttpResponse.BodyHandlers.ofByteArray());
+		check(response, "PUT " + imageName);
+	}
+
+	@Override
+	public boolean exists(String imageName) throws IOException {
+		return head(imageName) != null;
+	}
+
+	@Override
+	public InputStream open(String imageName) throws IOException {
+		HttpResponse<InputStream> response = send("GET", key(imageName), Map.of(),
+				HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+		if (response.statusCode() != 200) {
+			response.body().close();
+			throw new IOException("GET " + imageName + " failed: HTTP " + response.statusCode());
+		}
+		return response.body();
+	}
+
+	@Override
+	public Resource resource(String imageName) throws IOException {
+		HttpResponse<Void> head = head(imageName);
+		if (head == null) {
+			return null;
+		}
+		long contentLength = head.headers().firstValueAsLong("Content-Length").orElse(-1);
+		return new AbstractResource() {
+			@Override
+			public String getDescription() {
+				return "S3 object [" + bucket + "/" + key(imageName) + "]";
+			}
+
+			@Override
+			public String getFilename() {
+				return imageName;
+			}
+
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return open(imageName);
+			}
+
+			@Override
+			public long contentLength() {
+				return contentLength;
+			}
+
+			@Override
+			public boolean exists() {
+				return true;
+			}
+		};
+	}
+
+	@Override
+	public void delete(String imageName) throws IOException {
+		HttpResponse<byte[]> response = send("DELETE", key(imageName), Map.of(),
+				HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofByteArray());
+		if (response.statusCode() != 404) {
+			check(response, "DELETE " + imageName);
+		}
+	}
+
+	@Override
+	public List<String> list() throws IOException {
+		List<String> imageNames = new ArrayList<>();
+		String continuationToken = null;
+		do {
+			Map<String, String> query = new TreeMap<>();
+			query.put("list-type", "2");
+			query.put("prefix", prefix);
+			if (continuationToken != null) {
+				query.put("continuation-token", continuationToken);
+			}
+			HttpResponse<byte[]> response = send("GET", "", query, HttpRequest.BodyPublishers.noBody(),
+					HttpResponse.BodyHandlers.ofByteArray());
+			check(response, "LIST " + prefix);
+
+			Document document = parse(response.body());
+			NodeList keys = document.getElementsByTagName("Key");
+			for (int i = 0; i < keys.getLength(); i++) {
+				String imageName = keys.item(i).getTextContent().substring(prefix.length());
+				if (ImageStorage.isValidName(imageName)) {
+					imageNames.add(imageName);
+				}
+			}
+			continuationToken = "true".equals(text(document, "IsTruncated"))
+					? text(document, "NextContinuationToken")
+					: null;
+		} while (continuationToken != null);
+		return imageNames;
+	}
+
+	// オブジェクトのメタデータを取得する（ない場合は null）
+	private HttpResponse<Void> head(String imageName) throws IOException {
+		HttpResponse<Void> response = send("HEAD", key(imageName), Map.of(), HttpRequest.BodyPublishers.noBody(),
+				HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() == 404) {
+			return null;
+		}
+		if (response.statusCode() != 200) {
+			throw new IOException("HEAD " + imageName + " failed: HTTP " + response.statusCode());
+		}
+		return response;
+	}
+
+	private String key(String imageName) {
+		if (!ImageStorage.isValidName(imageName)) {
+			throw new IllegalArgumentException("Invalid image name: " + imageName);
+		}
+		return prefix + imageName;
+	}
+
+	// 署名バージョン4で署名したリクエストを送る
+	private <T> HttpResponse<T> send(String method, String key, Map<String, String> query,
+			HttpRequest.BodyPublisher bodyPublisher, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+		ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+		String amzDate = AMZ_DATE.format(now);
+		String dateStamp = amzDate.substring(0, 8);
+		String host = endpoint.getPort() == -1 ? endpoint.getHost() : endpoint.getHost() + ":" + endpoint.getPort();
+
+		String canonicalUri = endpoint.getRawPath() + "/" + encode(bucket) + (key.isEmpty() ? "" : "/" + encodePath(key));
+		StringBuilder canonicalQuery = new StringBuilder();
+		for (Map.Entry<String, String> entry : new TreeMap<>(query).entrySet()) {
+			if (canonicalQuery.length() > 0) {
+				canonicalQuery.append('&');
+			}
+			canonicalQuery.append(encode(entry.getKey())).append('=').append(encode(entry.getValue()));
+		}
+		String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+		String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+				+ "host:" + host + "\n" + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n" + "x-amz-date:" + amzDate + "\n"
+				+ "\n" + signedHeaders + "\n" + UNSIGNED_PAYLOAD;
+
+		String scope = dateStamp + "/" + region + "/s3/aws4_request";
+		String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+		byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), dateStamp),
+				region), "s3"), "aws4_request");
+		String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+		URI uri = URI.create(endpoint.getScheme() + "://" + host + canonicalUri
+				+ (canonicalQuery.length() > 0 ? "?" + canonicalQuery : ""));
+		HttpRequest request = HttpRequest.newBuilder(uri)
+				.timeout(Duration.ofSeconds(30))
+				.method(method, bodyPublisher)
+				.header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+				.header("x-amz-date", amzDate)
+				.header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+						+ ", SignedHeaders=" + signedHeaders + ", Signature=" + signature)
+				.build();
+		try {
+			return httpClient.send(request, bodyHandler);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while calling object storage", e);
+		}
+	}
+
+	private static void check(HttpResponse<byte[]> response, String operation) throws IOException {
+		if (response.statusCode() / 100 != 2) {
+			throw new IOException(operation + " failed: HTTP " + response.statusCode() + " "
+					+ new String(response.body(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private static Document parse(byte[] xml) throws IOException {
+		try {
+			DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+			documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			return documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+		} catch (Exception e) {
+			throw new IOException("Invalid list response", e);
+		}
+	}
+
+	private static String text(Document document, String tagName) {
+		NodeList nodes = document.getDocumentElement().getElementsByTagName(tagName);
+		return nodes.getLength() > 0 ? ((Element) nodes.item(0)).getTextContent() : null;
+	}
+
+	// URIエンコード（署名バージョン4の規則: 英数字と -_.~ 以外をエンコードする）
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20").replace("*", "%2A")
+				.replace("%7E", "~");
+	}
+
+	// オブジェクトのキーは / を区切りとして残してエンコードする
+	private static String encodePath(String key) {
+		return encode(key).replace("%2F", "/");
+	}
+
+	private static String sha256Hex(String value) {
+		try {
+			return HexFormat.of().formatHex(
+					MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] hmac(byte[] key, String value) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(key, "HmacSHA256"));
+			return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.samuraitravel.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * StreamingHouseUploadFilter がアップロードを受け取りながら保存し終えた画像を、フォームの MultipartFile として渡すクラス。
+ *
+ * 内容は保存先から読み直すため、HouseService は getImageName で保存済みのファイル名を受け取り、もう一度保存しない。
+ */
+public class StoredImageFile implements MultipartFile {
+	private final String name;
+	private final String originalFilename;
+	private final String contentType;
+	private final String imageName;
+	private final long size;
+	private final ImageStorage imageStorage;
+
+	StoredImageFile(String name, String originalFilename, String contentType, String imageName, long size,
+			ImageStorage imageStorage) {
+		this.name = name;
+		this.originalFilename = originalFilename;
+		this.contentType = contentType;
+		this.imageName = imageName;
+		this.size = size;
+		this.imageStorage = imageStorage;
+	}
+
+	/**
+	 * ファイルが選択されていない、または保存できなかった項目
+	 * @param name フォームの項目名
+	 * @return 空のファイル
+	 */
+	static StoredImageFile empty(String name) {
+		return new StoredImageFile(name, "", null, null, 0, null);
+	}
+
+	/**
+	 * @return 保存した画像のファイル名（空のファイルの場合は null）
+	 */
+	public String getImageName() {
+		return imageName;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getOriginalFilename() {
+		return originalFilename;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return imageName == null;
+	}
+
+	@Override
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public byte[] getBytes() throws IOException {
+		if (isEmpty()) {
+			return new byte[0];
+		}
+		try (InputStream inputStream = imageStorage.open(imageName)) {
+			return inputStream.readAllBytes();
+		}
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return isEmpty() ? InputStream.nullInputStream() : imageStorage.open(imageName);
+	}
+
+	@Override
+	public void transferTo(File dest) throws IOException {
+		transferTo(dest.toPath());
+	}
+
+	@Override
+	public void transferTo(Path dest) throws IOException {
+		try (InputStream inputStream = getInputStream()) {
+			Files.copy(inputStream, dest, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
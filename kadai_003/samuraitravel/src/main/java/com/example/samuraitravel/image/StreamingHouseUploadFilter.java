@@ -0,0 +1,211 @@
+package com.example.samuraitravel.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfTokenRequestHandler;
+import org.springframework.security.web.csrf.XorCsrfTokenRequestAttributeHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 管理者の民宿の登録・更新フォーム（multipart/form-data）を、本文を受け取りながら処理するフィルター。
+ *
+ * Spring のマルチパート処理（spring.servlet.multipart.enabled=false で無効にした場合に有効になる）のように
+ * 本文全体をメモリや一時ファイルに受け取ってから保存し直すのではなく、画像のパートは HouseImageStore で
+ * 保存先の一時ファイルに固定長のバッファで直接書き出し、名前の付け替えだけで保存する。
+ * 画像の形式やサイズを受け付けられない場合は読み込みを打ち切り、メッセージを UPLOAD_ERROR_ATTRIBUTE に入れて
+ * AdminHouseController がフォームに表示する。
+ * 本文より前に認証を確認できるよう、Spring Security のフィルターの後に実行する。
+ * CSRFトークンは本文の中にあるため、Spring Security の CsrfFilter ではなくこのフィルターが確認する
+ * （WebSecurityConfig で handles に当てはまる送信を CsrfFilter の対象から外す）。Thymeleaf がフォームの先頭に置く
+ * _csrf の項目（または X-CSRF-TOKEN ヘッダー）で確認し、確認できるまでは画像を保存しない。
+ */
+@Component
+@ConditionalOnProperty(name = "spring.servlet.multipart.enabled", havingValue = "false")
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class StreamingHouseUploadFilter extends OncePerRequestFilter {
+	private static final Logger logger = LoggerFactory.getLogger(StreamingHouseUploadFilter.class);
+
+	/** 画像を保存できなかった場合のメッセージを入れるリクエスト属性 */
+	public static final String UPLOAD_ERROR_ATTRIBUTE = "com.example.samuraitravel.image.StreamingHouseUploadFilter.UPLOAD_ERROR";
+
+	private static final Pattern UPLOAD_PATH = Pattern.compile("/admin/houses/(create|\\d+/update)");
+	private static final String IMAGE_FIELD = "imageFile";
+	// 画像以外の項目1つあたりのバイト数の上限
+	private static final int MAX_FIELD_BYTES = 65536;
+	// 1回の送信に含められるパートの数の上限
+	private static final int MAX_PARTS = 100;
+
+	private final HouseImageStore houseImageStore;
+	private final ImageStorage imageStorage;
+	private final CsrfTokenRepository csrfTokenRepository;
+	// フォームに埋め込んだトークンはリクエストごとにマスクされているため、Spring Security と同じ方法で元に戻す
+	private final CsrfTokenRequestHandler csrfTokenRequestHandler = new XorCsrfTokenRequestAttributeHandler();
+	private final int bufferSize;
+
+	public StreamingHouseUploadFilter(HouseImageStore houseImageStore, ImageStorage imageStorage,
+			CsrfTokenRepository csrfTokenRepository,
+			@Value("${samuraitravel.image.upload.buffer-bytes:65536}") int bufferSize) {
+		this.houseImageStore = houseImageStore;
+		this.imageStorage = imageStorage;
+		this.csrfTokenRepository = csrfTokenRepository;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * このフィルターが本文を読み、CSRFトークンを確認する送信か
+	 * @param request リクエスト
+	 * @return 民宿の登録・更新フォームの multipart/form-data の送信の場合はtrue
+	 */
+	public boolean handles(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		return "POST".equals(request.getMethod()) && UPLOAD_PATH.matcher(path).matches()
+				&& boundary(request.getContentType()) != null;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !handles(request);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		// 画像以外の項目は、送信先URLのクエリパラメーターと合わせて渡す
+		MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+		request.getParameterMap().forEach((name, values) -> parameters.addAll(name, List.of(values)));
+		MultiValueMap<String, MultipartFile> files = new LinkedMultiValueMap<>();
+		String uploadError = null;
+		CsrfToken csrfToken = csrfTokenRepository.loadToken(request);
+		boolean csrfVerified = csrfToken != null && verifyCsrfToken(request, csrfToken, null);
+
+		StreamingMultipartReader reader = new StreamingMultipartReader(request.getInputStream(),
+				boundary(request.getContentType()), bufferSize);
+		try {
+			int partCount = 0;
+			for (StreamingMultipartReader.Part part; (part = reader.next()) != null;) {
+				if (++partCount > MAX_PARTS) {
+					throw new IOException("マルチパートのパートが多すぎます");
+				}
+				if (part.filename() == null) {
+					String value = readField(part.body());
+					if (!csrfVerified && csrfToken != null && csrfToken.getParameterName().equals(part.name())) {
+						csrfVerified = verifyCsrfToken(request, csrfToken, value);
+					}
+					parameters.add(part.name(), value);
+				} else if (!csrfVerified) {
+					// 画像より前にCSRFトークンを確認できない送信は、画像を保存せずに拒否する
+					break;
+				} else if (!IMAGE_FIELD.equals(part.name()) || part.filename().isEmpty() || uploadError != null) {
+					// 画像が選択されていない項目や、画像以外のファイルは保存しない（本文は次のパートに進むときに読み飛ばす）
+					files.add(part.name(), StoredImageFile.empty(part.name()));
+				} else {
+					try {
+						HouseImageStore.StoredImage storedImage = houseImageStore.store(part.body());
+						files.add(part.name(), new StoredImageFile(part.name(), part.filename(), part.contentType(),
+								storedImage.imageName(), storedImage.size(), imageStorage));
+					} catch (ImageUploadException e) {
+						uploadError = e.getMessage();
+						files.add(part.name(), StoredImageFile.empty(part.name()));
+					} catch (IOException e) {
+						// 保存先に書き込めなかった場合（画像の途中で送信が中断された場合も含む）は、フォームに戻さずエラーを返す
+						logger.error("民宿画像を保存できませんでした。URL: {}", request.getRequestURI(), e);
+						response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+						return;
+					}
+				}
+			}
+		} catch (IOException e) {
+			// 送信の中断や形式の誤り
+			logger.warn("民宿のフォームを読み込めませんでした。URL: {} 原因: {}", request.getRequestURI(), e.getMessage());
+			response.sendError(HttpStatus.BAD_REQUEST.value());
+			return;
+		}
+
+		if (!csrfVerified) {
+			logger.warn("CSRFトークンを確認できない民宿のフォームを拒否しました。URL: {}", request.getRequestURI());
+			response.sendError(HttpStatus.FORBIDDEN.value());
+			return;
+		}
+		if (uploadError != null) {
+			request.setAttribute(UPLOAD_ERROR_ATTRIBUTE, uploadError);
+		}
+		Map<String, String[]> parameterMap = new LinkedHashMap<>();
+		parameters.forEach((name, values) -> parameterMap.put(name, values.toArray(String[]::new)));
+		filterChain.doFilter(new DefaultMultipartHttpServletRequest(request, files, parameterMap, Map.of()), response);
+	}
+
+	// 送信されたCSRFトークン（ヘッダー、なければフォームの項目の値）がセッションのトークンと一致するか
+	private boolean verifyCsrfToken(HttpServletRequest request, CsrfToken csrfToken, String fieldValue) {
+		HttpServletRequest tokenRequest = new HttpServletRequestWrapper(request) {
+			@Override
+			public String getParameter(String name) {
+				return csrfToken.getParameterName().equals(name) ? fieldValue : null;
+			}
+		};
+		String actualToken = csrfTokenRequestHandler.resolveCsrfTokenValue(tokenRequest, csrfToken);
+		return actualToken != null && MessageDigest.isEqual(csrfToken.getToken().getBytes(StandardCharsets.UTF_8),
+				actualToken.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// 画像以外の項目の値をUTF-8として読む
+	private static String readField(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream value = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read; (read = inputStream.read(buffer)) >= 0;) {
+			if (value.size() + read > MAX_FIELD_BYTES) {
+				throw new IOException("フォームの項目が長すぎます");
+			}
+			value.write(buffer, 0, read);
+		}
+		return value.toString(StandardCharsets.UTF_8);
+	}
+
+	// multipart/form-data の boundary（multipart/form-data でない場合は null）
+	private static String boundary(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		try {
+			MediaType mediaType = MediaType.parseMediaType(contentType);
+			if (!MediaType.MULTIPART_FORM_DATA.includes(mediaType)) {
+				return null;
+			}
+			String boundary = mediaType.getParameter("boundary");
+			if (boundary != null && boundary.length() >= 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+				boundary = boundary.substring(1, boundary.length() - 1);
+			}
+			return boundary == null || boundary.isEmpty() || boundary.length() > 70 ? null : boundary;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package com.example.samuraitravel.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * multipart/form-data の本文を、固定長のバッファだけを使って先頭から順にパートごとに読むクラス。
+ *
+ * 各パートの本文は次の区切りの手前で終わる InputStream として返し、読み残した分は次のパートに進むときに読み飛ばす。
+ * 区切りが途中で分かれて届いても見落とさないよう、区切りの長さより短い末尾は次の読み込みまでバッファに残す。
+ */
+class StreamingMultipartReader {
+	// パートのヘッダーの合計バイト数の上限
+	private static final int MAX_HEADER_BYTES = 8192;
+
+	private final InputStream inputStream;
+	// パートの区切り（"\r\n--" + boundary）
+	private final byte[] delimiter;
+	private final byte[] buffer;
+	private int head;
+	private int tail;
+	// 現在のパートの本文を区切りまで読み終えたか
+	private boolean partEnded;
+	// 最後の区切りを読んだか
+	private boolean finished;
+	private PartInputStream currentBody;
+
+	StreamingMultipartReader(InputStream inputStream, String boundary, int bufferSize) {
+		this.inputStream = inputStream;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		this.buffer = new byte[Math.max(bufferSize, delimiter.length * 2)];
+		// 最初の区切りの前には改行がないため、改行を補って他の区切りと同じように探す
+		buffer[0] = '\r';
+		buffer[1] = '\n';
+		tail = 2;
+		// 最初の区切りまで（プリアンブル）を最初のパートの本文として読み飛ばす
+		currentBody = new PartInputStream();
+	}
+
+	/**
+	 * 次のパートを返す（前のパートの本文で読み残した分は読み飛ばす）
+	 * @return パート（最後のパートを読み終えた場合は null）
+	 */
+	Part next() throws IOException {
+		if (finished) {
+			return null;
+		}
+		currentBody.drain();
+		int first = readByte();
+		int second = readByte();
+		if (first == '-' && second == '-') {
+			finished = true;
+			return null;
+		}
+		if (first != '\r' || second != '\n') {
+			throw new IOException("マルチパートの区切りの形式が正しくありません");
+		}
+
+		String name = null;
+		String filename = null;
+		String contentType = null;
+		int headerBytes = 0;
+		for (String line; !(line = readLine()).isEmpty();) {
+			headerBytes += line.length();
+			if (headerBytes > MAX_HEADER_BYTES) {
+				throw new IOException("マルチパートのヘッダーが長すぎます");
+			}
+			int colonIndex = line.indexOf(':');
+			if (colonIndex < 0) {
+				continue;
+			}
+			String headerName = line.substring(0, colonIndex).trim().toLowerCase(Locale.ROOT);
+			String headerValue = line.substring(colonIndex + 1).trim();
+			if (headerName.equals("content-disposition")) {
+				Map<String, String> parameters = parameters(headerValue);
+				name = parameters.get("name");
+				filename = parameters.get("filename");
+			} else if (headerName.equals("content-type")) {
+				contentType = headerValue;
+			}
+		}
+		if (name == null) {
+			throw new IOException("マルチパートのパートに名前がありません");
+		}
+
+		partEnded = false;
+		currentBody = new PartInputStream();
+		return new Part(name, filename, contentType, currentBody);
+	}
+
+	// 現在のパートの本文を区切りの手前まで読む（区切りに達した場合は区切りを読み飛ばして -1 を返す）
+	private int readBody(byte[] b, int off, int len) throws IOException {
+		if (partEnded) {
+			return -1;
+		}
+		while (true) {
+			int delimiterIndex = indexOfDelimiter();
+			if (delimiterIndex == head) {
+				head += delimiter.length;
+				partEnded = true;
+				return -1;
+			}
+			// 区切りより前の分か、区切りの先頭かもしれない末尾を除いた分を返す
+			int available = delimiterIndex >= 0 ? delimiterIndex - head : tail - head - (delimiter.length - 1);
+			if (available > 0) {
+				int read = Math.min(len, available);
+				System.arraycopy(buffer, head, b, off, read);
+				head += read;
+				return read;
+			}
+			if (!fill()) {
+				throw new IOException("マルチパートの区切りが見つからないまま本文が終わりました");
+			}
+		}
+	}
+
+	private int indexOfDelimiter() {
+		outer: for (int i = head; i <= tail - delimiter.length; i++) {
+			for (int j = 0; j < delimiter.length; j++) {
+				if (buffer[i + j] != delimiter[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	// 未読の分をバッファの先頭に寄せてから続きを読み込む（本文が終わっている場合は false）
+	private boolean fill() throws IOException {
+		if (head > 0) {
+			System.arraycopy(buffer, head, buffer, 0, tail - head);
+			tail -= head;
+			head = 0;
+		}
+		if (tail == buffer.length) {
+			throw new IOException("マルチパートのバッファが不足しています");
+		}
+		int read = inputStream.read(buffer, tail, buffer.length - tail);
+		if (read < 0) {
+			return false;
+		}
+		tail += read;
+		return true;
+	}
+
+	private int readByte() throws IOException {
+		if (head == tail && !fill()) {
+			throw new IOException("マルチパートの本文が途中で終わりました");
+		}
+		return buffer[head++] & 0xFF;
+	}
+
+	// CRLF までの1行をUTF-8として読む（CRLFは含めない）
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			int b = readByte();
+			if (b == '\r') {
+				if (readByte() != '\n') {
+					throw new IOException("マルチパートのヘッダーの改行が正しくありません");
+				}
+				return line.toString(StandardCharsets.UTF_8);
+			}
+			if (line.size() >= MAX_HEADER_BYTES) {
+				throw new IOException("マルチパートのヘッダーが長すぎます");
+			}
+			line.write(b);
+		}
+	}
+
+	// Content-Disposition のパラメーター（form-data; name="..."; filename="..."）を取り出す
+	private static Map<String, String> parameters(String headerValue) {
+		Map<String, String> parameters = new HashMap<>();
+		int index = headerValue.indexOf(';');
+		while (index >= 0 && index < headerValue.length()) {
+			int equalsIndex = headerValue.indexOf('=', index);
+			if (equalsIndex < 0) {
+				break;
+			}
+			String key = headerValue.substring(index + 1, equalsIndex).trim().toLowerCase(Locale.ROOT);
+			StringBuilder value = new StringBuilder();
+			int i = equalsIndex + 1;
+			while (i < headerValue.length() && headerValue.charAt(i) == ' ') {
+				i++;
+			}
+			if (i < headerValue.length() && headerValue.charAt(i) == '"') {
+				// 引用符で囲まれた値（\ によるエスケープを戻す）
+				for (i++; i < headerValue.length() && headerValue.charAt(i) != '"'; i++) {
+					char c = headerValue.charAt(i);
+					if (c == '\\' && i + 1 < headerValue.length()) {
+						c = headerValue.charAt(++i);
+					}
+					value.append(c);
+				}
+				index = headerValue.indexOf(';', i);
+			} else {
+				int end = headerValue.indexOf(';', i);
+				value.append(headerValue, i, end >= 0 ? end : headerValue.length());
+				index = end;
+			}
+			parameters.putIfAbsent(key, value.toString().trim());
+		}
+		return parameters;
+	}
+
+	/**
+	 * マルチパートの1つのパート
+	 * @param name フォームの項目名
+	 * @param filename ファイル名（ファイルでない項目は null、ファイルが選択されていない場合は空文字）
+	 * @param contentType Content-Type（ない場合は null）
+	 * @param body 本文
+	 */
+	record Part(String name, String filename, String contentType, InputStream body) {
+	}
+
+	private class PartInputStream extends InputStream {
+		@Override
+		public int read() throws IOException {
+			byte[] single = new byte[1];
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			return currentBody == this ? readBody(b, off, len) : -1;
+		}
+
+		// 読み残した本文を読み飛ばす
+		void drain() throws IOException {
+			byte[] skip = new byte[4096];
+			while (read(skip, 0, skip.length) >= 0) {
+			}
+		}
+	}
+}
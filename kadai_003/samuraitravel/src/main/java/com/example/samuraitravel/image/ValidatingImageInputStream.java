@@ -0,0 +1,90 @@
+package com.example.samuraitravel.image;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * アップロードされた画像を読みながら、先頭のバイト列（マジックナンバー）で形式を確認し、サイズの上限を超えたら止める入力ストリーム。
+ *
+ * 画像全体を読み込んでから確認するのではなく、先頭の HEADER_LENGTH バイトを読んだ時点で JPEG・PNG・GIF 以外を拒否する。
+ */
+class ValidatingImageInputStream extends FilterInputStream {
+	private static final int HEADER_LENGTH = 8;
+	private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+	private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final byte[] GIF87A = { 'G', 'I', 'F', '8', '7', 'a' };
+	private static final byte[] GIF89A = { 'G', 'I', 'F', '8', '9', 'a' };
+
+	private final long maxBytes;
+	private final byte[] header = new byte[HEADER_LENGTH];
+	private long count;
+	private String extension;
+
+	ValidatingImageInputStream(InputStream inputStream, long maxBytes) {
+		super(inputStream);
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = super.read(b, off, len);
+		if (read < 0) {
+			// 先頭のバイト列より短い画像
+			validate();
+			return read;
+		}
+		if (count < HEADER_LENGTH) {
+			System.arraycopy(b, off, header, (int) count, (int) Math.min(read, HEADER_LENGTH - count));
+		}
+		count += read;
+		if (count >= HEADER_LENGTH) {
+			validate();
+		}
+		if (count > maxBytes) {
+			throw new ImageUploadException("民宿画像は" + (maxBytes / 1024 / 1024) + "MB以下のファイルを選択してください。");
+		}
+		return read;
+	}
+
+	/**
+	 * @return これまでに読んだバイト数
+	 */
+	long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return 先頭のバイト列から判定した形式の拡張子（.jpg・.png・.gif。最後まで読んでから呼ぶ）
+	 */
+	String getExtension() {
+		return extension;
+	}
+
+	private void validate() {
+		if (extension != null) {
+			return;
+		}
+		byte[] actual = Arrays.copyOf(header, (int) Math.min(count, HEADER_LENGTH));
+		if (startsWith(actual, JPEG)) {
+			extension = ".jpg";
+		} else if (startsWith(actual, PNG)) {
+			extension = ".png";
+		} else if (startsWith(actual, GIF87A) || startsWith(actual, GIF89A)) {
+			extension = ".gif";
+		} else {
+			throw new ImageUploadException("民宿画像はJPEG・PNG・GIF形式のファイルを選択してください。");
+		}
+	}
+
+	private static boolean startsWith(byte[] actual, byte[] magic) {
+		return actual.length >= magic.length && Arrays.equals(actual, 0, magic.length, magic, 0, magic.length);
+	}
+}
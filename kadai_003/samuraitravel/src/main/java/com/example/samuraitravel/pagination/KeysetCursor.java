@@ -0,0 +1,94 @@
+package com.example.samuraitravel.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * キーセット（シーク）方式のページネーションで使うカーソル。
+ *
+ * 直前のページの最後の行の並び替えキー（作成日時または価格）とIDを保持し、
+ * 次のページは WHERE (キー, id) がそれより後ろ、という条件で LIMIT だけを使って取得する。
+ * テンプレートには encode() した不透明な文字列として渡す。
+ */
+public final class KeysetCursor {
+	// 並び替えキーの種類
+	public static final String CREATED_AT = "c";
+	public static final String PRICE = "p";
+
+	private final String key;
+	private final long value;
+	private final int id;
+
+	private KeysetCursor(String key, long value, int id) {
+		this.key = key;
+		this.value = value;
+		this.id = id;
+	}
+
+	public static KeysetCursor of(Timestamp createdAt, Integer id) {
+		return new KeysetCursor(CREATED_AT, createdAt.getTime(), id);
+	}
+
+	public static KeysetCursor of(LocalDateTime createdAt, Integer id) {
+		return new KeysetCursor(CREATED_AT, createdAt.toInstant(ZoneOffset.UTC).toEpochMilli(), id);
+	}
+
+	public static KeysetCursor ofPrice(Integer price, Integer id) {
+		return new KeysetCursor(PRICE, price, id);
+	}
+
+	/**
+	 * カーソル文字列を復元する
+	 * @param cursor encode() で作成した文字列
+	 * @param key 期待する並び替えキーの種類
+	 * @return カーソル（空文字・不正な文字列・並び替えキーが異なる場合はnull＝先頭ページ）
+	 */
+	public static KeysetCursor decode(String cursor, String key) {
+		if (cursor == null || cursor.isEmpty()) {
+			return null;
+		}
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = decoded.split(":");
+			if (parts.length != 3 || !parts[0].equals(key)) {
+				return null;
+			}
+			return new KeysetCursor(parts[0], Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * テンプレートに埋め込む不透明なカーソル文字列を返す
+	 * @return Base64URLで符号化したカーソル
+	 */
+	public String encode() {
+		String raw = key + ":" + value + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public boolean isPrice() {
+		return PRICE.equals(key);
+	}
+
+	public Timestamp getCreatedAtTimestamp() {
+		return new Timestamp(value);
+	}
+
+	public LocalDateTime getCreatedAtLocalDateTime() {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1000L), (int) Math.floorMod(value, 1000L) * 1_000_000,
+				ZoneOffset.UTC);
+	}
+
+	public Integer getPrice() {
+		return (int) value;
+	}
+
+	public Integer getId() {
+		return id;
+	}
+}
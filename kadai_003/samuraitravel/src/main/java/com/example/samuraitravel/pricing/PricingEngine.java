@@ -0,0 +1,86 @@
+package com.example.samuraitravel.pricing;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 宿泊料金を求めるクラス。
+ *
+ * 民宿ごとに今日から samuraitravel.pricing.horizon-days 日分の1泊ごとの料金の累積和（RateCalendar）を保持し、
+ * 長期の宿泊でも泊数によらず一定の時間で合計を求める。累積和は日付が変わったときと1泊あたりの料金が
+ * 変わったときに作り直し、範囲外の期間は1泊ずつ足し合わせる。
+ */
+@Component
+public class PricingEngine {
+	// 料金カレンダーを保持する民宿数の上限（超えた場合は最も長く参照されていない民宿から破棄する）
+	private static final int MAX_HOUSES = 1000;
+
+	private final PricingRules pricingRules;
+	private final int horizonDays;
+
+	// 民宿ID -> 料金カレンダー（参照順に並べる）
+	private final Map<Integer, RateCalendar> calendars = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, RateCalendar> eldest) {
+			return size() > MAX_HOUSES;
+		}
+	};
+
+	public PricingEngine(PricingRules pricingRules,
+			@Value("${samuraitravel.pricing.horizon-days:730}") int horizonDays) {
+		this.pricingRules = pricingRules;
+		this.horizonDays = horizonDays;
+	}
+
+	/**
+	 * 宿泊料金を求める
+	 * @param houseId 民宿ID
+	 * @param basePrice 1泊あたりの料金
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日
+	 * @return 連泊割引後の宿泊料金
+	 */
+	public int quote(Integer houseId, int basePrice, LocalDate checkinDate, LocalDate checkoutDate) {
+		long nights = ChronoUnit.DAYS.between(checkinDate, checkoutDate);
+		long total = calendar(houseId, basePrice).total(checkinDate, checkoutDate);
+		if (total < 0) {
+			// 料金カレンダーの範囲外（過去の日付や先の日付）は1泊ずつ足し合わせる
+			total = 0;
+			for (LocalDate date = checkinDate; date.isBefore(checkoutDate); date = date.plusDays(1)) {
+				total += pricingRules.nightlyRate(basePrice, date);
+			}
+		}
+		return pricingRules.applyLengthOfStayDiscount(total, nights);
+	}
+
+	/**
+	 * 民宿の料金カレンダーを破棄する（民宿の削除時）
+	 * @param houseId 民宿ID
+	 */
+	public void evict(Integer houseId) {
+		synchronized (calendars) {
+			calendars.remove(houseId);
+		}
+	}
+
+	// 今日から始まり、現在の1泊あたりの料金で作った料金カレンダーを返す
+	private RateCalendar calendar(Integer houseId, int basePrice) {
+		LocalDate today = LocalDate.now();
+		synchronized (calendars) {
+			RateCalendar calendar = calendars.get(houseId);
+			if (calendar != null && calendar.isCurrent(today, basePrice)) {
+				return calendar;
+			}
+		}
+		RateCalendar calendar = RateCalendar.build(pricingRules, basePrice, today, horizonDays);
+		synchronized (calendars) {
+			calendars.put(houseId, calendar);
+		}
+		return calendar;
+	}
+}
@@ -0,0 +1,94 @@
+package com.example.samuraitravel.pricing;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 1泊ごとの料金と連泊割引の決め方。
+ *
+ * 民宿の1泊あたりの料金（houses.price）を基準に、金曜・土曜の夜は週末料金、繁忙期の夜は繁忙期料金の割増をかけ、
+ * 宿泊料金の合計に泊数に応じた割引（7泊以上・28泊以上）をかける。割合はすべて設定で変更でき、初期値はすべて0%
+ * （= 1泊あたりの料金 × 泊数）とする。
+ */
+@Component
+public class PricingRules {
+	private final int weekendSurchargePercent;
+	private final int peakSurchargePercent;
+	private final List<MonthDay[]> peakSeasons;
+	private final int weeklyDiscountPercent;
+	private final int monthlyDiscountPercent;
+
+	/**
+	 * @param weekendSurchargePercent 週末（金曜・土曜の夜）の割増率（%）
+	 * @param peakSurchargePercent 繁忙期の割増率（%）
+	 * @param peakSeasons 繁忙期（"MM-dd/MM-dd" をカンマ区切りで指定。年をまたぐ期間も指定できる）
+	 * @param weeklyDiscountPercent 7泊以上の割引率（%）
+	 * @param monthlyDiscountPercent 28泊以上の割引率（%）
+	 */
+	public PricingRules(@Value("${samuraitravel.pricing.weekend-surcharge-percent:0}") int weekendSurchargePercent,
+			@Value("${samuraitravel.pricing.peak-surcharge-percent:0}") int peakSurchargePercent,
+			@Value("${samuraitravel.pricing.peak-seasons:}") String peakSeasons,
+			@Value("${samuraitravel.pricing.weekly-discount-percent:0}") int weeklyDiscountPercent,
+			@Value("${samuraitravel.pricing.monthly-discount-percent:0}") int monthlyDiscountPercent) {
+		this.weekendSurchargePercent = weekendSurchargePercent;
+		this.peakSurchargePercent = peakSurchargePercent;
+		this.peakSeasons = new ArrayList<>();
+		for (String season : peakSeasons.split(",")) {
+			if (!season.isBlank()) {
+				String[] fromAndTo = season.trim().split("/");
+				this.peakSeasons.add(new MonthDay[] { MonthDay.parse("--" + fromAndTo[0]),
+						MonthDay.parse("--" + fromAndTo[1]) });
+			}
+		}
+		this.weeklyDiscountPercent = weeklyDiscountPercent;
+		this.monthlyDiscountPercent = monthlyDiscountPercent;
+	}
+
+	/**
+	 * 指定した日の夜の料金を求める
+	 * @param basePrice 1泊あたりの料金
+	 * @param date 宿泊日
+	 * @return その夜の料金
+	 */
+	public int nightlyRate(int basePrice, LocalDate date) {
+		int percent = 100;
+		DayOfWeek dayOfWeek = date.getDayOfWeek();
+		if (dayOfWeek == DayOfWeek.FRIDAY || dayOfWeek == DayOfWeek.SATURDAY) {
+			percent += weekendSurchargePercent;
+		}
+		if (isPeakSeason(MonthDay.from(date))) {
+			percent += peakSurchargePercent;
+		}
+		return basePrice * percent / 100;
+	}
+
+	/**
+	 * 宿泊料金の合計に連泊割引をかける
+	 * @param total 1泊ごとの料金の合計
+	 * @param nights 泊数
+	 * @return 割引後の宿泊料金
+	 */
+	public int applyLengthOfStayDiscount(long total, long nights) {
+		int discountPercent = nights >= 28 ? monthlyDiscountPercent : nights >= 7 ? weeklyDiscountPercent : 0;
+		return Math.toIntExact(total * (100 - discountPercent) / 100);
+	}
+
+	private boolean isPeakSeason(MonthDay monthDay) {
+		for (MonthDay[] season : peakSeasons) {
+			boolean inSeason = season[0].isAfter(season[1])
+					// 年をまたぐ期間（例: 12-28/01-03）
+					? !monthDay.isBefore(season[0]) || !monthDay.isAfter(season[1])
+					: !monthDay.isBefore(season[0]) && !monthDay.isAfter(season[1]);
+			if (inSeason) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
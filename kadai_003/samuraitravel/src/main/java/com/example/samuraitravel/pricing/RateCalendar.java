@@ -0,0 +1,64 @@
+package com.example.samuraitravel.pricing;
+
+import java.time.LocalDate;
+
+/**
+ * 1軒の民宿の、開始日から一定日数分の1泊ごとの料金の累積和。
+ *
+ * prefixSums[i] は開始日から i 泊分の料金の合計なので、期間内の宿泊料金の合計は
+ * prefixSums[チェックアウト日] - prefixSums[チェックイン日] の引き算1回で求まる。
+ */
+public final class RateCalendar {
+	private final LocalDate startDate;
+	private final int basePrice;
+	private final long[] prefixSums;
+
+	private RateCalendar(LocalDate startDate, int basePrice, long[] prefixSums) {
+		this.startDate = startDate;
+		this.basePrice = basePrice;
+		this.prefixSums = prefixSums;
+	}
+
+	/**
+	 * 開始日から指定した日数分の料金の累積和を作成する
+	 * @param pricingRules 1泊ごとの料金の決め方
+	 * @param basePrice 1泊あたりの料金
+	 * @param startDate 開始日
+	 * @param days 日数
+	 * @return 料金カレンダー
+	 */
+	public static RateCalendar build(PricingRules pricingRules, int basePrice, LocalDate startDate, int days) {
+		long[] prefixSums = new long[days + 1];
+		LocalDate date = startDate;
+		for (int i = 0; i < days; i++) {
+			prefixSums[i + 1] = prefixSums[i] + pricingRules.nightlyRate(basePrice, date);
+			date = date.plusDays(1);
+		}
+		return new RateCalendar(startDate, basePrice, prefixSums);
+	}
+
+	/**
+	 * 宿泊期間の1泊ごとの料金の合計を求める
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日
+	 * @return 料金の合計（期間がカレンダーの範囲外の場合は-1）
+	 */
+	public long total(LocalDate checkinDate, LocalDate checkoutDate) {
+		long from = checkinDate.toEpochDay() - startDate.toEpochDay();
+		long to = checkoutDate.toEpochDay() - startDate.toEpochDay();
+		if (from < 0 || to >= prefixSums.length || from > to) {
+			return -1;
+		}
+		return prefixSums[(int) to] - prefixSums[(int) from];
+	}
+
+	/**
+	 * 指定した日・1泊あたりの料金で作り直す必要がないか
+	 * @param today 今日
+	 * @param price 現在の1泊あたりの料金
+	 * @return 作り直す必要がない場合はtrue
+	 */
+	public boolean isCurrent(LocalDate today, int price) {
+		return startDate.equals(today) && basePrice == price;
+	}
+}
@@ -1,15 +1,35 @@
 package com.example.samuraitravel.repository;
 
+import java.sql.Timestamp;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.samuraitravel.entity.Favorite;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.User;
 
 public interface FavoriteRepository extends JpaRepository<Favorite, Integer> {
+	// 民宿とユーザーを結合して1本のSQLで取得する（行ごとに houses / users を読み込まない）
+	@EntityGraph(attributePaths = { "house", "user", "user.role" })
 	public Page<Favorite> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
 
 	public Favorite findByHouseAndUser(House house, User user);
+
+	// キーセット方式の先頭ページ（件数取得を行わない）
+	@EntityGraph(attributePaths = { "house", "user", "user.role" })
+	public Slice<Favorite> findByUserOrderByCreatedAtDescIdDesc(User user, Pageable pageable);
+
+	// キーセット方式でカーソル（作成日, ID）より後ろのお気に入りを取得する
+	@EntityGraph(attributePaths = { "house", "user", "user.role" })
+	@Query("SELECT f FROM Favorite f WHERE f.user = :user"
+			+ " AND (f.createdAt < :createdAt OR (f.createdAt = :createdAt AND f.id < :id))"
+			+ " ORDER BY f.createdAt DESC, f.id DESC")
+	public Slice<Favorite> findByUserAfter(@Param("user") User user, @Param("createdAt") Timestamp createdAt,
+			@Param("id") Integer id, Pageable pageable);
 }
@@ -0,0 +1,48 @@
+package com.example.samuraitravel.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.samuraitravel.entity.HouseRating;
+
+public interface HouseRatingRepository extends JpaRepository<HouseRating, Integer> {
+	// 民宿の集計行を作成する（作成済みの場合は何もしない）
+	@Modifying
+	@Query(value = "INSERT IGNORE INTO house_ratings (house_id) VALUES (:houseId)", nativeQuery = true)
+	public void insertEmpty(@Param("houseId") Integer houseId);
+
+	// レビュー1件分の点数を集計に加える（delta が 1 なら追加、-1 なら取り消し）。行単位の加算なので同時に更新されても失われない
+	@Modifying
+	@Query(value = "INSERT INTO house_ratings (house_id, review_count, score_sum,"
+			+ " star1_count, star2_count, star3_count, star4_count, star5_count)"
+			+ " VALUES (:houseId, :delta, :score * :delta, IF(:score = 1, :delta, 0), IF(:score = 2, :delta, 0),"
+			+ " IF(:score = 3, :delta, 0), IF(:score = 4, :delta, 0), IF(:score = 5, :delta, 0))"
+			+ " ON DUPLICATE KEY UPDATE review_count = review_count + :delta, score_sum = score_sum + :score * :delta,"
+			+ " star1_count = star1_count + IF(:score = 1, :delta, 0), star2_count = star2_count + IF(:score = 2, :delta, 0),"
+			+ " star3_count = star3_count + IF(:score = 3, :delta, 0), star4_count = star4_count + IF(:score = 4, :delta, 0),"
+			+ " star5_count = star5_count + IF(:score = 5, :delta, 0)", nativeQuery = true)
+	public void applyScore(@Param("houseId") Integer houseId, @Param("score") int score, @Param("delta") int delta);
+
+	// 民宿が削除されて残った集計行を削除する
+	@Modifying
+	@Query(value = "DELETE FROM house_ratings WHERE house_id NOT IN (SELECT id FROM houses)", nativeQuery = true)
+	public int deleteOrphans();
+
+	// reviewテーブルから全民宿の集計行を作り直す（レビューのない民宿も件数0の行を持つ）。
+	// 行を消してから入れ直すと、その間に applyScore が作った行と重複したり加算が失われたりするため、
+	// applyScore と同じ INSERT ... ON DUPLICATE KEY UPDATE で行ロックを取って上書きする
+	@Modifying
+	@Query(value = "INSERT INTO house_ratings (house_id, review_count, score_sum,"
+			+ " star1_count, star2_count, star3_count, star4_count, star5_count)"
+			+ " SELECT * FROM (SELECT h.id, COUNT(r.id) AS review_count, COALESCE(SUM(r.review_score), 0) AS score_sum,"
+			+ " COALESCE(SUM(r.review_score = 1), 0) AS star1_count, COALESCE(SUM(r.review_score = 2), 0) AS star2_count,"
+			+ " COALESCE(SUM(r.review_score = 3), 0) AS star3_count, COALESCE(SUM(r.review_score = 4), 0) AS star4_count,"
+			+ " COALESCE(SUM(r.review_score = 5), 0) AS star5_count"
+			+ " FROM houses h LEFT JOIN review r ON r.house_id = h.id GROUP BY h.id) AS totals"
+			+ " ON DUPLICATE KEY UPDATE review_count = totals.review_count, score_sum = totals.score_sum,"
+			+ " star1_count = totals.star1_count, star2_count = totals.star2_count, star3_count = totals.star3_count,"
+			+ " star4_count = totals.star4_count, star5_count = totals.star5_count", nativeQuery = true)
+	public int upsertAllFromReviews();
+}
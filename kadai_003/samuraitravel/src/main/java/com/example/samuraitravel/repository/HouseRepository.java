@@ -1,14 +1,23 @@
 package com.example.samuraitravel.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.samuraitravel.entity.House;
 
-public interface HouseRepository extends JpaRepository<House, Integer> {
+import jakarta.persistence.LockModeType;
+
+public interface HouseRepository
+        extends JpaRepository<House, Integer>, JpaSpecificationExecutor<House>, HouseRepositoryCustom {
 
     /**
      * 指定されたキーワードに部分一致する物件をページネーションで検索する。
@@ -20,83 +29,63 @@ public interface HouseRepository extends JpaRepository<House, Integer> {
     public Page<House> findByNameLike(String keyword, Pageable pageable);
 
     /**
-     * 指定された名前または住所のキーワードに部分一致する物件を、作成日の降順でページネーションで検索する。
-     *
-     * @param nameKeyword    名前の検索キーワード
-     * @param addressKeyword 住所の検索キーワード
-     * @param pageable       ページネーション情報
-     * @return 該当する物件のページ
-     */
-    public Page<House> findByNameLikeOrAddressLikeOrderByCreatedAtDesc(String nameKeyword, String addressKeyword,
-            Pageable pageable);
-
-    /**
-     * 指定された名前または住所のキーワードに部分一致する物件を、価格の昇順でページネーションで検索する。
-     *
-     * @param nameKeyword    名前の検索キーワード
-     * @param addressKeyword 住所の検索キーワード
-     * @param pageable       ページネーション情報
-     * @return 該当する物件のページ
-     */
-    public Page<House> findByNameLikeOrAddressLikeOrderByPriceAsc(String nameKeyword, String addressKeyword,
-            Pageable pageable);
-
-    /**
-     * 指定された住所のキーワードに部分一致する物件を、作成日の降順でページネーションで検索する。
+     * 指定されたキーワードに部分一致する物件を、件数取得（COUNT）を行わずにページ単位で検索する。
      *
-     * @param area     住所の検索キーワード
+     * @param keyword  検索キーワード
      * @param pageable ページネーション情報
-     * @return 該当する物件のページ
+     * @return 該当する物件のスライス
      */
-    public Page<House> findByAddressLikeOrderByCreatedAtDesc(String area, Pageable pageable);
+    public Slice<House> findSliceByNameLike(String keyword, Pageable pageable);
 
     /**
-     * 指定された住所のキーワードに部分一致する物件を、価格の昇順でページネーションで検索する。
+     * 全ての物件を、件数取得（COUNT）を行わずにページ単位で取得する。
      *
-     * @param area     住所の検索キーワード
      * @param pageable ページネーション情報
-     * @return 該当する物件のページ
+     * @return 物件のスライス
      */
-    public Page<House> findByAddressLikeOrderByPriceAsc(String area, Pageable pageable);
+    @Query("SELECT h FROM House h")
+    public Slice<House> findSliceBy(Pageable pageable);
 
     /**
-     * 指定された価格以下の物件を、作成日の降順でページネーションで検索する。
+     * 指定されたキーワードに部分一致する物件の件数を取得する。
      *
-     * @param price    上限価格
-     * @param pageable ページネーション情報
-     * @return 該当する物件のページ
+     * @param keyword 検索キーワード
+     * @return 件数
      */
-    public Page<House> findByPriceLessThanEqualOrderByCreatedAtDesc(Integer price, Pageable pageable);
+    public long countByNameLike(String keyword);
 
     /**
-     * 指定された価格以下の物件を、価格の昇順でページネーションで検索する。
+     * 作成日の降順で上位10件の物件を取得する。
      *
-     * @param price    上限価格
-     * @param pageable ページネーション情報
-     * @return 該当する物件のページ
+     * @return 上位10件の物件リスト
      */
-    public Page<House> findByPriceLessThanEqualOrderByPriceAsc(Integer price, Pageable pageable);
+    public List<House> findTop10ByOrderByCreatedAtDesc();
 
     /**
-     * 全ての物件を作成日の降順でページネーションで取得する。
+     * 指定された画像を参照している物件の件数を取得する。
      *
-     * @param pageable ページネーション情報
-     * @return 全ての物件のページ
+     * @param imageName 画像のファイル名
+     * @return 件数
      */
-    public Page<House> findAllByOrderByCreatedAtDesc(Pageable pageable);
+    public long countByImageName(String imageName);
 
     /**
-     * 全ての物件を価格の昇順でページネーションで取得する。
+     * 物件から参照されている画像のファイル名を重複なく取得する。
      *
-     * @param pageable ページネーション情報
-     * @return 全ての物件のページ
+     * @return 画像のファイル名のリスト
      */
-    public Page<House> findAllByOrderByPriceAsc(Pageable pageable);
+    @Query("SELECT DISTINCT h.imageName FROM House h WHERE h.imageName IS NOT NULL")
+    public List<String> findImageNames();
 
     /**
-     * 作成日の降順で上位10件の物件を取得する。
+     * 予約の登録前に物件の行を排他ロックする（SELECT ... FOR UPDATE）。
      *
-     * @return 上位10件の物件リスト
+     * 同じ物件の予約の登録は、アプリケーションを複数台で動かしている場合もこのロックで順番に行われる。
+     *
+     * @param id 物件ID
+     * @return ロックした物件のID（物件が存在しない場合は空）
      */
-    public List<House> findTop10ByOrderByCreatedAtDesc();
-}
\ No newline at end of file
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h.id FROM House h WHERE h.id = :id")
+    public Optional<Integer> lockById(@Param("id") Integer id);
+}
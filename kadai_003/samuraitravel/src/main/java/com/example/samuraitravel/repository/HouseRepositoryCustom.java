@@ -0,0 +1,36 @@
+package com.example.samuraitravel.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.example.samuraitravel.entity.House;
+
+public interface HouseRepositoryCustom {
+
+    /**
+     * 絞り込み条件に一致する物件を、件数取得（COUNT）を行わずにページ単位で取得する。
+     *
+     * @param specification 絞り込み条件
+     * @param pageable      ページネーション情報（並び順を含む）
+     * @return 該当する物件のスライス
+     */
+    public Slice<House> findSlice(Specification<House> specification, Pageable pageable);
+
+    /**
+     * 絞り込み条件に一致する物件を、評価（house_ratings の平均点）が高い順に、件数取得（COUNT）を行わずにページ単位で取得する。
+     * 平均点が同じ場合はレビュー件数の多い順、新しい順に並べ、レビューのない物件は最後に並べる。
+     *
+     * @param specification 絞り込み条件
+     * @param pageable      ページネーション情報（並び順は使わない）
+     * @return 該当する物件のスライス
+     */
+    public Slice<House> findSliceOrderByRating(Specification<House> specification, Pageable pageable);
+
+    /**
+     * 保存した物件をDBに書き込み、DBで値が決まる列（created_at など）を読み直す。
+     *
+     * @param house 保存した物件
+     */
+    public void refresh(House house);
+}
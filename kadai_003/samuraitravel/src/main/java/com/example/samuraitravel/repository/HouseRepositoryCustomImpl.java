@@ -0,0 +1,86 @@
+package com.example.samuraitravel.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.hibernate.query.criteria.JpaEntityJoin;
+import org.hibernate.query.criteria.JpaRoot;
+import org.hibernate.query.sqm.tree.SqmJoinType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.HouseRating;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+public class HouseRepositoryCustomImpl implements HouseRepositoryCustom {
+	private final EntityManager entityManager;
+
+	public HouseRepositoryCustomImpl(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public Slice<House> findSlice(Specification<House> specification, Pageable pageable) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<House> query = builder.createQuery(House.class);
+		Root<House> root = query.from(House.class);
+
+		Predicate predicate = specification.toPredicate(root, query, builder);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+
+		return slice(query, pageable);
+	}
+
+	@Override
+	public Slice<House> findSliceOrderByRating(Specification<House> specification, Pageable pageable) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<House> query = builder.createQuery(House.class);
+		Root<House> root = query.from(House.class);
+		// house_ratings は民宿ごとに1行あるため、民宿IDで外部結合する
+		// （集計の行がまだない民宿も、レビューのない民宿として一覧に残す）
+		JpaEntityJoin<HouseRating> rating = ((JpaRoot<House>) root).join(HouseRating.class, SqmJoinType.LEFT);
+		rating.on(builder.equal(rating.get("houseId"), root.get("id")));
+		query.select(root);
+
+		Predicate predicate = specification.toPredicate(root, query, builder);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		// レビューのない民宿（平均点がNULL）と集計の行がない民宿は、平均点・件数を0として最後に並べる
+		query.orderBy(builder.desc(builder.coalesce(rating.<BigDecimal> get("averageScore"), BigDecimal.ZERO)),
+				builder.desc(builder.coalesce(rating.<Integer> get("reviewCount"), 0)),
+				builder.desc(root.get("createdAt")), builder.desc(root.get("id")));
+
+		return slice(query, pageable);
+	}
+
+	@Override
+	public void refresh(House house) {
+		entityManager.flush();
+		entityManager.refresh(house);
+	}
+
+	// 1件多く読み、次のページがあるかどうかを判定する
+	private Slice<House> slice(CriteriaQuery<House> query, Pageable pageable) {
+		TypedQuery<House> typedQuery = entityManager.createQuery(query);
+		typedQuery.setFirstResult((int) pageable.getOffset());
+		typedQuery.setMaxResults(pageable.getPageSize() + 1);
+		List<House> houses = typedQuery.getResultList();
+
+		boolean hasNext = houses.size() > pageable.getPageSize();
+		return new SliceImpl<>(hasNext ? houses.subList(0, pageable.getPageSize()) : houses, pageable, hasNext);
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.samuraitravel.repository;
+
+import java.util.Collection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.pagination.KeysetCursor;
+
+/**
+ * 民宿検索の絞り込み条件。
+ *
+ * HouseSearchService がこれらを組み合わせて1本のSELECT文として発行する。
+ * 引数がnullの条件は where 句に含めない。
+ */
+public final class HouseSpecifications {
+
+	private HouseSpecifications() {
+	}
+
+	/**
+	 * 指定したIDのいずれかに一致する
+	 * @param houseIds 民宿IDの集合
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> idIn(Collection<Integer> houseIds) {
+		return (root, query, builder) -> houseIds == null ? null : root.get("id").in(houseIds);
+	}
+
+	/**
+	 * 指定したIDのいずれにも一致しない
+	 * @param houseIds 除外する民宿IDの集合
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> idNotIn(Collection<Integer> houseIds) {
+		return (root, query, builder) -> houseIds == null || houseIds.isEmpty() ? null
+				: builder.not(root.get("id").in(houseIds));
+	}
+
+	/**
+	 * 住所がエリア（都道府県）から始まる。
+	 * 前方一致にすることで address のインデックスを使った範囲検索になる。
+	 * @param area エリア
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> addressStartsWith(String area) {
+		return (root, query, builder) -> area == null ? null
+				: builder.like(root.get("address"), escapeLike(area) + "%", '\\');
+	}
+
+	/**
+	 * 宿泊料金が上限以下
+	 * @param price 上限価格
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> priceAtMost(Integer price) {
+		return (root, query, builder) -> price == null ? null : builder.lessThanOrEqualTo(root.get("price"), price);
+	}
+
+	/**
+	 * キーセット方式で、カーソルの (価格, ID) または (作成日, ID) より後ろに並ぶ
+	 * @param cursor 直前のページの最後の行のカーソル
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> after(KeysetCursor cursor) {
+		return (root, query, builder) -> {
+			if (cursor == null) {
+				return null;
+			}
+			if (cursor.isPrice()) {
+				// 価格昇順・ID昇順
+				return builder.or(builder.greaterThan(root.get("price"), cursor.getPrice()),
+						builder.and(builder.equal(root.get("price"), cursor.getPrice()),
+								builder.greaterThan(root.get("id"), cursor.getId())));
+			}
+			// 作成日降順・ID降順
+			return builder.or(builder.lessThan(root.get("createdAt"), cursor.getCreatedAtTimestamp()),
+					builder.and(builder.equal(root.get("createdAt"), cursor.getCreatedAtTimestamp()),
+							builder.lessThan(root.get("id"), cursor.getId())));
+		};
+	}
+
+	/**
+	 * 定員が宿泊人数以上
+	 * @param capacity 宿泊人数
+	 * @return 絞り込み条件
+	 */
+	public static Specification<House> capacityAtLeast(Integer capacity) {
+		return (root, query, builder) -> capacity == null ? null
+				: builder.greaterThanOrEqualTo(root.get("capacity"), capacity);
+	}
+
+	// LIKE のパターンで特別な意味を持つ文字（%・_・\）をエスケープする
+	private static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+}
@@ -0,0 +1,6 @@
+package com.example.samuraitravel.repository;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+
+public interface OutboxEventRepository extends QueuedEventRepository<OutboxEvent> {
+}
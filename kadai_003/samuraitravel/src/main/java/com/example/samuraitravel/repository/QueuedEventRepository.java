@@ -0,0 +1,46 @@
+package com.example.samuraitravel.repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+import com.example.samuraitravel.entity.QueuedEvent;
+
+/**
+ * キューとして使うテーブル（QueuedEvent）に共通の取り出し・状態変更のクエリ。
+ * #{#entityName} は継承したリポジトリのエンティティ名に置き換わる。
+ */
+@NoRepositoryBean
+public interface QueuedEventRepository<T extends QueuedEvent> extends JpaRepository<T, Integer> {
+	// 取り出せるイベント（試行時刻を過ぎた処理待ちと、処理中のまま期限の切れたもの）のIDを、試行時刻の早い順に取得する
+	@Query("SELECT e.id FROM #{#entityName} e WHERE (e.status = 'PENDING' AND e.nextAttemptAt <= :now)"
+			+ " OR (e.status = 'PROCESSING' AND e.lockedUntil < :now) ORDER BY e.nextAttemptAt, e.id")
+	public List<Integer> findReadyIds(@Param("now") Timestamp now, Pageable pageable);
+
+	// イベントを期限付きで処理中にする（ほかのワーカーが先に取り出し、期限内に処理している場合は0を返す）
+	@Modifying
+	@Query("UPDATE #{#entityName} e SET e.status = 'PROCESSING', e.attempts = e.attempts + 1,"
+			+ " e.lockedUntil = :lockedUntil WHERE e.id = :id"
+			+ " AND (e.status = 'PENDING' OR (e.status = 'PROCESSING' AND e.lockedUntil < :now))")
+	public int claim(@Param("id") Integer id, @Param("now") Timestamp now, @Param("lockedUntil") Timestamp lockedUntil);
+
+	// 処理済みにする（処理中のものだけを対象にする）
+	@Modifying
+	@Query("UPDATE #{#entityName} e SET e.status = 'DONE', e.lastError = NULL, e.lockedUntil = NULL"
+			+ " WHERE e.id IN :ids AND e.status = 'PROCESSING'")
+	public int markDone(@Param("ids") Collection<Integer> ids);
+
+	// 指定した時刻より前に処理済みになったイベントを削除する
+	@Modifying
+	@Query("DELETE FROM #{#entityName} e WHERE e.status = 'DONE' AND e.updatedAt < :before")
+	public int deleteDoneBefore(@Param("before") Timestamp before);
+
+	public long countByStatus(String status);
+}
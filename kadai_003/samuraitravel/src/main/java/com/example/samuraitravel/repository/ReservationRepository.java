@@ -1,8 +1,17 @@
 package com.example.samuraitravel.repository;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.samuraitravel.entity.Reservation;
 import com.example.samuraitravel.entity.User;
@@ -13,10 +22,77 @@ public interface ReservationRepository extends JpaRepository<Reservation, Intege
      * ユーザーごとの予約を作成日順に降順で取得するメソッド。
      * 
      * このメソッドは、特定のユーザーに関連する予約を、作成日（`createdAt`）の降順でページネーションを考慮して取得します。
+     * 民宿とユーザーは結合して同じSQLで取得するため、行ごとに追加のSELECTは発行されません。
      * 
      * @param user 特定のユーザー
      * @param pageable ページネーション情報（ページ番号やサイズなど）
      * @return Page<Reservation> 指定されたユーザーの予約をページ単位で返す
      */
+    @EntityGraph(attributePaths = { "house", "user", "user.role" })
     public Page<Reservation> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
+
+    /**
+     * キーセット方式の先頭ページを取得するメソッド。
+     * 
+     * 件数取得（COUNT）を行わず、(作成日, ID) の降順で指定件数だけを取得します。
+     * 
+     * @param user 特定のユーザー
+     * @param pageable 取得件数（ページ番号は常に0）
+     * @return Slice<Reservation> 予約と次のページの有無
+     */
+    @EntityGraph(attributePaths = { "house", "user", "user.role" })
+    public Slice<Reservation> findByUserOrderByCreatedAtDescIdDesc(User user, Pageable pageable);
+
+    /**
+     * キーセット方式で、カーソルより後ろの予約を取得するメソッド。
+     * 
+     * 直前のページの最後の行の (作成日, ID) より後ろの行を、OFFSETを使わずに取得します。
+     * 
+     * @param user 特定のユーザー
+     * @param createdAt カーソルの作成日
+     * @param id カーソルのID
+     * @param pageable 取得件数（ページ番号は常に0）
+     * @return Slice<Reservation> 予約と次のページの有無
+     */
+    @EntityGraph(attributePaths = { "house", "user", "user.role" })
+    @Query("SELECT r FROM Reservation r WHERE r.user = :user"
+            + " AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id))"
+            + " ORDER BY r.createdAt DESC, r.id DESC")
+    public Slice<Reservation> findByUserAfter(@Param("user") User user, @Param("createdAt") Timestamp createdAt,
+            @Param("id") Integer id, Pageable pageable);
+
+    /**
+     * 空室カレンダーの構築に使う、指定した日より後にチェックアウトする予約の宿泊期間を取得するメソッド。
+     * 
+     * 予約エンティティは生成せず、[民宿ID, チェックイン日, チェックアウト日] の配列だけを返します。
+     * 
+     * @param date この日より後にチェックアウトする予約を対象にする
+     * @return List<Object[]> 予約ごとの [民宿ID, チェックイン日, チェックアウト日]
+     */
+    @Query("SELECT r.house.id, r.checkinDate, r.checkoutDate FROM Reservation r WHERE r.checkoutDate > :date")
+    public List<Object[]> findStaysCheckingOutAfter(@Param("date") LocalDate date);
+
+    /**
+     * 確認メールの送信に使う、指定したIDの予約を民宿・ユーザーと合わせて取得するメソッド。
+     * 
+     * @param ids 予約ID
+     * @return List<Reservation> 予約
+     */
+    @EntityGraph(attributePaths = { "house", "user" })
+    public List<Reservation> findByIdIn(Collection<Integer> ids);
+
+    /**
+     * 指定した物件で、宿泊期間が重複する予約があるかを確認するメソッド。
+     * 
+     * チェックアウト日の夜は宿泊しないため、既存の予約のチェックアウト日にチェックインする予約は重複しません。
+     * 
+     * @param houseId 物件ID
+     * @param checkinDate チェックイン日
+     * @param checkoutDate チェックアウト日
+     * @return boolean 重複する予約がある場合はtrue
+     */
+    @Query("SELECT COUNT(r) > 0 FROM Reservation r WHERE r.house.id = :houseId"
+            + " AND r.checkinDate < :checkoutDate AND r.checkoutDate > :checkinDate")
+    public boolean existsOverlapping(@Param("houseId") Integer houseId, @Param("checkinDate") LocalDate checkinDate,
+            @Param("checkoutDate") LocalDate checkoutDate);
 }
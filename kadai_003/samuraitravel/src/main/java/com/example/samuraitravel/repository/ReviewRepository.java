@@ -1,10 +1,15 @@
 package com.example.samuraitravel.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.Review;
@@ -14,7 +19,22 @@ public interface ReviewRepository extends JpaRepository<Review, Integer>{
 	public List<Review> findTop6ByHouseOrderByCreatedAtDesc(House house);
 	   public Review findByHouseAndUser(House house, User user);
 	   public long countByHouse(House house);
+	   // 投稿者と民宿を結合して1本のSQLで取得する（行ごとに users / houses を読み込まない）
+	   @EntityGraph(attributePaths = { "user", "user.role", "house" })
 	   public Page<Review> findByHouseOrderByCreatedAtDesc(House house, Pageable pageable);
+	   // 件数取得（COUNT）を行わずにページ分のレビューを取得する（総件数は ListingCountCache が保持する）
+	   @EntityGraph(attributePaths = { "user", "user.role", "house" })
+	   public Slice<Review> findSliceByHouseOrderByCreatedAtDesc(House house, Pageable pageable);
+	   // キーセット方式の先頭ページ（件数取得を行わない）
+	   @EntityGraph(attributePaths = { "user", "user.role", "house" })
+	   public Slice<Review> findByHouseOrderByCreatedAtDescIdDesc(House house, Pageable pageable);
+	   // キーセット方式でカーソル（作成日, ID）より後ろのレビューを取得する
+	   @EntityGraph(attributePaths = { "user", "user.role", "house" })
+	   @Query("SELECT r FROM Review r WHERE r.house = :house"
+	           + " AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id))"
+	           + " ORDER BY r.createdAt DESC, r.id DESC")
+	   public Slice<Review> findByHouseAfter(@Param("house") House house, @Param("createdAt") LocalDateTime createdAt,
+	           @Param("id") Integer id, Pageable pageable);
   
 }
 //レビューを投稿する
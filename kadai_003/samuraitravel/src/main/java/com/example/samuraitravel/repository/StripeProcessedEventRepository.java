@@ -0,0 +1,11 @@
+package com.example.samuraitravel.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.example.samuraitravel.entity.StripeProcessedEvent;
+
+public interface StripeProcessedEventRepository extends JpaRepository<StripeProcessedEvent, Integer> {
+	public boolean existsByEventId(String eventId);
+
+	public boolean existsByPaymentIntentId(String paymentIntentId);
+}
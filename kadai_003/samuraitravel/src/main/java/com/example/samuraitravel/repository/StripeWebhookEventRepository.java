@@ -0,0 +1,16 @@
+package com.example.samuraitravel.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.samuraitravel.entity.StripeWebhookEvent;
+
+public interface StripeWebhookEventRepository extends QueuedEventRepository<StripeWebhookEvent> {
+	// イベントを処理待ちとして保存する（同じイベントIDが保存済みの場合は何もせず0を返す）
+	@Modifying
+	@Query(value = "INSERT IGNORE INTO stripe_webhook_events (event_id, event_type, payload)"
+			+ " VALUES (:eventId, :eventType, :payload)", nativeQuery = true)
+	public int insertPending(@Param("eventId") String eventId, @Param("eventType") String eventType,
+			@Param("payload") String payload);
+}
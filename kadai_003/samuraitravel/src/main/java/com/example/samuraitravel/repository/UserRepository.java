@@ -2,7 +2,9 @@ package com.example.samuraitravel.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.example.samuraitravel.entity.User;
 
@@ -33,4 +35,34 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      */
     // 名前またはふりがなに部分一致するユーザーを検索し、ページネーションを適用するメソッド
     public Page<User> findByNameLikeOrFuriganaLike(String nameKeyword, String furiganaKeyword, Pageable pageable);
+
+    /**
+     * 名前またはふりがなでユーザーを、件数取得（COUNT）を行わずに検索するメソッド。
+     * 
+     * 総件数は ListingCountCache が保持するため、ここではページ分のデータだけを取得します。
+     * 
+     * @param nameKeyword 名前に一致するキーワード
+     * @param furiganaKeyword ふりがなに一致するキーワード
+     * @param pageable ページネーション情報（ページ番号、ページサイズなど）
+     * @return Slice<User> 指定されたキーワードに一致するユーザーと次のページの有無
+     */
+    public Slice<User> findSliceByNameLikeOrFuriganaLike(String nameKeyword, String furiganaKeyword, Pageable pageable);
+
+    /**
+     * 名前またはふりがなに部分一致するユーザーの件数を取得するメソッド。
+     * 
+     * @param nameKeyword 名前に一致するキーワード
+     * @param furiganaKeyword ふりがなに一致するキーワード
+     * @return long 件数
+     */
+    public long countByNameLikeOrFuriganaLike(String nameKeyword, String furiganaKeyword);
+
+    /**
+     * すべてのユーザーを、件数取得（COUNT）を行わずに取得するメソッド。
+     * 
+     * @param pageable ページネーション情報（ページ番号、ページサイズなど）
+     * @return Slice<User> ユーザーと次のページの有無
+     */
+    @Query("SELECT u FROM User u")
+    public Slice<User> findSliceBy(Pageable pageable);
 }
@@ -0,0 +1,199 @@
+package com.example.samuraitravel.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.repository.HouseRepository;
+
+/**
+ * 民宿の価格を (価格, ID) の昇順に並べたメモリ上のインデックス。
+ *
+ * 価格とIDをボクシングなしの int 配列2本で持ち、「上限価格以下を価格の安い順にNページ目」を
+ * 二分探索で求めた境界から配列を切り出すだけで返す。
+ * 起動時にhousesテーブルから構築し、以降は HouseService の登録・更新・削除に合わせて更新する。
+ */
+@Component
+public class HousePriceIndex {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final HouseRepository houseRepository;
+
+	// prices[i] と ids[i] が1件の民宿に対応し、(価格, ID) の昇順に並ぶ
+	private int[] prices = new int[INITIAL_CAPACITY];
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int size;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public HousePriceIndex(HouseRepository houseRepository) {
+		this.houseRepository = houseRepository;
+	}
+
+	/**
+	 * アプリケーション起動時にhousesテーブルの全件からインデックスを構築する
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		load(houseRepository.findAll());
+	}
+
+	/**
+	 * 指定した民宿だけでインデックスを作り直す（1件ずつ put するより速く、ベンチマークの準備にも使う）
+	 * @param houses すべての民宿
+	 */
+	void load(List<House> houses) {
+		// (価格, ID) を1つのlongにまとめて並び替え、配列に展開する
+		long[] keys = new long[houses.size()];
+		for (int i = 0; i < keys.length; i++) {
+			House house = houses.get(i);
+			keys[i] = key(price(house), house.getId());
+		}
+		Arrays.sort(keys);
+
+		int[] newPrices = new int[Math.max(INITIAL_CAPACITY, keys.length)];
+		int[] newIds = new int[newPrices.length];
+		for (int i = 0; i < keys.length; i++) {
+			newPrices[i] = (int) (keys[i] >> 32);
+			newIds[i] = (int) keys[i];
+		}
+
+		lock.writeLock().lock();
+		try {
+			prices = newPrices;
+			ids = newIds;
+			size = keys.length;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 民宿をインデックスに登録する（登録済みの場合は価格を置き換える）
+	 * @param house 民宿
+	 */
+	public void put(House house) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(house.getId());
+			int price = price(house);
+			int position = -(search(price, house.getId()) + 1);
+			if (size == prices.length) {
+				prices = Arrays.copyOf(prices, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			System.arraycopy(prices, position, prices, position + 1, size - position);
+			System.arraycopy(ids, position, ids, position + 1, size - position);
+			prices[position] = price;
+			ids[position] = house.getId();
+			size++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 民宿をインデックスから削除する
+	 * @param houseId 民宿ID
+	 */
+	public void remove(Integer houseId) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(houseId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 上限価格以下の民宿の件数を返す
+	 * @param maxPrice 1泊あたりの上限価格
+	 * @return 件数
+	 */
+	public int countAtMost(int maxPrice) {
+		lock.readLock().lock();
+		try {
+			return upperBound(maxPrice);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 上限価格以下の民宿IDを価格の安い順（同じ価格はID順）に、指定した範囲だけ返す
+	 * @param maxPrice 1泊あたりの上限価格
+	 * @param offset 先頭から読み飛ばす件数
+	 * @param limit 最大件数
+	 * @return 民宿IDの配列
+	 */
+	public int[] findIdsAtMost(int maxPrice, long offset, int limit) {
+		lock.readLock().lock();
+		try {
+			int end = upperBound(maxPrice);
+			int from = (int) Math.min(offset, end);
+			int to = (int) Math.min((long) from + limit, end);
+			return Arrays.copyOfRange(ids, from, to);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// 価格が maxPrice を超える最初の位置（= maxPrice 以下の件数）
+	private int upperBound(int maxPrice) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (prices[middle] <= maxPrice) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// (価格, ID) の位置を二分探索する（見つからない場合は -(挿入位置) - 1）
+	private int search(int price, int id) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compared = prices[middle] != price ? Integer.compare(prices[middle], price)
+					: Integer.compare(ids[middle], id);
+			if (compared < 0) {
+				low = middle + 1;
+			} else if (compared > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private void removeInternal(Integer houseId) {
+		// 更新前の価格は分からないため、IDの配列を走査して位置を探す（書き込みは参照に比べて十分少ない）
+		for (int i = 0; i < size; i++) {
+			if (ids[i] == houseId) {
+				System.arraycopy(prices, i + 1, prices, i, size - i - 1);
+				System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+				size--;
+				return;
+			}
+		}
+	}
+
+	private static int price(House house) {
+		return house.getPrice() == null ? 0 : house.getPrice();
+	}
+
+	private static long key(int price, int id) {
+		return ((long) price << 32) | (id & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,15 @@
+package com.example.samuraitravel.search;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * HouseSearchIndex の検索対象となる民宿の項目
+ */
+public enum HouseSearchField {
+	NAME, ADDRESS, DESCRIPTION;
+
+	// キーワード検索の対象（民宿名・住所・説明）
+	public static final Set<HouseSearchField> KEYWORD = Collections.unmodifiableSet(EnumSet.allOf(HouseSearchField.class));
+}
@@ -0,0 +1,269 @@
+package com.example.samuraitravel.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.repository.HouseRepository;
+
+/**
+ * 民宿名・住所・説明の文字n-gram転置インデックス。
+ *
+ * LIKE '%キーワード%' によるテーブル全件走査の代わりに、JapaneseBigramTokenizer で分割した
+ * キーワードのポスティングリストを積集合して候補を絞り込み、最後に部分一致を確認して検索結果とする。
+ * 起動時にhousesテーブルから構築し、以降は HouseService の登録・更新・削除に合わせて更新する。
+ */
+@Component
+public class HouseSearchIndex {
+	private final HouseRepository houseRepository;
+
+	// 項目 -> トークン -> 民宿IDの集合
+	private final Map<HouseSearchField, Map<String, Set<Integer>>> postings = new EnumMap<>(HouseSearchField.class);
+	// 民宿ID -> 検索・並び替えに使う情報
+	private final Map<Integer, IndexedHouse> documents = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public HouseSearchIndex(HouseRepository houseRepository) {
+		this.houseRepository = houseRepository;
+		for (HouseSearchField field : HouseSearchField.values()) {
+			postings.put(field, new HashMap<>());
+		}
+	}
+
+	/**
+	 * アプリケーション起動時にhousesテーブルの全件からインデックスを構築する
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuild() {
+		List<House> houses = houseRepository.findAll();
+
+		lock.writeLock().lock();
+		try {
+			for (Map<String, Set<Integer>> fieldPostings : postings.values()) {
+				fieldPostings.clear();
+			}
+			documents.clear();
+			for (House house : houses) {
+				addInternal(house);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 民宿をインデックスに登録する（登録済みの場合は置き換える）
+	 * @param house 民宿
+	 */
+	public void put(House house) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(house.getId());
+			addInternal(house);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * 民宿をインデックスから削除する
+	 * @param houseId 民宿ID
+	 */
+	public void remove(Integer houseId) {
+		lock.writeLock().lock();
+		try {
+			removeInternal(houseId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * キーワードに部分一致する民宿IDを並び順どおりに返す
+	 * @param keyword 検索キーワード（民宿名・住所・説明）
+	 * @param order ソート順（"priceAsc" なら価格昇順、それ以外は新着順）
+	 * @return 民宿IDのリスト
+	 */
+	public List<Integer> search(String keyword, String order) {
+		return search(keyword, HouseSearchField.KEYWORD, order);
+	}
+
+	/**
+	 * 指定した項目のいずれかにキーワードが部分一致する民宿IDを並び順どおりに返す
+	 * @param keyword 検索キーワード
+	 * @param fields 検索対象の項目
+	 * @param order ソート順（"priceAsc" なら価格昇順、それ以外は新着順）
+	 * @return 民宿IDのリスト
+	 */
+	public List<Integer> search(String keyword, Set<HouseSearchField> fields, String order) {
+		String normalizedKeyword = JapaneseBigramTokenizer.normalize(keyword);
+		Set<String> tokens = JapaneseBigramTokenizer.tokenizeQuery(normalizedKeyword);
+
+		lock.readLock().lock();
+		try {
+			List<IndexedHouse> hits = new ArrayList<>();
+			for (Integer houseId : findCandidates(tokens, fields)) {
+				IndexedHouse document = documents.get(houseId);
+				// ポスティングリストの積集合は候補にすぎないため、実際に部分一致するかを確認する
+				if (document != null && document.matches(normalizedKeyword, fields)) {
+					hits.add(document);
+				}
+			}
+			hits.sort(comparator(order));
+
+			List<Integer> houseIds = new ArrayList<>(hits.size());
+			for (IndexedHouse hit : hits) {
+				houseIds.add(hit.id);
+			}
+			return houseIds;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * インデックスに登録されているすべての民宿IDを返す
+	 * @return 民宿IDのリスト（順不同）
+	 */
+	public List<Integer> findAllIds() {
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(documents.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private Collection<Integer> findCandidates(Set<String> tokens, Set<HouseSearchField> fields) {
+		// トークンを切り出せないキーワード（空白のみなど）は全件を候補にする
+		if (tokens.isEmpty()) {
+			return documents.keySet();
+		}
+
+		// 項目ごとに候補を求め、いずれかの項目で一致したものを候補にする
+		Set<Integer> candidates = new HashSet<>();
+		for (HouseSearchField field : fields) {
+			candidates.addAll(findCandidates(tokens, postings.get(field)));
+		}
+		return candidates;
+	}
+
+	private static Collection<Integer> findCandidates(Set<String> tokens, Map<String, Set<Integer>> fieldPostings) {
+		List<Set<Integer>> lists = new ArrayList<>(tokens.size());
+		for (String token : tokens) {
+			Set<Integer> posting = fieldPostings.get(token);
+			if (posting == null) {
+				return Collections.emptyList();
+			}
+			lists.add(posting);
+		}
+
+		// 件数の最も少ないポスティングリストを走査し、残りのリストに含まれるものだけを候補にする
+		lists.sort(Comparator.comparingInt(Set::size));
+		List<Integer> candidates = new ArrayList<>();
+		for (Integer houseId : lists.get(0)) {
+			boolean containsAll = true;
+			for (int i = 1; i < lists.size() && containsAll; i++) {
+				containsAll = lists.get(i).contains(houseId);
+			}
+			if (containsAll) {
+				candidates.add(houseId);
+			}
+		}
+		return candidates;
+	}
+
+	private void addInternal(House house) {
+		IndexedHouse document = new IndexedHouse(house);
+		documents.put(document.id, document);
+		for (HouseSearchField field : HouseSearchField.values()) {
+			Map<String, Set<Integer>> fieldPostings = postings.get(field);
+			for (String token : JapaneseBigramTokenizer.tokenize(document.text(field))) {
+				fieldPostings.computeIfAbsent(token, key -> new HashSet<>()).add(document.id);
+			}
+		}
+	}
+
+	private void removeInternal(Integer houseId) {
+		IndexedHouse document = documents.remove(houseId);
+		if (document == null) {
+			return;
+		}
+		for (HouseSearchField field : HouseSearchField.values()) {
+			Map<String, Set<Integer>> fieldPostings = postings.get(field);
+			for (String token : JapaneseBigramTokenizer.tokenize(document.text(field))) {
+				Set<Integer> posting = fieldPostings.get(token);
+				if (posting != null) {
+					posting.remove(houseId);
+					if (posting.isEmpty()) {
+						fieldPostings.remove(token);
+					}
+				}
+			}
+		}
+	}
+
+	private static Comparator<IndexedHouse> comparator(String order) {
+		if ("priceAsc".equals(order)) {
+			return Comparator.<IndexedHouse> comparingInt(document -> document.price)
+					.thenComparingInt(document -> document.id);
+		}
+		return Comparator.<IndexedHouse> comparingLong(document -> document.createdAt).reversed()
+				.thenComparing(Comparator.<IndexedHouse> comparingInt(document -> document.id).reversed());
+	}
+
+	// インデックスに保持する民宿1件分の情報
+	private static class IndexedHouse {
+		private final int id;
+		private final String name;
+		private final String address;
+		private final String description;
+		private final int price;
+		private final long createdAt;
+
+		private IndexedHouse(House house) {
+			this.id = house.getId();
+			this.name = JapaneseBigramTokenizer.normalize(house.getName());
+			this.address = JapaneseBigramTokenizer.normalize(house.getAddress());
+			this.description = JapaneseBigramTokenizer.normalize(house.getDescription());
+			this.price = house.getPrice() == null ? 0 : house.getPrice();
+			// 登録直後はcreatedAtがDBの既定値で埋まっていないため現在時刻で代用する
+			this.createdAt = house.getCreatedAt() == null ? System.currentTimeMillis()
+					: house.getCreatedAt().getTime();
+		}
+
+		private String text(HouseSearchField field) {
+			switch (field) {
+			case NAME:
+				return name;
+			case ADDRESS:
+				return address;
+			default:
+				return description;
+			}
+		}
+
+		private boolean matches(String normalizedKeyword, Set<HouseSearchField> fields) {
+			for (HouseSearchField field : fields) {
+				if (text(field).contains(normalizedKeyword)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
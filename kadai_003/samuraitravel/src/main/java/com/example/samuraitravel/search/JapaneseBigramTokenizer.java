@@ -0,0 +1,74 @@
+package com.example.samuraitravel.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 空白で区切られない日本語テキスト向けの文字バイグラムトークナイザー。
+ *
+ * NFKC正規化で半角カナを全角に、全角英数字・記号を半角に揃え、英字は小文字にしたうえで、
+ * 連続する2文字（バイグラム）と1文字（ユニグラム）をトークンとして切り出す。
+ * ユニグラムも持つことで「宿」のような1文字のキーワードもポスティングリストから引ける。
+ */
+public final class JapaneseBigramTokenizer {
+
+	private JapaneseBigramTokenizer() {
+	}
+
+	/**
+	 * 検索用にテキストを正規化する
+	 * @param text テキスト
+	 * @return 正規化したテキスト（nullの場合は空文字）
+	 */
+	public static String normalize(String text) {
+		if (text == null) {
+			return "";
+		}
+		return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+	}
+
+	/**
+	 * 正規化済みのテキストをインデックス用のトークンに分割する
+	 * @param normalizedText 正規化済みのテキスト
+	 * @return ユニグラムとバイグラムの集合
+	 */
+	public static Set<String> tokenize(String normalizedText) {
+		Set<String> tokens = new LinkedHashSet<>();
+		int[] codePoints = normalizedText.codePoints().toArray();
+		for (int i = 0; i < codePoints.length; i++) {
+			if (Character.isWhitespace(codePoints[i])) {
+				continue;
+			}
+			tokens.add(new String(codePoints, i, 1));
+			if (i + 1 < codePoints.length && !Character.isWhitespace(codePoints[i + 1])) {
+				tokens.add(new String(codePoints, i, 2));
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * 正規化済みのキーワードを検索用のトークンに分割する。
+	 * 2文字以上のキーワードはバイグラムだけで絞り込めるため、ユニグラムは1文字のときだけ返す。
+	 * @param normalizedKeyword 正規化済みのキーワード
+	 * @return 検索に使うトークンの集合
+	 */
+	public static Set<String> tokenizeQuery(String normalizedKeyword) {
+		Set<String> tokens = new LinkedHashSet<>();
+		int[] codePoints = normalizedKeyword.codePoints().toArray();
+		for (int i = 0; i + 1 < codePoints.length; i++) {
+			if (!Character.isWhitespace(codePoints[i]) && !Character.isWhitespace(codePoints[i + 1])) {
+				tokens.add(new String(codePoints, i, 2));
+			}
+		}
+		if (tokens.isEmpty()) {
+			for (int codePoint : codePoints) {
+				if (!Character.isWhitespace(codePoint)) {
+					tokens.add(new String(Character.toChars(codePoint)));
+				}
+			}
+		}
+		return tokens;
+	}
+}
@@ -1,5 +1,6 @@
 package com.example.samuraitravel.security;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -8,6 +9,10 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.HttpSessionCsrfTokenRepository;
+
+import com.example.samuraitravel.image.StreamingHouseUploadFilter;
 
 @Configuration
 @EnableWebSecurity
@@ -15,13 +20,14 @@ import org.springframework.security.web.SecurityFilterChain;
 public class WebSecurityConfig {
 
 	@Bean
-	public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+	public SecurityFilterChain securityFilterChain(HttpSecurity http, CsrfTokenRepository csrfTokenRepository,
+			ObjectProvider<StreamingHouseUploadFilter> streamingHouseUploadFilter) throws Exception {
 		http
 				.authorizeHttpRequests((requests) -> requests
 						.requestMatchers("/css/**", "/images/**", "/js/**", "/storage/**", "/", "/signup/**", "/houses",
 								"/houses/{id}", "/stripe/webhook", "/houses/{id}/reviews")
 						.permitAll() // すべてのユーザーにアクセスを許可するURL
-						.requestMatchers("/admin/**").hasRole("ADMIN") // 管理者にのみアクセスを許可するURL
+						.requestMatchers("/admin/**", "/actuator/**").hasRole("ADMIN") // 管理者にのみアクセスを許可するURL
 						.anyRequest().authenticated() // 上記以外のURLはログインが必要（会員または管理者のどちらでもOK）
 				)
 				.formLogin((form) -> form
@@ -34,7 +40,13 @@ public class WebSecurityConfig {
 						.logoutSuccessUrl("/?loggedOut") // ログアウト時のリダイレクト先URL
 						.permitAll())
 				.csrf((csrf) -> csrf
-						.ignoringRequestMatchers("/stripe/webhook"));
+						.csrfTokenRepository(csrfTokenRepository)
+						.ignoringRequestMatchers("/stripe/webhook")
+						// 本文を受け取りながら処理する民宿のフォームは、StreamingHouseUploadFilter が本文の中のトークンを確認する
+						.ignoringRequestMatchers(request -> {
+							StreamingHouseUploadFilter filter = streamingHouseUploadFilter.getIfAvailable();
+							return filter != null && filter.handles(request);
+						}));
 		/*
 		 * 　　　          .csrf().ignoringRequestMatchers("/stripe/webhook"); という書き方でも問題はないが、波線が出てくるので上記の書き方に変えました。
 		
@@ -42,6 +54,11 @@ public class WebSecurityConfig {
 		return http.build();
 	}
 
+	@Bean
+	public CsrfTokenRepository csrfTokenRepository() {
+		return new HttpSessionCsrfTokenRepository();
+	}
+
 	@Bean
 	public PasswordEncoder passwordEncoder() {
 		return new BCryptPasswordEncoder();
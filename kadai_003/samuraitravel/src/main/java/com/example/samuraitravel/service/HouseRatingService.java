@@ -0,0 +1,116 @@
+package com.example.samuraitravel.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.samuraitravel.cache.CacheTransactions;
+import com.example.samuraitravel.cache.HouseFragmentCache;
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.HouseRating;
+import com.example.samuraitravel.repository.HouseRatingRepository;
+
+/**
+ * 民宿ごとのレビュー集計（件数・合計点・星1〜5の件数）を管理するサービス。
+ *
+ * 集計は ReviewService の登録・更新・削除と同じトランザクションで差分を加算して保つため、
+ * 一覧や詳細ページで評価を表示・並び替えするときにreviewテーブルを集計し直す必要はない。
+ * 差分の加算漏れに備え、起動時と定期的に reviewテーブルから作り直す。
+ */
+@Service
+public class HouseRatingService {
+	private final HouseRatingRepository houseRatingRepository;
+	private final HouseFragmentCache houseFragmentCache;
+
+	public HouseRatingService(HouseRatingRepository houseRatingRepository, HouseFragmentCache houseFragmentCache) {
+		this.houseRatingRepository = houseRatingRepository;
+		this.houseFragmentCache = houseFragmentCache;
+	}
+
+	/**
+	 * 登録した民宿の集計行（レビュー0件）を作成する
+	 * @param houseId 民宿ID
+	 */
+	@Transactional
+	public void created(Integer houseId) {
+		houseRatingRepository.insertEmpty(houseId);
+	}
+
+	/**
+	 * 投稿されたレビューの点数を集計に加える
+	 * @param houseId 民宿ID
+	 * @param score 点数（1〜5）
+	 */
+	@Transactional
+	public void added(Integer houseId, int score) {
+		houseRatingRepository.applyScore(houseId, score, 1);
+	}
+
+	/**
+	 * 編集されたレビューの点数を集計に反映する
+	 * @param houseId 民宿ID
+	 * @param oldScore 編集前の点数
+	 * @param newScore 編集後の点数
+	 */
+	@Transactional
+	public void changed(Integer houseId, int oldScore, int newScore) {
+		if (oldScore == newScore) {
+			return;
+		}
+		houseRatingRepository.applyScore(houseId, oldScore, -1);
+		houseRatingRepository.applyScore(houseId, newScore, 1);
+	}
+
+	/**
+	 * 削除されたレビューの点数を集計から取り除く
+	 * @param houseId 民宿ID
+	 * @param score 点数（1〜5）
+	 */
+	@Transactional
+	public void removed(Integer houseId, int score) {
+		houseRatingRepository.applyScore(houseId, score, -1);
+	}
+
+	/**
+	 * 民宿の集計を取得する
+	 * @param houseId 民宿ID
+	 * @return 集計（集計行がない場合はnull）
+	 */
+	public HouseRating find(Integer houseId) {
+		return houseRatingRepository.findById(houseId).orElse(null);
+	}
+
+	/**
+	 * 一覧に表示する民宿の集計をまとめて取得する
+	 * @param houses 民宿のリスト
+	 * @return 民宿ID -> 集計
+	 */
+	public Map<Integer, HouseRating> findByHouses(Collection<House> houses) {
+		List<Integer> houseIds = houses.stream().map(House::getId).toList();
+		Map<Integer, HouseRating> ratings = new HashMap<>();
+		for (HouseRating rating : houseRatingRepository.findAllById(houseIds)) {
+			ratings.put(rating.getHouseId(), rating);
+		}
+		return ratings;
+	}
+
+	/**
+	 * reviewテーブルから全民宿の集計を作り直す（起動時と、毎日 samuraitravel.rating.rebuild-cron の時刻に実行）
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Scheduled(cron = "${samuraitravel.rating.rebuild-cron:0 0 4 * * *}")
+	@Transactional
+	public void rebuild() {
+		houseRatingRepository.upsertAllFromReviews();
+		houseRatingRepository.deleteOrphans();
+		// 詳細ページの断片には評価が含まれるため、作り直した集計で描画し直す
+		CacheTransactions.afterCommit(houseFragmentCache::clear);
+	}
+}
@@ -0,0 +1,316 @@
+package com.example.samuraitravel.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import com.example.samuraitravel.availability.AvailabilityCalendar;
+import com.example.samuraitravel.cache.ListingCountCache;
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.HouseRating;
+import com.example.samuraitravel.pagination.KeysetCursor;
+import com.example.samuraitravel.repository.HouseRatingRepository;
+import com.example.samuraitravel.repository.HouseRepository;
+import com.example.samuraitravel.repository.HouseSpecifications;
+import com.example.samuraitravel.search.HousePriceIndex;
+import com.example.samuraitravel.search.HouseSearchIndex;
+
+@Service
+public class HouseSearchService {
+	// 民宿IDの候補を1つのIN句で渡す上限件数（これを超える場合は分割して問い合わせ、結果を併合する）
+	private static final int MAX_ID_PREDICATE_SIZE = 1000;
+
+	private final HouseRepository houseRepository;
+	private final HouseSearchIndex houseSearchIndex;
+	private final HousePriceIndex housePriceIndex;
+	private final ListingCountCache listingCountCache;
+	private final AvailabilityCalendar availabilityCalendar;
+	private final HouseRatingRepository houseRatingRepository;
+
+	public HouseSearchService(HouseRepository houseRepository, HouseSearchIndex houseSearchIndex,
+			HousePriceIndex housePriceIndex, ListingCountCache listingCountCache,
+			AvailabilityCalendar availabilityCalendar, HouseRatingRepository houseRatingRepository) {
+		this.houseRepository = houseRepository;
+		this.houseRatingRepository = houseRatingRepository;
+		this.houseSearchIndex = houseSearchIndex;
+		this.housePriceIndex = housePriceIndex;
+		this.listingCountCache = listingCountCache;
+		this.availabilityCalendar = availabilityCalendar;
+	}
+
+	/**
+	 * キーワード・エリア・上限価格・宿泊人数・宿泊期間を組み合わせて民宿を検索する。
+	 * 指定された条件はすべてAND条件として1本のSQLにまとめて発行する。
+	 * 宿泊期間は空室カレンダーで予約が入っている民宿を求め、それらを除外する条件としてSQLに含める
+	 * （除外する民宿が多い場合は、空いている民宿のIDを分割して渡す）。
+	 * @param keyword 検索キーワード（民宿名・住所・説明）
+	 * @param area エリア（都道府県）
+	 * @param price 1泊あたりの上限価格
+	 * @param capacity 宿泊人数
+	 * @param checkinDate チェックイン日（チェックアウト日と合わせて指定した場合のみ絞り込む）
+	 * @param checkoutDate チェックアウト日
+	 * @param order ソート順（"priceAsc" なら価格昇順、"ratingDesc" なら評価の高い順、それ以外は新着順）
+	 * @param pageable ページネーション情報
+	 * @return 該当する民宿のページ
+	 */
+	public Page<House> search(String keyword, String area, Integer price, Integer capacity, LocalDate checkinDate,
+			LocalDate checkoutDate, String order, Pageable pageable) {
+		// 上限価格だけで価格の安い順に並べる場合は、価格インデックスからページ分のIDを切り出す
+		if (emptyToNull(keyword) == null && emptyToNull(area) == null && capacity == null && checkinDate == null
+				&& "priceAsc".equals(order)) {
+			return searchByPriceIndex(price, pageable);
+		}
+
+		Criteria criteria = criteria(keyword, area, price, capacity, checkinDate, checkoutDate, order);
+		if (criteria == null) {
+			return Page.empty(pageable);
+		}
+
+		// データはCOUNTなしで取得し、総件数は ListingCountCache から補う
+		Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort(order));
+		Slice<House> houseSlice = criteria.houseIds() == null
+				? findSlice(criteria.specification(), order, sortedPageable)
+				: findSliceInChunks(criteria, order, sortedPageable);
+		return PageableExecutionUtils.getPage(houseSlice.getContent(), sortedPageable,
+				() -> count(keyword, area, price, capacity, checkinDate, checkoutDate, criteria));
+	}
+
+	/**
+	 * search と同じ条件で、キーセット方式で次のページを取得する。
+	 * OFFSETと件数取得（COUNT）を行わず、カーソルより後ろの行を size + 1 件だけ読んで次ページの有無を判定する。
+	 * @param keyword 検索キーワード（民宿名・住所・説明）
+	 * @param area エリア（都道府県）
+	 * @param price 1泊あたりの上限価格
+	 * @param capacity 宿泊人数
+	 * @param checkinDate チェックイン日
+	 * @param checkoutDate チェックアウト日
+	 * @param order ソート順（"priceAsc" なら価格昇順、それ以外は新着順）
+	 * @param cursor 直前のページのカーソル（空文字の場合は先頭ページ）
+	 * @param size 1ページの件数
+	 * @return 該当する民宿のスライス
+	 */
+	public Slice<House> searchAfter(String keyword, String area, Integer price, Integer capacity,
+			LocalDate checkinDate, LocalDate checkoutDate, String order, String cursor, int size) {
+		Pageable pageable = PageRequest.of(0, size, sort(order));
+		Criteria criteria = criteria(keyword, area, price, capacity, checkinDate, checkoutDate, order);
+		if (criteria == null) {
+			return new SliceImpl<>(List.of(), pageable, false);
+		}
+
+		KeysetCursor keysetCursor = KeysetCursor.decode(cursor, cursorKey(order));
+		Specification<House> specification = criteria.specification().and(HouseSpecifications.after(keysetCursor));
+		List<House> houses = new ArrayList<>();
+		for (List<Integer> chunk : chunks(criteria.houseIds())) {
+			// 候補を分割した場合も、各回の先頭 size + 1 件を併合すれば全体の先頭 size + 1 件が求まる
+			houses.addAll(houseRepository.findBy(specification.and(HouseSpecifications.idIn(chunk)),
+					query -> query.sortBy(sort(order)).limit(size + 1).all()));
+		}
+		if (criteria.houseIds() != null) {
+			houses.sort(comparator(order, Map.of()));
+			houses = houses.subList(0, Math.min(houses.size(), size + 1));
+		}
+
+		boolean hasNext = houses.size() > size;
+		return new SliceImpl<>(hasNext ? houses.subList(0, size) : houses, pageable, hasNext);
+	}
+
+	/**
+	 * スライスの最後の民宿から次のページのカーソルを作成する
+	 * @param houseSlice 表示中のスライス
+	 * @param order ソート順
+	 * @return カーソル文字列（次のページがない場合はnull）
+	 */
+	public String nextCursor(Slice<House> houseSlice, String order) {
+		if (!houseSlice.hasNext()) {
+			return null;
+		}
+		House last = houseSlice.getContent().get(houseSlice.getNumberOfElements() - 1);
+		if (KeysetCursor.PRICE.equals(cursorKey(order))) {
+			return KeysetCursor.ofPrice(last.getPrice(), last.getId()).encode();
+		}
+		return KeysetCursor.of(last.getCreatedAt(), last.getId()).encode();
+	}
+
+	// 価格インデックスで求めたページ分のIDを、その並び順のまま民宿に置き換える
+	private Page<House> searchByPriceIndex(Integer price, Pageable pageable) {
+		int maxPrice = price == null ? Integer.MAX_VALUE : price;
+		Pageable sortedPageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort("priceAsc"));
+		int[] houseIds = housePriceIndex.findIdsAtMost(maxPrice, sortedPageable.getOffset(),
+				sortedPageable.getPageSize());
+
+		Map<Integer, House> housesById = new HashMap<>();
+		for (House house : houseRepository.findAllById(Arrays.stream(houseIds).boxed().toList())) {
+			housesById.put(house.getId(), house);
+		}
+		List<House> houses = new ArrayList<>(houseIds.length);
+		for (int houseId : houseIds) {
+			House house = housesById.get(houseId);
+			if (house != null) {
+				houses.add(house);
+			}
+		}
+		return new PageImpl<>(houses, sortedPageable, housePriceIndex.countAtMost(maxPrice));
+	}
+
+	// 検索条件をまとめた絞り込み条件（キーワードに一致する民宿がない場合はnull）
+	private Criteria criteria(String keyword, String area, Integer price, Integer capacity,
+			LocalDate checkinDate, LocalDate checkoutDate, String order) {
+		Specification<House> specification = Specification.where(HouseSpecifications.addressStartsWith(emptyToNull(area)))
+				.and(HouseSpecifications.priceAtMost(price))
+				.and(HouseSpecifications.capacityAtLeast(capacity));
+
+		// 宿泊期間に予約が入っている民宿を空室カレンダーからまとめて求める
+		Set<Integer> reservedHouseIds = checkinDate != null && checkoutDate != null
+				? availabilityCalendar.findReservedHouseIds(checkinDate, checkoutDate)
+				: Set.of();
+
+		List<Integer> houseIds = null;
+		if (emptyToNull(keyword) != null) {
+			// キーワードは転置インデックスで民宿IDに解決し、予約の入っている民宿をSQLの外で除いてからID条件にする
+			houseIds = new ArrayList<>(houseSearchIndex.search(keyword, order));
+			houseIds.removeIf(reservedHouseIds::contains);
+			if (houseIds.isEmpty()) {
+				return null;
+			}
+		} else if (reservedHouseIds.size() > MAX_ID_PREDICATE_SIZE) {
+			// 除外するIDがIN句の上限を超える場合は、除外条件の代わりに空いている民宿のIDを候補として分割して渡す
+			houseIds = houseSearchIndex.findAllIds();
+			houseIds.removeIf(reservedHouseIds::contains);
+			if (houseIds.isEmpty()) {
+				return null;
+			}
+		} else {
+			specification = specification.and(HouseSpecifications.idNotIn(reservedHouseIds));
+		}
+
+		if (houseIds != null && houseIds.size() <= MAX_ID_PREDICATE_SIZE) {
+			specification = specification.and(HouseSpecifications.idIn(houseIds));
+			houseIds = null;
+		}
+		return new Criteria(specification, houseIds);
+	}
+
+	private Slice<House> findSlice(Specification<House> specification, String order, Pageable pageable) {
+		return "ratingDesc".equals(order)
+				? houseRepository.findSliceOrderByRating(specification, pageable)
+				: houseRepository.findSlice(specification, pageable);
+	}
+
+	// 候補のIDを MAX_ID_PREDICATE_SIZE 件ずつに分けて問い合わせ、各回の先頭からページの末尾までを併合して並べ直す
+	private Slice<House> findSliceInChunks(Criteria criteria, String order, Pageable pageable) {
+		int limit = (int) pageable.getOffset() + pageable.getPageSize();
+		List<House> houses = new ArrayList<>();
+		boolean hasMore = false;
+		for (List<Integer> chunk : chunks(criteria.houseIds())) {
+			Slice<House> chunkSlice = findSlice(criteria.specification().and(HouseSpecifications.idIn(chunk)), order,
+					PageRequest.of(0, limit, pageable.getSort()));
+			houses.addAll(chunkSlice.getContent());
+			hasMore |= chunkSlice.hasNext();
+		}
+
+		Map<Integer, HouseRating> ratings = new HashMap<>();
+		if ("ratingDesc".equals(order)) {
+			for (List<Integer> chunk : chunks(houses.stream().map(House::getId).toList())) {
+				for (HouseRating houseRating : houseRatingRepository.findAllById(chunk)) {
+					ratings.put(houseRating.getHouseId(), houseRating);
+				}
+			}
+		}
+		houses.sort(comparator(order, ratings));
+
+		int from = Math.min(houses.size(), (int) pageable.getOffset());
+		int to = Math.min(houses.size(), limit);
+		return new SliceImpl<>(List.copyOf(houses.subList(from, to)), pageable, hasMore || houses.size() > limit);
+	}
+
+	// 絞り込み条件に一致する件数（候補のIDが多い場合は分割して数えた合計）
+	private long countMatches(Criteria criteria) {
+		long count = 0;
+		for (List<Integer> chunk : chunks(criteria.houseIds())) {
+			count += houseRepository.count(criteria.specification().and(HouseSpecifications.idIn(chunk)));
+		}
+		return count;
+	}
+
+	// 総件数（絞り込みなしは正確なカウンター、絞り込みありはTTL付きのキャッシュ）
+	private long count(String keyword, String area, Integer price, Integer capacity, LocalDate checkinDate,
+			LocalDate checkoutDate, Criteria criteria) {
+		// 宿泊期間で絞り込んだ件数は予約のたびに変わるため、キャッシュせずに数える
+		if (checkinDate != null && checkoutDate != null) {
+			return countMatches(criteria);
+		}
+		if (emptyToNull(keyword) == null && emptyToNull(area) == null && price == null && capacity == null) {
+			return listingCountCache.exact(ListingCountCache.HOUSES, houseRepository::count);
+		}
+		String key = ListingCountCache.HOUSES + "?keyword=" + emptyToNull(keyword) + "&area=" + emptyToNull(area)
+				+ "&price=" + price + "&capacity=" + capacity;
+		return listingCountCache.filtered(key, () -> countMatches(criteria));
+	}
+
+	// 候補のIDを MAX_ID_PREDICATE_SIZE 件ずつに分ける（候補がない場合は絞り込まない1回分）
+	private static List<List<Integer>> chunks(List<Integer> houseIds) {
+		if (houseIds == null) {
+			return Collections.singletonList(null);
+		}
+		List<List<Integer>> chunks = new ArrayList<>();
+		for (int i = 0; i < houseIds.size(); i += MAX_ID_PREDICATE_SIZE) {
+			chunks.add(houseIds.subList(i, Math.min(houseIds.size(), i + MAX_ID_PREDICATE_SIZE)));
+		}
+		return chunks;
+	}
+
+	// SQLの並び順（sort と findSliceOrderByRating）と同じ順に民宿を並べる比較器
+	private static Comparator<House> comparator(String order, Map<Integer, HouseRating> ratings) {
+		if ("priceAsc".equals(order)) {
+			return Comparator.comparing(House::getPrice).thenComparing(House::getId);
+		}
+		Comparator<House> newest = Comparator.comparing(House::getCreatedAt).thenComparing(House::getId).reversed();
+		if (!"ratingDesc".equals(order)) {
+			return newest;
+		}
+		// レビューのない民宿（平均点がNULL）は最後に並べる
+		Comparator<House> rating = Comparator.comparing(
+				(House house) -> ratings.containsKey(house.getId()) ? ratings.get(house.getId()).getAverageScore() : null,
+				Comparator.nullsFirst(Comparator.<BigDecimal> naturalOrder()))
+				.thenComparing(house -> ratings.containsKey(house.getId()) ? ratings.get(house.getId()).getReviewCount() : 0);
+		return rating.reversed().thenComparing(newest);
+	}
+
+	// SQLの絞り込み条件と、IN句に収まらないためにSQLの外で分割して渡す民宿IDの候補（分割しない場合はnull）
+	private record Criteria(Specification<House> specification, List<Integer> houseIds) {
+	}
+
+	private static String cursorKey(String order) {
+		return "priceAsc".equals(order) ? KeysetCursor.PRICE : KeysetCursor.CREATED_AT;
+	}
+
+	// ソート順に対応する並び順（複合インデックス (price, id) / (created_at, id) に合わせる）
+	private static Sort sort(String order) {
+		if ("priceAsc".equals(order)) {
+			return Sort.by(Sort.Order.asc("price"), Sort.Order.asc("id"));
+		}
+		return Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+	}
+
+	private static String emptyToNull(String value) {
+		return value == null || value.isEmpty() ? null : value;
+	}
+}
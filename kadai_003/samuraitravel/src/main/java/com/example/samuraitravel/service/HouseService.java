@@ -1,26 +1,58 @@
 package com.example.samuraitravel.service;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.UUID;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.samuraitravel.availability.AvailabilityCalendar;
+import com.example.samuraitravel.cache.CacheTransactions;
+import com.example.samuraitravel.cache.HouseFragmentCache;
+import com.example.samuraitravel.cache.ListingCountCache;
+import com.example.samuraitravel.cache.NewHousesCache;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.form.HouseEditForm;
 import com.example.samuraitravel.form.HouseRegisterForm;
+import com.example.samuraitravel.image.HouseImageStore;
+import com.example.samuraitravel.image.HouseImageVariants;
+import com.example.samuraitravel.image.ImageUploadException;
+import com.example.samuraitravel.image.StoredImageFile;
+import com.example.samuraitravel.pricing.PricingEngine;
 import com.example.samuraitravel.repository.HouseRepository;
+import com.example.samuraitravel.search.HousePriceIndex;
+import com.example.samuraitravel.search.HouseSearchIndex;
 
 @Service
 public class HouseService {
 	private final HouseRepository houseRepository;
+	private final HouseSearchIndex houseSearchIndex;
+	private final HousePriceIndex housePriceIndex;
+	private final ListingCountCache listingCountCache;
+	private final NewHousesCache newHousesCache;
+	private final HouseFragmentCache houseFragmentCache;
+	private final HouseRatingService houseRatingService;
+	private final PricingEngine pricingEngine;
+	private final HouseImageVariants houseImageVariants;
+	private final HouseImageStore houseImageStore;
+	private final AvailabilityCalendar availabilityCalendar;
 
-	public HouseService(HouseRepository houseRepository) {
+	public HouseService(HouseRepository houseRepository, HouseSearchIndex houseSearchIndex,
+			HousePriceIndex housePriceIndex, ListingCountCache listingCountCache, NewHousesCache newHousesCache,
+			HouseFragmentCache houseFragmentCache, HouseRatingService houseRatingService,
+			PricingEngine pricingEngine, HouseImageVariants houseImageVariants,
+			HouseImageStore houseImageStore, AvailabilityCalendar availabilityCalendar) {
 		this.houseRepository = houseRepository;
+		this.houseSearchIndex = houseSearchIndex;
+		this.housePriceIndex = housePriceIndex;
+		this.listingCountCache = listingCountCache;
+		this.newHousesCache = newHousesCache;
+		this.houseFragmentCache = houseFragmentCache;
+		this.houseRatingService = houseRatingService;
+		this.pricingEngine = pricingEngine;
+		this.houseImageVariants = houseImageVariants;
+		this.houseImageStore = houseImageStore;
+		this.availabilityCalendar = availabilityCalendar;
 	}
 
 	
@@ -34,12 +66,11 @@ public class HouseService {
 		MultipartFile imageFile = houseRegisterForm.getImageFile();
 		
 		// 画像ファイルがアップロードされている場合
-		if (!imageFile.isEmpty()) {
-			String imageName = imageFile.getOriginalFilename();
-			String hashedImageName = generateNewFileName(imageName);
-			Path filePath = Paths.get("src/main/resources/static/storage/" + hashedImageName);
-			copyImageFile(imageFile, filePath);
-			house.setImageName(hashedImageName);
+		if (imageFile != null && !imageFile.isEmpty()) {
+			String imageName = storeImage(imageFile);
+			house.setImageName(imageName);
+			// 縮小画像はコミット後に別スレッドで生成する
+			CacheTransactions.afterCommit(() -> houseImageVariants.generate(house.getId(), imageName));
 		}
 		
 		// フォームから取得した情報を民宿エンティティに設定
@@ -51,8 +82,18 @@ public class HouseService {
 		house.setAddress(houseRegisterForm.getAddress());
 		house.setPhoneNumber(houseRegisterForm.getPhoneNumber());
 
-		// データベースに民宿エンティティを保存
+		// データベースに民宿エンティティを保存し、DBの既定値で埋まる作成日時を読み直す
 		houseRepository.save(house);
+		houseRepository.refresh(house);
+		// 評価の集計行（レビュー0件）を作成
+		houseRatingService.created(house.getId());
+		// 検索インデックスと一覧の件数に反映（ロールバックされた登録を残さないようコミット後に反映）
+		CacheTransactions.afterCommit(() -> {
+			houseSearchIndex.put(house);
+			housePriceIndex.put(house);
+		});
+		CacheTransactions.afterCommit(() -> listingCountCache.increment(ListingCountCache.HOUSES));
+		newHousesCache.added(house);
 	}
 
 	@Transactional
@@ -64,12 +105,17 @@ public class HouseService {
 		// 編集フォームから画像ファイルを取得
 		MultipartFile imageFile = houseEditForm.getImageFile();
 		// 新しい画像ファイルがアップロードされている場合
-		if (!imageFile.isEmpty()) {
-			String imageName = imageFile.getOriginalFilename();
-			String hashedImageName = generateNewFileName(imageName);
-			Path filePath = Paths.get("src/main/resources/static/storage/" + hashedImageName);
-			copyImageFile(imageFile, filePath);
-			house.setImageName(hashedImageName);
+		if (imageFile != null && !imageFile.isEmpty()) {
+			String previousImageName = house.getImageName();
+			String imageName = storeImage(imageFile);
+			house.setImageName(imageName);
+			// 縮小画像はコミット後に別スレッドで生成し、差し替え前の画像は参照がなくなっていれば削除する
+			CacheTransactions.afterCommit(() -> {
+				houseImageVariants.generate(house.getId(), imageName);
+				if (!imageName.equals(previousImageName)) {
+					houseImageStore.release(previousImageName);
+				}
+			});
 		}
 		
 		// フォームから取得した情報を民宿エンティティに設定
@@ -83,30 +129,50 @@ public class HouseService {
 		
 		// データベースの民宿エンティティを更新
 		houseRepository.save(house);
+		// 検索インデックスに反映（コミット後）
+		CacheTransactions.afterCommit(() -> {
+			houseSearchIndex.put(house);
+			housePriceIndex.put(house);
+		});
+		newHousesCache.updated(house);
+		houseFragmentCache.evict(house.getId());
 	}
 
-	
 	/**
-	 * UUIDを使って生成したファイル名を返す
-	 * @param fileName （ファイル名）
-	 * @return hashedFileName （戻り値）
-	 * @author nunokawa （作成(修正など)した人）
+	 * 民宿情報を削除するメソッド
+	 * @param id 民宿ID
 	 */
-	public String generateNewFileName(String fileName) {
-		String[] fileNames = fileName.split("\\.");
-		for (int i = 0; i < fileNames.length - 1; i++) {
-			fileNames[i] = UUID.randomUUID().toString();
-		}
-		String hashedFileName = String.join(".", fileNames);
-		return hashedFileName;
+	@Transactional
+	public void delete(Integer id) {
+		String imageName = houseRepository.getReferenceById(id).getImageName();
+		houseRepository.deleteById(id);
+		// 画像は参照がなくなっていればコミット後に削除
+		CacheTransactions.afterCommit(() -> houseImageStore.release(imageName));
+		// 検索インデックス・空室カレンダーと一覧の件数からも削除（コミット後）
+		CacheTransactions.afterCommit(() -> {
+			houseSearchIndex.remove(id);
+			housePriceIndex.remove(id);
+			availabilityCalendar.remove(id);
+		});
+		CacheTransactions.afterCommit(() -> {
+			listingCountCache.decrement(ListingCountCache.HOUSES);
+			listingCountCache.evict(ListingCountCache.reviews(id));
+		});
+		newHousesCache.removed(id);
+		houseFragmentCache.evict(id);
+		pricingEngine.evict(id);
 	}
 
-	// 画像ファイルを指定したファイルにコピーする
-	public void copyImageFile(MultipartFile imageFile, Path filePath) {
+	// アップロードされた画像を内容のハッシュ値のファイル名で保存する（保存できない場合は登録・更新を取り消す）
+	private String storeImage(MultipartFile imageFile) {
+		// StreamingHouseUploadFilter が受け取りながら保存済みの画像
+		if (imageFile instanceof StoredImageFile storedImageFile) {
+			return storedImageFile.getImageName();
+		}
 		try {
-			Files.copy(imageFile.getInputStream(), filePath);
+			return houseImageStore.store(imageFile);
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new ImageUploadException(HouseImageStore.STORE_FAILED_MESSAGE, e);
 		}
 	}
-}
\ No newline at end of file
+}
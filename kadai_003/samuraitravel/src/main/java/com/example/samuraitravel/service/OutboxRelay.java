@@ -0,0 +1,135 @@
+package com.example.samuraitravel.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+import com.example.samuraitravel.event.OutboxDeliveryException;
+import com.example.samuraitravel.event.OutboxEventHandler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 送信待ちのイベントをまとめて取り出し、種類ごとに OutboxEventHandler へ渡すリレー。
+ *
+ * 送信は専用のスレッドで行い、予約の登録（Webhookの処理）やほかの定期処理を待たせない。
+ * 取り出した件数がバッチの上限に達した場合は、送信待ちがなくなるまで続けて取り出す。
+ * 送信結果の件数はメトリクスとして公開する（送信待ちのイベント数は OutboxService が公開する）。
+ */
+@Component
+public class OutboxRelay {
+	private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+	private final OutboxService outboxService;
+	private final List<OutboxEventHandler> outboxEventHandlers;
+	private final int batchSize;
+	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+	// 送信中のバッチがあるか（前回の送信が終わるまで次を始めない）
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final Counter sentCounter;
+	private final Counter retriedCounter;
+	private final Counter deadCounter;
+
+	public OutboxRelay(OutboxService outboxService, List<OutboxEventHandler> outboxEventHandlers,
+			MeterRegistry meterRegistry, @Value("${samuraitravel.outbox.batch-size:50}") int batchSize) {
+		this.outboxService = outboxService;
+		this.outboxEventHandlers = outboxEventHandlers;
+		this.batchSize = batchSize;
+
+		this.sentCounter = Counter.builder("samuraitravel.outbox.events")
+				.tag("result", "sent").register(meterRegistry);
+		this.retriedCounter = Counter.builder("samuraitravel.outbox.events")
+				.tag("result", "retried").register(meterRegistry);
+		this.deadCounter = Counter.builder("samuraitravel.outbox.events")
+				.tag("result", "dead").register(meterRegistry);
+	}
+
+	/**
+	 * 送信中のバッチがなければ、送信待ちのイベントの送信を始める（samuraitravel.outbox.poll-interval-ms ごとに実行）
+	 */
+	@Scheduled(fixedDelayString = "${samuraitravel.outbox.poll-interval-ms:1000}")
+	public void poll() {
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+		executorService.execute(() -> {
+			try {
+				relayPending();
+			} catch (RuntimeException e) {
+				logger.error("送信待ちのイベントを取り出せませんでした", e);
+			} finally {
+				running.set(false);
+			}
+		});
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executorService.shutdown();
+	}
+
+	// 送信待ちがなくなるまでバッチ単位で送信する
+	void relayPending() {
+		while (relayBatch() >= batchSize) {
+			// バッチの上限まで取り出せた場合は、残りがある可能性があるため続ける
+		}
+	}
+
+	// 1バッチ分のイベントを取り出して種類ごとに送信し、取り出した件数を返す
+	private int relayBatch() {
+		List<OutboxEvent> outboxEvents = outboxService.findAll(outboxService.claimReady(batchSize));
+		Map<String, List<OutboxEvent>> eventsByType = new LinkedHashMap<>();
+		for (OutboxEvent outboxEvent : outboxEvents) {
+			eventsByType.computeIfAbsent(outboxEvent.getEventType(), eventType -> new ArrayList<>()).add(outboxEvent);
+		}
+
+		for (Map.Entry<String, List<OutboxEvent>> entry : eventsByType.entrySet()) {
+			List<Integer> ids = entry.getValue().stream().map(OutboxEvent::getId).toList();
+			try {
+				for (OutboxEventHandler outboxEventHandler : outboxEventHandlers) {
+					if (outboxEventHandler.supports(entry.getKey())) {
+						outboxEventHandler.handle(entry.getValue());
+					}
+				}
+				markSent(ids);
+			} catch (OutboxDeliveryException e) {
+				// 届けられなかったイベントだけを再試行し、残りは送信済みにする
+				List<Integer> failedIds = ids.stream().filter(e.getFailedEventIds()::contains).toList();
+				markSent(ids.stream().filter(id -> !e.getFailedEventIds().contains(id)).toList());
+				markFailed(entry.getKey(), failedIds, e);
+			} catch (Exception e) {
+				markFailed(entry.getKey(), ids, e);
+			}
+		}
+		return outboxEvents.size();
+	}
+
+	private void markSent(List<Integer> ids) {
+		outboxService.markDone(ids);
+		sentCounter.increment(ids.size());
+	}
+
+	private void markFailed(String eventType, List<Integer> ids, Exception error) {
+		logger.warn("イベントを送信できませんでした。種類: {}, 件数: {}", eventType, ids.size(), error);
+		int dead = outboxService.markFailed(ids, error);
+		if (dead > 0) {
+			logger.error("送信待ちのイベントが再試行の上限に達しました。種類: {}, 件数: {}", eventType, dead);
+			deadCounter.increment(dead);
+		}
+		retriedCounter.increment(ids.size() - dead);
+	}
+}
@@ -0,0 +1,68 @@
+package com.example.samuraitravel.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+import com.example.samuraitravel.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 予約に伴う後続の処理の送信待ち（outbox_eventsテーブル）を操作するサービス。
+ *
+ * ReservationService は予約の登録と同じトランザクションで append を呼び、予約が確定した場合だけイベントが残るようにする。
+ * OutboxRelay が claimReady でまとめて取り出して各 OutboxEventHandler に渡す（少なくとも1回は届けるため、
+ * 同じイベントが重ねて届くことがある）。取り出し・再試行・削除の扱いは PollingQueueService を参照。
+ */
+@Service
+public class OutboxService extends PollingQueueService<OutboxEvent> {
+	private final OutboxEventRepository outboxEventRepository;
+
+	public OutboxService(OutboxEventRepository outboxEventRepository, MeterRegistry meterRegistry,
+			@Value("${samuraitravel.outbox.max-attempts:8}") int maxAttempts,
+			@Value("${samuraitravel.outbox.retry-base-seconds:30}") long retryBaseSeconds,
+			@Value("${samuraitravel.outbox.lease-seconds:300}") long leaseSeconds,
+			@Value("${samuraitravel.outbox.retention-days:7}") long retentionDays) {
+		super(outboxEventRepository, meterRegistry, "samuraitravel.outbox.queue", maxAttempts,
+				Duration.ofSeconds(retryBaseSeconds), Duration.ofSeconds(leaseSeconds), Duration.ofDays(retentionDays));
+		this.outboxEventRepository = outboxEventRepository;
+	}
+
+	/**
+	 * 呼び出し元のトランザクションでイベントを送信待ちとして保存する（トランザクションの外から呼んだ場合は例外）
+	 * @param eventType イベントの種類
+	 * @param reservationId 予約ID
+	 */
+	@Transactional(propagation = Propagation.MANDATORY)
+	public void append(String eventType, Integer reservationId) {
+		OutboxEvent outboxEvent = new OutboxEvent();
+		outboxEvent.setEventType(eventType);
+		outboxEvent.setReservationId(reservationId);
+		outboxEventRepository.save(outboxEvent);
+	}
+
+	/**
+	 * 保持期間を過ぎた送信済みのイベントを削除する（毎日 samuraitravel.outbox.purge-cron の時刻に実行）
+	 */
+	@Override
+	@Scheduled(cron = "${samuraitravel.outbox.purge-cron:0 40 4 * * *}")
+	@Transactional
+	public void purgeDone() {
+		super.purgeDone();
+	}
+
+	/**
+	 * 送信待ちのイベント数のメトリクスを更新する（samuraitravel.outbox.gauge-refresh-ms ごとに実行）
+	 */
+	@Override
+	@Scheduled(fixedDelayString = "${samuraitravel.outbox.gauge-refresh-ms:30000}")
+	public void refreshGauges() {
+		super.refreshGauges();
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.samuraitravel.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.samuraitravel.entity.QueuedEvent;
+import com.example.samuraitravel.repository.QueuedEventRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * DBのテーブルをキューとして使うサービスに共通の処理（StripeWebhookQueueService と OutboxService が継承する）。
+ *
+ * 取り出したイベントは期限付きで処理中にし、処理中に停止したインスタンスのイベントは期限が切れてから取り出し直す
+ * （ほかのインスタンスが処理中のイベントは奪わない）。失敗したイベントは試行回数に応じて間隔を倍にしながら再試行し、
+ * 上限に達したものは DEAD にして以降は取り出さない。処理済みのイベントは保持期間を過ぎたら purgeDone で削除する。
+ * 状態ごとのイベント数は、継承したサービスが refreshGauges を定期的に呼んでメトリクスに反映する。
+ */
+public abstract class PollingQueueService<T extends QueuedEvent> {
+	// 再試行の間隔の上限
+	private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+	// last_error に保存する最大文字数
+	private static final int MAX_ERROR_LENGTH = 1000;
+
+	private final QueuedEventRepository<T> queuedEventRepository;
+	private final int maxAttempts;
+	private final Duration retryBase;
+	private final Duration lease;
+	private final Duration retention;
+
+	// キューに残っているイベント数（refreshGauges で更新する）
+	private final AtomicLong pendingCount = new AtomicLong();
+	private final AtomicLong processingCount = new AtomicLong();
+	private final AtomicLong deadCount = new AtomicLong();
+
+	/**
+	 * @param queuedEventRepository キューのテーブルのリポジトリ
+	 * @param meterRegistry イベント数のメトリクスの登録先
+	 * @param metricName イベント数のメトリクス名（status タグで状態を区別する）
+	 * @param maxAttempts 試行回数の上限
+	 * @param retryBase 最初の再試行までの間隔
+	 * @param lease 取り出したイベントを処理中にしておく期限
+	 * @param retention 処理済みのイベントの保持期間
+	 */
+	protected PollingQueueService(QueuedEventRepository<T> queuedEventRepository, MeterRegistry meterRegistry,
+			String metricName, int maxAttempts, Duration retryBase, Duration lease, Duration retention) {
+		this.queuedEventRepository = queuedEventRepository;
+		this.maxAttempts = maxAttempts;
+		this.retryBase = retryBase;
+		this.lease = lease;
+		this.retention = retention;
+
+		Gauge.builder(metricName, pendingCount, AtomicLong::get).tag("status", "pending").register(meterRegistry);
+		Gauge.builder(metricName, processingCount, AtomicLong::get).tag("status", "processing").register(meterRegistry);
+		Gauge.builder(metricName, deadCount, AtomicLong::get).tag("status", "dead").register(meterRegistry);
+	}
+
+	/**
+	 * 試行時刻を過ぎた処理待ちのイベント（と期限の切れた処理中のイベント）を期限付きで処理中にして取り出す
+	 * @param limit 取り出す最大件数
+	 * @return 取り出したイベントのID
+	 */
+	@Transactional
+	public List<Integer> claimReady(int limit) {
+		List<Integer> claimedIds = new ArrayList<>();
+		if (limit <= 0) {
+			return claimedIds;
+		}
+		Timestamp now = Timestamp.from(Instant.now());
+		Timestamp lockedUntil = Timestamp.from(now.toInstant().plus(lease));
+		for (Integer id : queuedEventRepository.findReadyIds(now, PageRequest.of(0, limit))) {
+			if (queuedEventRepository.claim(id, now, lockedUntil) > 0) {
+				claimedIds.add(id);
+			}
+		}
+		return claimedIds;
+	}
+
+	public T find(Integer id) {
+		return queuedEventRepository.findById(id).orElse(null);
+	}
+
+	public List<T> findAll(Collection<Integer> ids) {
+		return ids.isEmpty() ? List.of() : queuedEventRepository.findAllById(ids);
+	}
+
+	/**
+	 * イベントをまとめて処理済みにする
+	 * @param ids イベントのID
+	 */
+	@Transactional
+	public void markDone(Collection<Integer> ids) {
+		if (!ids.isEmpty()) {
+			queuedEventRepository.markDone(ids);
+		}
+	}
+
+	/**
+	 * 処理に失敗したイベントを再試行待ちにする（試行回数が上限に達したものは DEAD にする）
+	 * @param ids イベントのID
+	 * @param error 失敗の原因
+	 * @return DEAD にしたイベントの数
+	 */
+	@Transactional
+	public int markFailed(Collection<Integer> ids, Exception error) {
+		String message = error.getClass().getName() + ": " + error.getMessage();
+		String lastError = message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+		int deadCount = 0;
+		for (T queuedEvent : findAll(ids)) {
+			int attempts = queuedEvent.getAttempts();
+			queuedEvent.setLastError(lastError);
+			if (attempts >= maxAttempts) {
+				queuedEvent.setStatus(QueuedEvent.DEAD);
+				deadCount++;
+			} else {
+				queuedEvent.setStatus(QueuedEvent.PENDING);
+				queuedEvent.setNextAttemptAt(Timestamp.from(Instant.now().plus(backoff(attempts))));
+			}
+		}
+		return deadCount;
+	}
+
+	/**
+	 * 状態ごとのイベント数を取得する
+	 * @param status 状態
+	 * @return イベント数
+	 */
+	public long count(String status) {
+		return queuedEventRepository.countByStatus(status);
+	}
+
+	/**
+	 * 保持期間を過ぎた処理済みのイベントを削除する
+	 */
+	@Transactional
+	public void purgeDone() {
+		queuedEventRepository.deleteDoneBefore(Timestamp.from(Instant.now().minus(retention)));
+	}
+
+	/**
+	 * キューに残っているイベント数のメトリクスを更新する（取り出しのたびに数えるとテーブルを何度も走査するため、長めの間隔で呼ぶ）
+	 */
+	public void refreshGauges() {
+		pendingCount.set(count(QueuedEvent.PENDING));
+		processingCount.set(count(QueuedEvent.PROCESSING));
+		deadCount.set(count(QueuedEvent.DEAD));
+	}
+
+	// 試行回数に応じた再試行までの間隔（基準の間隔から倍々に延ばし、上限で打ち止めにする）
+	private Duration backoff(int attempts) {
+		Duration backoff = retryBase.multipliedBy(1L << Math.min(attempts - 1, 20));
+		return backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff;
+	}
+}
@@ -1,15 +1,19 @@
 package com.example.samuraitravel.service;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.samuraitravel.availability.AvailabilityCalendar;
+import com.example.samuraitravel.availability.HouseLocks;
+import com.example.samuraitravel.cache.CacheTransactions;
 import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.OutboxEvent;
 import com.example.samuraitravel.entity.Reservation;
 import com.example.samuraitravel.entity.User;
+import com.example.samuraitravel.pricing.PricingEngine;
 import com.example.samuraitravel.repository.HouseRepository;
 import com.example.samuraitravel.repository.ReservationRepository;
 import com.example.samuraitravel.repository.UserRepository;
@@ -20,27 +24,45 @@ public class ReservationService {
     private final ReservationRepository reservationRepository;  // 予約リポジトリ
     private final HouseRepository houseRepository;  // 物件リポジトリ
     private final UserRepository userRepository;  // ユーザーリポジトリ
+    private final AvailabilityCalendar availabilityCalendar;  // 空室カレンダー
+    private final HouseLocks houseLocks;  // 民宿ごとの予約登録のロック
+    private final TransactionTemplate transactionTemplate;  // ロックの内側でトランザクションを開始・コミットする
+    private final StripeProcessedEventService stripeProcessedEventService;  // 処理済みのStripeイベント
+    private final PricingEngine pricingEngine;  // 宿泊料金の計算
+    private final OutboxService outboxService;  // 予約に伴う後続の処理の送信待ち
+    
+    // 予約の登録結果
+    public enum CreateResult {
+        CREATED,  // 登録した
+        CONFLICT,  // 宿泊期間が既存の予約と重複するため登録しなかった（処理済みとしては記録しない）
+        DUPLICATE  // 同じ支払いの予約が登録済みのため何もしなかった
+    }
     
     // コンストラクタインジェクションによる依存関係の注入
-    public ReservationService(ReservationRepository reservationRepository, HouseRepository houseRepository, UserRepository userRepository) {
+    public ReservationService(ReservationRepository reservationRepository, HouseRepository houseRepository, UserRepository userRepository,
+            AvailabilityCalendar availabilityCalendar, HouseLocks houseLocks, TransactionTemplate transactionTemplate,
+            StripeProcessedEventService stripeProcessedEventService, PricingEngine pricingEngine,
+            OutboxService outboxService) {
         this.reservationRepository = reservationRepository;  
         this.houseRepository = houseRepository;  
         this.userRepository = userRepository;  
+        this.availabilityCalendar = availabilityCalendar;
+        this.houseLocks = houseLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.stripeProcessedEventService = stripeProcessedEventService;
+        this.pricingEngine = pricingEngine;
+        this.outboxService = outboxService;
     }    
     
     // 予約を作成するメソッド
-    @Transactional  // トランザクション管理を有効にする
-    public void create(Map<String, String> paymentIntentObject) {
-        Reservation reservation = new Reservation();  // 新しい予約オブジェクトを作成
-        
-        // リクエストから必要な情報を抽出し、予約オブジェクトに設定
+    // 同じ物件の予約は物件ごとのロックで順番に登録し、宿泊期間が重複する場合は登録しない
+    // （ロックはトランザクションの外側で取得し、コミットして空室カレンダーに反映してから解放する）
+    // 登録したStripeイベントは同じトランザクションで記録し、再送されても二重に登録しない
+    public CreateResult create(Map<String, String> paymentIntentObject, String eventId, String paymentIntentId) {
+        // リクエストから必要な情報を抽出
         Integer houseId = Integer.valueOf(paymentIntentObject.get("houseId"));  // 物件ID
         Integer userId = Integer.valueOf(paymentIntentObject.get("userId"));  // ユーザーID
         
-        // 物件とユーザー情報をリポジトリから取得
-        House house = houseRepository.getReferenceById(houseId);       
-        User user = userRepository.getReferenceById(userId);
-        
         // チェックイン日とチェックアウト日をLocalDateに変換
         LocalDate checkinDate = LocalDate.parse(paymentIntentObject.get("checkinDate"));
         LocalDate checkoutDate = LocalDate.parse(paymentIntentObject.get("checkoutDate"));
@@ -49,16 +71,49 @@ public class ReservationService {
         Integer numberOfPeople = Integer.valueOf(paymentIntentObject.get("numberOfPeople"));        
         Integer amount = Integer.valueOf(paymentIntentObject.get("amount")); 
         
-        // 予約オブジェクトにデータをセット
-        reservation.setHouse(house);
-        reservation.setUser(user);
-        reservation.setCheckinDate(checkinDate);
-        reservation.setCheckoutDate(checkoutDate);
-        reservation.setNumberOfPeople(numberOfPeople);
-        reservation.setAmount(amount);
-        
-        // 予約をデータベースに保存
-        reservationRepository.save(reservation);
+        return houseLocks.withLock(houseId, () -> transactionTemplate.execute(status -> {
+            // 同じ支払いの予約は同じ物件のロックで登録されるため、ここで確認すれば再送と競合しない
+            if (stripeProcessedEventService.isPaymentIntentProcessed(paymentIntentId)) {
+                return CreateResult.DUPLICATE;
+            }
+            
+            // 空室カレンダーはコミット済みの予約だけを持つため、予約済みと分かればDBを確認するまでもなく重複
+            // （重複した支払いは呼び出し元が返金してから処理済みとして記録するため、ここでは記録しない）
+            if (!availabilityCalendar.isAvailable(houseId, checkinDate, checkoutDate)) {
+                return CreateResult.CONFLICT;
+            }
+            
+            // ロックと空室カレンダーはこのJVMの中でしか効かないため、物件の行をロックしてからDBの予約で重複を確認する
+            // （別のサーバーで登録された予約も、ロックの解放を待ってから確認するため割り込まれない）
+            houseRepository.lockById(houseId);
+            if (reservationRepository.existsOverlapping(houseId, checkinDate, checkoutDate)) {
+                return CreateResult.CONFLICT;
+            }
+            
+            // 物件とユーザー情報をリポジトリから取得
+            House house = houseRepository.getReferenceById(houseId);       
+            User user = userRepository.getReferenceById(userId);
+            
+            // 予約オブジェクトにデータをセット
+            Reservation reservation = new Reservation();  // 新しい予約オブジェクトを作成
+            reservation.setHouse(house);
+            reservation.setUser(user);
+            reservation.setCheckinDate(checkinDate);
+            reservation.setCheckoutDate(checkoutDate);
+            reservation.setNumberOfPeople(numberOfPeople);
+            reservation.setAmount(amount);
+            
+            // 予約をデータベースに保存し、イベントを処理済みとして記録
+            reservationRepository.save(reservation);
+            stripeProcessedEventService.record(eventId, paymentIntentId);
+            
+            // 確認メールなどの後続の処理は送信待ちとして同じトランザクションで保存し、OutboxRelay が後から送る
+            outboxService.append(OutboxEvent.RESERVATION_CREATED, reservation.getId());
+            
+            // コミット後（ロックを解放する前）に空室カレンダーの宿泊日を予約済みにする
+            CacheTransactions.afterCommit(() -> availabilityCalendar.reserve(houseId, checkinDate, checkoutDate));
+            return CreateResult.CREATED;
+        }));
     }    
     
     // 宿泊人数が定員内かどうかをチェックするメソッド
@@ -68,16 +123,17 @@ public class ReservationService {
         return numberOfPeople <= capacity;
     }
     
+    // 指定した期間に予約が入っていないかをチェックするメソッド
+    // houseId: 物件ID、checkinDate: チェックイン日、checkoutDate: チェックアウト日
+    public boolean isAvailable(Integer houseId, LocalDate checkinDate, LocalDate checkoutDate) {
+        // 空室カレンダーで宿泊日がすべて空いているか確認し、trueまたはfalseを返す
+        return availabilityCalendar.isAvailable(houseId, checkinDate, checkoutDate);
+    }
+    
     // 宿泊料金を計算するメソッド
-    // checkinDate: チェックイン日、checkoutDate: チェックアウト日、price: 1泊あたりの料金
-    public Integer calculateAmount(LocalDate checkinDate, LocalDate checkoutDate, Integer price) {
-        // チェックイン日とチェックアウト日の間の日数を計算
-        long numberOfNights = ChronoUnit.DAYS.between(checkinDate, checkoutDate);
-        
-        // 宿泊日数に1泊あたりの料金を掛けて宿泊料金を計算
-        int amount = price * (int)numberOfNights;
-        
-        // 計算した金額を返す
-        return amount;
+    // houseId: 物件ID、checkinDate: チェックイン日、checkoutDate: チェックアウト日、price: 1泊あたりの料金
+    // （曜日・繁忙期ごとの1泊の料金の合計に連泊割引をかけた金額。割増・割引の設定がなければ 1泊あたりの料金 × 泊数）
+    public Integer calculateAmount(Integer houseId, LocalDate checkinDate, LocalDate checkoutDate, Integer price) {
+        return pricingEngine.quote(houseId, price, checkinDate, checkoutDate);
     }    
 }
@@ -3,6 +3,9 @@ package com.example.samuraitravel.service;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.samuraitravel.cache.CacheTransactions;
+import com.example.samuraitravel.cache.HouseFragmentCache;
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.House;
 import com.example.samuraitravel.entity.Review;
 import com.example.samuraitravel.entity.User;
@@ -15,10 +18,17 @@ import com.example.samuraitravel.repository.UserRepository;
 @Service
 public class ReviewService {
 	private final ReviewRepository reviewRepository;
+	private final ListingCountCache listingCountCache;
+	private final HouseFragmentCache houseFragmentCache;
+	private final HouseRatingService houseRatingService;
 
 	public ReviewService(ReviewRepository reviewRepository, HouseRepository houseRepository,
-			UserRepository userRepository) {
+			UserRepository userRepository, ListingCountCache listingCountCache, HouseFragmentCache houseFragmentCache,
+			HouseRatingService houseRatingService) {
 		this.reviewRepository = reviewRepository;
+		this.houseRatingService = houseRatingService;
+		this.listingCountCache = listingCountCache;
+		this.houseFragmentCache = houseFragmentCache;
 	}
 
 	@Transactional
@@ -31,15 +41,40 @@ public class ReviewService {
 		review.setReviewText(reviewPostForm.getReviewText());
 
 		reviewRepository.save(review);
+		// 民宿ごとの評価の集計に加える
+		houseRatingService.added(house.getId(), review.getReviewScore());
+		// 民宿ごとのレビュー件数（コミット後）と民宿詳細ページの断片に反映
+		CacheTransactions.afterCommit(() -> listingCountCache.increment(ListingCountCache.reviews(house.getId())));
+		houseFragmentCache.evict(house.getId());
 	}
 
+	@Transactional
 	public void update(ReviewEditForm reviewEditForm) {
 		Review review = reviewRepository.getReferenceById(reviewEditForm.getId());
+		int oldScore = review.getReviewScore();
 
 		review.setReviewScore(reviewEditForm.getReviewScore());
 		review.setReviewText(reviewEditForm.getReviewText());
 
 		reviewRepository.save(review);
+		// 民宿ごとの評価の集計を編集後の点数に置き換える
+		houseRatingService.changed(review.getHouse().getId(), oldScore, review.getReviewScore());
+		// 民宿詳細ページのレビュー一覧に反映
+		houseFragmentCache.evict(review.getHouse().getId());
+	}
+
+	@Transactional
+	public void delete(Integer reviewId) {
+		Review review = reviewRepository.getReferenceById(reviewId);
+		Integer houseId = review.getHouse().getId();
+		int score = review.getReviewScore();
+
+		reviewRepository.delete(review);
+		// 民宿ごとの評価の集計から取り除く
+		houseRatingService.removed(houseId, score);
+		// 民宿ごとのレビュー件数（コミット後）と民宿詳細ページの断片に反映
+		CacheTransactions.afterCommit(() -> listingCountCache.decrement(ListingCountCache.reviews(houseId)));
+		houseFragmentCache.evict(houseId);
 	}
 }
 
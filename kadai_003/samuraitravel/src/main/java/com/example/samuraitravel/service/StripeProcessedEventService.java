@@ -0,0 +1,95 @@
+package com.example.samuraitravel.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.stereotype.Service;
+
+import com.example.samuraitravel.cache.CacheTransactions;
+import com.example.samuraitravel.entity.StripeProcessedEvent;
+import com.example.samuraitravel.repository.StripeProcessedEventRepository;
+
+/**
+ * 処理済みのStripe Webhookイベントを管理するサービス。
+ *
+ * Stripeは同じイベントを再送することがあるため、処理したイベントIDとPaymentIntent IDを
+ * stripe_processed_eventsテーブル（それぞれ一意）に予約の登録と同じトランザクションで記録する。
+ * 最近処理したIDはメモリにも保持し、再送されたイベントはDBやStripe APIにアクセスせずに読み飛ばす。
+ */
+@Service
+public class StripeProcessedEventService {
+	// メモリに保持するIDの上限（古いものから捨てる）
+	private static final int MAX_RECENT_IDS = 10000;
+
+	private final StripeProcessedEventRepository stripeProcessedEventRepository;
+
+	// 最近処理したイベントIDとPaymentIntent ID（"evt_" と "pi_" で始まるため同じ集合で区別できる）
+	private final Set<String> recentIds = Collections.synchronizedSet(Collections.newSetFromMap(
+			new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+					return size() > MAX_RECENT_IDS;
+				}
+			}));
+
+	public StripeProcessedEventService(StripeProcessedEventRepository stripeProcessedEventRepository) {
+		this.stripeProcessedEventRepository = stripeProcessedEventRepository;
+	}
+
+	/**
+	 * イベントがすでに処理済みかを確認する（メモリになければDBを確認する）
+	 * @param eventId StripeのイベントID
+	 * @param paymentIntentId PaymentIntent ID（不明な場合はnull）
+	 * @return 処理済みの場合はtrue
+	 */
+	public boolean isProcessed(String eventId, String paymentIntentId) {
+		if (recentIds.contains(eventId) || (paymentIntentId != null && recentIds.contains(paymentIntentId))) {
+			return true;
+		}
+		if (stripeProcessedEventRepository.existsByEventId(eventId)) {
+			recentIds.add(eventId);
+			return true;
+		}
+		return isPaymentIntentProcessed(paymentIntentId);
+	}
+
+	/**
+	 * PaymentIntentの予約がすでに処理済みかを確認する
+	 * @param paymentIntentId PaymentIntent ID（nullの場合は未処理として扱う）
+	 * @return 処理済みの場合はtrue
+	 */
+	public boolean isPaymentIntentProcessed(String paymentIntentId) {
+		if (paymentIntentId == null) {
+			return false;
+		}
+		if (recentIds.contains(paymentIntentId)) {
+			return true;
+		}
+		if (stripeProcessedEventRepository.existsByPaymentIntentId(paymentIntentId)) {
+			recentIds.add(paymentIntentId);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * イベントを処理済みとして記録する（呼び出し元のトランザクションで保存し、コミット後にメモリにも保持する）
+	 * @param eventId StripeのイベントID
+	 * @param paymentIntentId PaymentIntent ID
+	 */
+	public void record(String eventId, String paymentIntentId) {
+		StripeProcessedEvent stripeProcessedEvent = new StripeProcessedEvent();
+		stripeProcessedEvent.setEventId(eventId);
+		stripeProcessedEvent.setPaymentIntentId(paymentIntentId);
+		stripeProcessedEventRepository.save(stripeProcessedEvent);
+
+		CacheTransactions.afterCommit(() -> {
+			recentIds.add(eventId);
+			if (paymentIntentId != null) {
+				recentIds.add(paymentIntentId);
+			}
+		});
+	}
+}
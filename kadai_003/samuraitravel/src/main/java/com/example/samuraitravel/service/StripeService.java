@@ -1,15 +1,22 @@
 package com.example.samuraitravel.service;
 
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import com.example.samuraitravel.cache.CheckoutSessionCache;
 import com.example.samuraitravel.form.ReservationRegisterForm;
+import com.example.samuraitravel.stripe.StripeGateway;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
+import com.stripe.model.Refund;
 import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
 import com.stripe.param.checkout.SessionCreateParams;
@@ -19,20 +26,46 @@ import jakarta.servlet.http.HttpServletRequest;
 
 @Service
 public class StripeService {
-	@Value("${stripe.api-key}")
-	private String stripeApiKey;
+	private static final Logger logger = LoggerFactory.getLogger(StripeService.class);
+
+	// 予約の登録に必要なメタデータのキー
+	private static final List<String> RESERVATION_METADATA_KEYS = List.of("houseId", "userId", "checkinDate",
+			"checkoutDate", "numberOfPeople", "amount");
 
 	private final ReservationService reservationService;
+	private final StripeProcessedEventService stripeProcessedEventService;
+	private final StripeGateway stripeGateway;
+	private final CheckoutSessionCache checkoutSessionCache;
 
-	public StripeService(ReservationService reservationService) {
+	public StripeService(ReservationService reservationService,
+			StripeProcessedEventService stripeProcessedEventService, StripeGateway stripeGateway,
+			CheckoutSessionCache checkoutSessionCache) {
 		this.reservationService = reservationService;
+		this.stripeProcessedEventService = stripeProcessedEventService;
+		this.stripeGateway = stripeGateway;
+		this.checkoutSessionCache = checkoutSessionCache;
 	}
 
 	// セッションを作成し、Stripeに必要な情報を返す
+	// 同じ予約内容で作成したセッションを保持している場合は、作り直さずにそのIDを返す
+	// （支払いの完了・期限切れは Webhook で受け取ってキャッシュから破棄するため、ここでは Stripe API で状態を確認しない）
 	public String createStripeSession(String houseName, ReservationRegisterForm reservationRegisterForm,
 			HttpServletRequest httpServletRequest) {
-		Stripe.apiKey = stripeApiKey;
+		return checkoutSessionCache.get(reservationRegisterForm,
+				() -> createNewStripeSession(houseName, reservationRegisterForm, httpServletRequest));
+	}
+
+	// Stripeに新しいセッションを作成する
+	private String createNewStripeSession(String houseName, ReservationRegisterForm reservationRegisterForm,
+			HttpServletRequest httpServletRequest) {
 		String requestUrl = new String(httpServletRequest.getRequestURL());
+		Map<String, String> metadata = new LinkedHashMap<>();
+		metadata.put("houseId", reservationRegisterForm.getHouseId().toString());
+		metadata.put("userId", reservationRegisterForm.getUserId().toString());
+		metadata.put("checkinDate", reservationRegisterForm.getCheckinDate());
+		metadata.put("checkoutDate", reservationRegisterForm.getCheckoutDate());
+		metadata.put("numberOfPeople", reservationRegisterForm.getNumberOfPeople().toString());
+		metadata.put("amount", reservationRegisterForm.getAmount().toString());
 		SessionCreateParams params = SessionCreateParams.builder()
 				.addPaymentMethodType(SessionCreateParams.PaymentMethodType.CARD)
 				.addLineItem(
@@ -49,50 +82,110 @@ public class StripeService {
 								.setQuantity(1L)
 								.build())
 				.setMode(SessionCreateParams.Mode.PAYMENT)
+				// キャッシュの保持期間より十分に長い有効期限を明示し、キャッシュから期限切れのセッションを返さないようにする
+				.setExpiresAt(Instant.now().plus(CheckoutSessionCache.SESSION_LIFETIME).getEpochSecond())
 				.setSuccessUrl(
 						requestUrl.replaceAll("/houses/[0-9]+/reservations/confirm", "") + "/reservations?reserved")
 				.setCancelUrl(requestUrl.replace("/reservations/confirm", ""))
+				// 予約情報はセッション自体にも持たせ、Webhookのペイロードだけで予約を登録できるようにする
+				.putAllMetadata(metadata)
 				.setPaymentIntentData(
 						SessionCreateParams.PaymentIntentData.builder()
-								.putMetadata("houseId", reservationRegisterForm.getHouseId().toString())
-								.putMetadata("userId", reservationRegisterForm.getUserId().toString())
-								.putMetadata("checkinDate", reservationRegisterForm.getCheckinDate())
-								.putMetadata("checkoutDate", reservationRegisterForm.getCheckoutDate())
-								.putMetadata("numberOfPeople", reservationRegisterForm.getNumberOfPeople().toString())
-								.putMetadata("amount", reservationRegisterForm.getAmount().toString())
+								.putAllMetadata(metadata)
 								.build())
 				.build();
 		try {
-			Session session = Session.create(params);
+			Session session = stripeGateway.createCheckoutSession(params);
 			return session.getId();
 		} catch (StripeException e) {
-			e.printStackTrace();
+			logger.error("Checkoutセッションを作成できませんでした。", e);
 			return "";
 		}
 	}
 
-	// セッションから予約情報を取得し、ReservationServiceクラスを介してデータベースに登録する  
-	public void processSessionCompleted(Event event) {
+	// セッションから予約情報を取得し、ReservationServiceクラスを介してデータベースに登録する
+	// Stripe APIの呼び出しに失敗した場合は例外を投げる（Webhookの受信キューから呼ばれた場合は再試行される）
+	public void processSessionCompleted(Event event) throws StripeException {
 		Optional<StripeObject> optionalStripeObject = event.getDataObjectDeserializer().getObject();
-		optionalStripeObject.ifPresentOrElse(stripeObject -> {
-			Session session = (Session) stripeObject;
+		if (optionalStripeObject.isEmpty()) {
+			logger.warn("予約一覧ページの登録処理が失敗しました。Stripe API Version: {}, stripe-java Version: {}",
+					event.getApiVersion(), Stripe.VERSION);
+			return;
+		}
+		Session session = (Session) optionalStripeObject.get();
+
+		// 再送されたイベントは、Stripe APIや予約テーブルにアクセスせずに読み飛ばす
+		if (stripeProcessedEventService.isProcessed(event.getId(), session.getPaymentIntent())) {
+			logger.info("処理済みのイベントのため、予約の登録をスキップしました。Event ID: {}", event.getId());
+			return;
+		}
+
+		Map<String, String> paymentIntentObject;
+		String paymentIntentId;
+		if (hasReservationMetadata(session.getMetadata()) && session.getPaymentIntent() != null) {
+			// セッションに予約情報がある場合は、Webhookのペイロードをそのまま使う
+			paymentIntentObject = session.getMetadata();
+			paymentIntentId = session.getPaymentIntent();
+		} else {
+			// セッションに予約情報がない場合（以前に作成したセッション）は、PaymentIntentを展開して取得し直す
 			SessionRetrieveParams params = SessionRetrieveParams.builder().addExpand("payment_intent").build();
+			session = stripeGateway.retrieveCheckoutSession(session.getId(), params);
+			paymentIntentObject = session.getPaymentIntentObject().getMetadata();
+			paymentIntentId = session.getPaymentIntentObject().getId();
+		}
+		ReservationService.CreateResult result = reservationService.create(paymentIntentObject, event.getId(),
+				paymentIntentId);
+		// 支払いが完了したセッションは予約確認ページで使い回さない
+		evictCheckoutSession(paymentIntentObject);
+		if (result == ReservationService.CreateResult.DUPLICATE) {
+			logger.info("同じ支払いの予約が登録済みのため、予約の登録をスキップしました。PaymentIntent ID: {}", paymentIntentId);
+			return;
+		}
+		if (result == ReservationService.CreateResult.CONFLICT) {
+			refundConflictingPayment(event.getId(), paymentIntentId, paymentIntentObject);
+			return;
+		}
+		logger.info("予約一覧ページの登録処理が成功しました。Stripe API Version: {}, stripe-java Version: {}",
+				event.getApiVersion(), Stripe.VERSION);
+	}
+
+	// 期限切れになったセッションを、予約確認ページで使い回さないようにキャッシュから破棄する
+	public void processSessionExpired(Event event) {
+		Optional<StripeObject> optionalStripeObject = event.getDataObjectDeserializer().getObject();
+		if (optionalStripeObject.isEmpty()) {
+			logger.warn("期限切れのセッションを処理できませんでした。Stripe API Version: {}, stripe-java Version: {}",
+					event.getApiVersion(), Stripe.VERSION);
+			return;
+		}
+		Session session = (Session) optionalStripeObject.get();
+		// セッションに予約情報がない場合（以前に作成したセッション）は、キャッシュの保持期限が切れるのを待つ
+		if (hasReservationMetadata(session.getMetadata())) {
+			evictCheckoutSession(session.getMetadata());
+		}
+	}
+
+	// 予約情報のメタデータに対応するセッションをキャッシュから破棄する
+	private void evictCheckoutSession(Map<String, String> metadata) {
+		checkoutSessionCache.evict(new ReservationRegisterForm(Integer.valueOf(metadata.get("houseId")),
+				Integer.valueOf(metadata.get("userId")), metadata.get("checkinDate"), metadata.get("checkoutDate"),
+				Integer.valueOf(metadata.get("numberOfPeople")), Integer.valueOf(metadata.get("amount"))));
+	}
+
+	// 宿泊期間が重複して予約を登録できなかった支払いを返金し、イベントを処理済みとして記録する。
+	// 返金に失敗した場合は例外を投げ、Webhookの受信キューで再試行する（上限に達したイベントは DEAD として残り、手動で対応する）
+	private void refundConflictingPayment(String eventId, String paymentIntentId,
+			Map<String, String> paymentIntentObject) throws StripeException {
+		logger.warn("宿泊期間が既存の予約と重複しているため、予約を登録せずに返金します。PaymentIntent ID: {}, 民宿ID: {}, 期間: {}〜{}",
+				paymentIntentId, paymentIntentObject.get("houseId"), paymentIntentObject.get("checkinDate"),
+				paymentIntentObject.get("checkoutDate"));
+		Refund refund = stripeGateway.refundPaymentIntent(paymentIntentId, "reservation_conflict");
+		stripeProcessedEventService.record(eventId, paymentIntentId);
+		logger.warn("返金しました。PaymentIntent ID: {}, Refund ID: {}, 状態: {}", paymentIntentId, refund.getId(),
+				refund.getStatus());
+	}
 
-			try {
-				session = Session.retrieve(session.getId(), params, null);
-				Map<String, String> paymentIntentObject = session.getPaymentIntentObject().getMetadata();
-				reservationService.create(paymentIntentObject);
-			} catch (StripeException e) {
-				e.printStackTrace();
-			}
-			System.out.println("予約一覧ページの登録処理が成功しました。");
-			System.out.println("Stripe API Version: " + event.getApiVersion());
-			System.out.println("stripe-java Version: " + Stripe.VERSION);
-		},
-				() -> {
-					System.out.println("予約一覧ページの登録処理が失敗しました。");
-					System.out.println("Stripe API Version: " + event.getApiVersion());
-					System.out.println("stripe-java Version: " + Stripe.VERSION);
-				});
+	// 予約の登録に必要なメタデータがそろっているか
+	private static boolean hasReservationMetadata(Map<String, String> metadata) {
+		return metadata != null && metadata.keySet().containsAll(RESERVATION_METADATA_KEYS);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.example.samuraitravel.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.samuraitravel.entity.StripeWebhookEvent;
+import com.example.samuraitravel.repository.StripeWebhookEventRepository;
+import com.stripe.model.Event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 受信したStripe Webhookイベントのキュー（stripe_webhook_eventsテーブル）を操作するサービス。
+ *
+ * StripeWebhookController は署名を検証したイベントを enqueue で保存してすぐに応答し、
+ * StripeWebhookWorker が claimReady で取り出して処理する。取り出し・再試行・削除の扱いは PollingQueueService を参照。
+ * 処理中の期限は samuraitravel.stripe.webhook.lease-seconds、処理済みのイベントの保持期間は
+ * samuraitravel.stripe.webhook.retention-days で設定する。
+ */
+@Service
+public class StripeWebhookQueueService extends PollingQueueService<StripeWebhookEvent> {
+	private final StripeWebhookEventRepository stripeWebhookEventRepository;
+
+	public StripeWebhookQueueService(StripeWebhookEventRepository stripeWebhookEventRepository,
+			MeterRegistry meterRegistry,
+			@Value("${samuraitravel.stripe.webhook.max-attempts:8}") int maxAttempts,
+			@Value("${samuraitravel.stripe.webhook.retry-base-seconds:10}") long retryBaseSeconds,
+			@Value("${samuraitravel.stripe.webhook.lease-seconds:300}") long leaseSeconds,
+			@Value("${samuraitravel.stripe.webhook.retention-days:7}") long retentionDays) {
+		super(stripeWebhookEventRepository, meterRegistry, "samuraitravel.stripe.webhook.queue", maxAttempts,
+				Duration.ofSeconds(retryBaseSeconds), Duration.ofSeconds(leaseSeconds), Duration.ofDays(retentionDays));
+		this.stripeWebhookEventRepository = stripeWebhookEventRepository;
+	}
+
+	/**
+	 * 署名を検証したイベントを処理待ちとして保存する
+	 * @param event イベント
+	 * @param payload 受信したペイロード
+	 * @return 新しく保存した場合はtrue（同じイベントが保存済みの場合はfalse）
+	 */
+	@Transactional
+	public boolean enqueue(Event event, String payload) {
+		return stripeWebhookEventRepository.insertPending(event.getId(), event.getType(), payload) > 0;
+	}
+
+	/**
+	 * 保持期間を過ぎた処理済みのイベントを削除する（毎日 samuraitravel.stripe.webhook.purge-cron の時刻に実行）。
+	 * Stripeが再送するのは最大3日間で、再送されたイベントは stripe_processed_events でも読み飛ばすため、削除しても二重に処理しない
+	 */
+	@Override
+	@Scheduled(cron = "${samuraitravel.stripe.webhook.purge-cron:0 30 4 * * *}")
+	@Transactional
+	public void purgeDone() {
+		super.purgeDone();
+	}
+
+	/**
+	 * キューに残っているイベント数のメトリクスを更新する（取り出しより長い samuraitravel.stripe.webhook.gauge-refresh-ms ごとに実行）
+	 */
+	@Override
+	@Scheduled(fixedDelayString = "${samuraitravel.stripe.webhook.gauge-refresh-ms:30000}")
+	public void refreshGauges() {
+		super.refreshGauges();
+	}
+}
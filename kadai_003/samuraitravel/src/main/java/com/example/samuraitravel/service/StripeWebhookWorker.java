@@ -0,0 +1,113 @@
+package com.example.samuraitravel.service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.samuraitravel.entity.StripeWebhookEvent;
+import com.example.samuraitravel.stripe.StripeGateway;
+import com.stripe.model.Event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Webhookの受信キューから取り出したイベントを、固定数のスレッドで StripeService に渡して処理するワーカー。
+ *
+ * 処理中のイベント数はスレッド数までに制限し、空きがある分だけキューから取り出す。
+ * 処理結果の件数はメトリクスとして公開する（キューに残っているイベント数は StripeWebhookQueueService が公開する）。
+ */
+@Component
+public class StripeWebhookWorker {
+	private static final Logger logger = LoggerFactory.getLogger(StripeWebhookWorker.class);
+
+	private final StripeWebhookQueueService stripeWebhookQueueService;
+	private final StripeService stripeService;
+	private final StripeGateway stripeGateway;
+	private final ExecutorService executorService;
+	// 空いているスレッドの数（取り出したイベントの処理が終わるまで返さない）
+	private final Semaphore freeWorkers;
+
+	private final Counter processedCounter;
+	private final Counter retriedCounter;
+	private final Counter deadCounter;
+
+	public StripeWebhookWorker(StripeWebhookQueueService stripeWebhookQueueService, StripeService stripeService,
+			StripeGateway stripeGateway, MeterRegistry meterRegistry,
+			@Value("${samuraitravel.stripe.webhook.worker-threads:4}") int workerThreads) {
+		this.stripeWebhookQueueService = stripeWebhookQueueService;
+		this.stripeService = stripeService;
+		this.stripeGateway = stripeGateway;
+		this.executorService = Executors.newFixedThreadPool(workerThreads);
+		this.freeWorkers = new Semaphore(workerThreads);
+
+		this.processedCounter = Counter.builder("samuraitravel.stripe.webhook.events")
+				.tag("result", "processed").register(meterRegistry);
+		this.retriedCounter = Counter.builder("samuraitravel.stripe.webhook.events")
+				.tag("result", "retried").register(meterRegistry);
+		this.deadCounter = Counter.builder("samuraitravel.stripe.webhook.events")
+				.tag("result", "dead").register(meterRegistry);
+	}
+
+	/**
+	 * 空いているスレッドの数だけ処理待ちのイベントを取り出して処理する（samuraitravel.stripe.webhook.poll-interval-ms ごとに実行）
+	 */
+	@Scheduled(fixedDelayString = "${samuraitravel.stripe.webhook.poll-interval-ms:500}")
+	public void poll() {
+		int permits = freeWorkers.drainPermits();
+		List<Integer> ids;
+		try {
+			ids = stripeWebhookQueueService.claimReady(permits);
+		} catch (RuntimeException e) {
+			freeWorkers.release(permits);
+			throw e;
+		}
+		// 取り出せなかった分のスレッドはすぐに返す
+		freeWorkers.release(permits - ids.size());
+		for (Integer id : ids) {
+			executorService.execute(() -> {
+				try {
+					process(id);
+				} finally {
+					freeWorkers.release();
+				}
+			});
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executorService.shutdown();
+	}
+
+	// 1件のイベントを処理し、結果をキューに記録する
+	private void process(Integer id) {
+		try {
+			StripeWebhookEvent stripeWebhookEvent = stripeWebhookQueueService.find(id);
+			Event event = stripeGateway.parseEvent(stripeWebhookEvent.getPayload());
+			if ("checkout.session.completed".equals(event.getType())) {
+				stripeService.processSessionCompleted(event);
+			} else if ("checkout.session.expired".equals(event.getType())) {
+				stripeService.processSessionExpired(event);
+			}
+			stripeWebhookQueueService.markDone(List.of(id));
+			processedCounter.increment();
+		} catch (Exception e) {
+			logger.warn("Webhookイベントを処理できませんでした。キューID: {}", id, e);
+			if (stripeWebhookQueueService.markFailed(List.of(id), e) > 0) {
+				logger.error("Webhookイベントの処理が再試行の上限に達しました。キューID: {}", id);
+				deadCounter.increment();
+			} else {
+				retriedCounter.increment();
+			}
+		}
+	}
+}
@@ -4,6 +4,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.samuraitravel.cache.CacheTransactions;
+import com.example.samuraitravel.cache.HouseFragmentCache;
+import com.example.samuraitravel.cache.ListingCountCache;
 import com.example.samuraitravel.entity.Role;
 import com.example.samuraitravel.entity.User;
 import com.example.samuraitravel.form.SignupForm;
@@ -16,11 +19,16 @@ public class UserService {
 	private final UserRepository userRepository;
 	private final RoleRepository roleRepository;
 	private final PasswordEncoder passwordEncoder;
+	private final ListingCountCache listingCountCache;
+	private final HouseFragmentCache houseFragmentCache;
 
-	public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+	public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder,
+			ListingCountCache listingCountCache, HouseFragmentCache houseFragmentCache) {
 		this.userRepository = userRepository;
 		this.roleRepository = roleRepository;
 		this.passwordEncoder = passwordEncoder;
+		this.listingCountCache = listingCountCache;
+		this.houseFragmentCache = houseFragmentCache;
 	}
 
 	@Transactional
@@ -38,7 +46,10 @@ public class UserService {
 		user.setRole(role);
 		user.setEnabled(false);
 
-		return userRepository.save(user);
+		User savedUser = userRepository.save(user);
+		// 会員一覧の件数に反映（ロールバックされた登録を数えないようコミット後）
+		CacheTransactions.afterCommit(() -> listingCountCache.increment(ListingCountCache.USERS));
+		return savedUser;
 	}
 
 	@Transactional
@@ -53,6 +64,8 @@ public class UserService {
 		user.setEmail(userEditForm.getEmail());
 
 		userRepository.save(user);
+		// 民宿詳細ページのレビュー一覧に表示している名前に反映
+		houseFragmentCache.clear();
 	}
 
 	// メールアドレスが登録済みかどうかをチェックする
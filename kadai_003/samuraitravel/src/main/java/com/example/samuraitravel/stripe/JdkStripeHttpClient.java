@@ -0,0 +1,77 @@
+package com.example.samuraitravel.stripe;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.HttpContent;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+
+/**
+ * stripe-java の通信を java.net.http.HttpClient で行う実装。
+ *
+ * 標準の HttpURLConnection による実装と違い、このクライアント専用の接続プールを持ち、
+ * 接続を使い回す（Keep-Alive、HTTP/2 に対応していれば多重化する）。
+ */
+class JdkStripeHttpClient extends com.stripe.net.HttpClient {
+	// java.net.http.HttpClient が自分で設定するため、リクエストに含めてはいけないヘッダー
+	private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+			"upgrade");
+
+	private final HttpClient httpClient;
+
+	JdkStripeHttpClient(Duration connectTimeout) {
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(connectTimeout)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.build();
+	}
+
+	@Override
+	public StripeResponse request(StripeRequest request) throws StripeException {
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(request.url().toURI())
+					.timeout(Duration.ofMillis(request.options().getReadTimeout()));
+
+			builder.header("User-Agent", buildUserAgentString(request));
+			builder.header("X-Stripe-Client-User-Agent", buildXStripeClientUserAgentString());
+			for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+				if (!RESTRICTED_HEADERS.contains(header.getKey().toLowerCase())) {
+					builder.setHeader(header.getKey(), String.join(",", header.getValue()));
+				}
+			}
+
+			HttpContent content = request.content();
+			if (content == null) {
+				builder.method(request.method().name(), HttpRequest.BodyPublishers.noBody());
+			} else {
+				builder.setHeader("Content-Type", content.contentType());
+				builder.method(request.method().name(),
+						HttpRequest.BodyPublishers.ofByteArray(content.byteArrayContent()));
+			}
+
+			HttpResponse<String> response = httpClient.send(builder.build(),
+					HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+			return new StripeResponse(response.statusCode(), HttpHeaders.of(response.headers().map()),
+					response.body());
+		} catch (IOException | URISyntaxException e) {
+			throw new ApiConnectionException("IOException during API request to Stripe (" + request.url() + "): "
+					+ e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ApiConnectionException("Interrupted during API request to Stripe (" + request.url() + ")", e);
+		}
+	}
+}
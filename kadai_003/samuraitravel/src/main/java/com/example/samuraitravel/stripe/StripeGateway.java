@@ -0,0 +1,200 @@
+package com.example.samuraitravel.stripe;
+
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.stripe.Stripe;
+import com.stripe.StripeClient;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Refund;
+import com.stripe.model.StripeObject;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.Authenticator;
+import com.stripe.net.BearerTokenAuthenticator;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponseGetter;
+import com.stripe.net.StripeResponseGetterOptions;
+import com.stripe.param.RefundCreateParams;
+import com.stripe.param.checkout.SessionCreateParams;
+import com.stripe.param.checkout.SessionRetrieveParams;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Stripe API の呼び出しをまとめたクラス。
+ *
+ * APIキーや接続設定をグローバルな Stripe.apiKey ではなく、このクラスが持つ StripeClient に設定するため、
+ * リクエストのたびに共有の static 変数を書き換える必要はない。通信は専用の接続プールを持つ JdkStripeHttpClient で行う。
+ * 呼び出しごとの所要時間は samuraitravel.stripe.requests（operation・outcome ごとのヒストグラム）として記録する。
+ */
+@Component
+public class StripeGateway {
+	private final StripeResponseGetter responseGetter;
+	private final StripeClient stripeClient;
+	private final MeterRegistry meterRegistry;
+
+	public StripeGateway(@Value("${stripe.api-key}") String apiKey,
+			@Value("${samuraitravel.stripe.api-base:" + Stripe.LIVE_API_BASE + "}") String apiBase,
+			@Value("${samuraitravel.stripe.connect-timeout-ms:5000}") int connectTimeoutMillis,
+			@Value("${samuraitravel.stripe.read-timeout-ms:20000}") int readTimeoutMillis,
+			@Value("${samuraitravel.stripe.max-network-retries:2}") int maxNetworkRetries,
+			MeterRegistry meterRegistry) {
+		StripeResponseGetterOptions options = new StripeResponseGetterOptions() {
+			private final Authenticator authenticator = new BearerTokenAuthenticator(apiKey);
+
+			@Override
+			public Authenticator getAuthenticator() {
+				return authenticator;
+			}
+
+			@Override
+			public String getClientId() {
+				return null;
+			}
+
+			@Override
+			public int getConnectTimeout() {
+				return connectTimeoutMillis;
+			}
+
+			@Override
+			public Proxy getConnectionProxy() {
+				return null;
+			}
+
+			@Override
+			public int getMaxNetworkRetries() {
+				return maxNetworkRetries;
+			}
+
+			@Override
+			public PasswordAuthentication getProxyCredential() {
+				return null;
+			}
+
+			@Override
+			public String getApiBase() {
+				return apiBase;
+			}
+
+			@Override
+			public String getFilesBase() {
+				return Stripe.UPLOAD_API_BASE;
+			}
+
+			@Override
+			public String getConnectBase() {
+				return Stripe.CONNECT_API_BASE;
+			}
+
+			@Override
+			public String getMeterEventsBase() {
+				return Stripe.METER_EVENTS_API_BASE;
+			}
+
+			@Override
+			public int getReadTimeout() {
+				return readTimeoutMillis;
+			}
+
+			@Override
+			public String getStripeContext() {
+				return null;
+			}
+		};
+		this.responseGetter = new LiveStripeResponseGetter(options,
+				new JdkStripeHttpClient(Duration.ofMillis(connectTimeoutMillis)));
+		this.stripeClient = new StripeClient(responseGetter);
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Checkout Session を作成する
+	 * @param params 作成パラメータ
+	 * @return 作成したセッション
+	 */
+	public Session createCheckoutSession(SessionCreateParams params) throws StripeException {
+		return record("checkout.session.create", () -> stripeClient.checkout().sessions().create(params));
+	}
+
+	/**
+	 * Checkout Session を取得する
+	 * @param sessionId セッションID
+	 * @param params 取得パラメータ（展開する項目など）
+	 * @return セッション
+	 */
+	public Session retrieveCheckoutSession(String sessionId, SessionRetrieveParams params) throws StripeException {
+		return record("checkout.session.retrieve",
+				() -> stripeClient.checkout().sessions().retrieve(sessionId, params));
+	}
+
+	/**
+	 * PaymentIntent の支払いを全額返金する。
+	 * 同じ PaymentIntent に対する返金は同じ冪等キーで送るため、再試行しても二重に返金されない。
+	 * @param paymentIntentId PaymentIntent ID
+	 * @param reason 返金の理由（メタデータとして保存する）
+	 * @return 返金
+	 */
+	public Refund refundPaymentIntent(String paymentIntentId, String reason) throws StripeException {
+		RefundCreateParams params = RefundCreateParams.builder()
+				.setPaymentIntent(paymentIntentId)
+				.putMetadata("reason", reason)
+				.build();
+		RequestOptions requestOptions = RequestOptions.builder()
+				.setIdempotencyKey("refund-" + paymentIntentId)
+				.build();
+		return record("refund.create", () -> stripeClient.refunds().create(params, requestOptions));
+	}
+
+	/**
+	 * Webhookの署名を検証してイベントを構築する
+	 * @param payload 受信したペイロード
+	 * @param sigHeader Stripe-Signature ヘッダー
+	 * @param webhookSecret Webhookのシークレットキー
+	 * @return イベント
+	 */
+	public Event constructEvent(String payload, String sigHeader, String webhookSecret)
+			throws SignatureVerificationException {
+		return stripeClient.constructEvent(payload, sigHeader, webhookSecret);
+	}
+
+	/**
+	 * 署名の検証済みのペイロード（Webhookの受信キューに保存したもの）からイベントを復元する
+	 * @param payload ペイロード
+	 * @return イベント
+	 */
+	public Event parseEvent(String payload) {
+		return StripeObject.deserializeStripeObject(payload, Event.class, responseGetter);
+	}
+
+	// 呼び出しの所要時間を、操作と結果（success / error）ごとに記録する
+	private <T> T record(String operation, StripeCall<T> call) throws StripeException {
+		long start = System.nanoTime();
+		String outcome = "error";
+		try {
+			T result = call.call();
+			outcome = "success";
+			return result;
+		} finally {
+			Timer.builder("samuraitravel.stripe.requests")
+					.tag("operation", operation)
+					.tag("outcome", outcome)
+					.publishPercentileHistogram()
+					.register(meterRegistry)
+					.record(Duration.ofNanos(System.nanoTime() - start));
+		}
+	}
+
+	@FunctionalInterface
+	private interface StripeCall<T> {
+		T call() throws StripeException;
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.samuraitravel.view;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.RequestContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.context.webmvc.SpringWebMvcThymeleafRequestContext;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.spring6.naming.SpringContextVariableNames;
+import org.thymeleaf.web.IWebExchange;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * テンプレートの断片（th:fragment）を、処理中のリクエストと同じ条件で文字列に描画する。
+ *
+ * 描画結果は HouseFragmentCache で複数のユーザーに共有するため、URLにセッションIDを
+ * 埋め込まない（HttpServletResponse#encodeURL を無効にした）レスポンスで描画する。
+ */
+@Component
+public class FragmentRenderer {
+	private final SpringTemplateEngine templateEngine;
+	private final ApplicationContext applicationContext;
+	private final ConversionService conversionService;
+
+	public FragmentRenderer(SpringTemplateEngine templateEngine, ApplicationContext applicationContext,
+			ConversionService mvcConversionService) {
+		this.templateEngine = templateEngine;
+		this.applicationContext = applicationContext;
+		this.conversionService = mvcConversionService;
+	}
+
+	/**
+	 * テンプレートの断片を描画する
+	 * @param template テンプレート名（例: houses/show-fragments）
+	 * @param fragment 断片名
+	 * @param locale ロケール
+	 * @param variables 断片に渡す変数
+	 * @return 描画済みのHTML
+	 */
+	public String render(String template, String fragment, Locale locale, Map<String, Object> variables) {
+		ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+		HttpServletRequest request = attributes.getRequest();
+		HttpServletResponse response = new SharedResponse(attributes.getResponse());
+
+		// ThymeleafView と同じく、Spring の式評価やリクエスト情報を参照できるようにする
+		Map<String, Object> model = new HashMap<>(variables);
+		RequestContext requestContext = new RequestContext(request, response, request.getServletContext(), model);
+		model.put(SpringContextVariableNames.SPRING_REQUEST_CONTEXT, requestContext);
+		model.put(SpringContextVariableNames.THYMELEAF_REQUEST_CONTEXT,
+				new SpringWebMvcThymeleafRequestContext(requestContext, request));
+		model.put(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+				new ThymeleafEvaluationContext(applicationContext, conversionService));
+
+		IWebExchange exchange = JakartaServletWebApplication.buildApplication(request.getServletContext())
+				.buildExchange(request, response);
+		return templateEngine.process(template, Set.of(fragment), new WebContext(exchange, locale, model));
+	}
+
+	// 共有する断片にセッションIDなどユーザー固有の情報を含めないためのレスポンス
+	private static class SharedResponse extends HttpServletResponseWrapper {
+		private SharedResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public String encodeURL(String url) {
+			return url;
+		}
+
+		@Override
+		public String encodeRedirectURL(String url) {
+			return url;
+		}
+	}
+}
@@ -61,6 +61,60 @@ CREATE TABLE IF NOT EXISTS reservations
    FOREIGN KEY (user_id) REFERENCES users (id)
 );
 
+-- 処理済みのStripe Webhookイベント。予約の登録と同じトランザクションで記録し、再送されたイベントを読み飛ばす
+CREATE TABLE IF NOT EXISTS stripe_processed_events
+(
+   id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+   event_id VARCHAR(255) NOT NULL UNIQUE,
+   payment_intent_id VARCHAR(255) UNIQUE,
+   created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 受信したStripe Webhookイベントのキュー。署名を検証して保存した後、ワーカーが非同期に予約を登録する
+-- status: PENDING（処理待ち）/ PROCESSING（処理中）/ DONE（処理済み）/ DEAD（再試行の上限に達した）
+CREATE TABLE IF NOT EXISTS stripe_webhook_events
+(
+   id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+   event_id VARCHAR(255) NOT NULL UNIQUE,
+   event_type VARCHAR(255) NOT NULL,
+   payload MEDIUMTEXT NOT NULL,
+   status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+   attempts INT NOT NULL DEFAULT 0,
+   next_attempt_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+   -- 処理中の期限（この時刻を過ぎても処理中のままのイベントは、ほかのワーカーが取り出し直す）
+   locked_until DATETIME,
+   last_error VARCHAR(1000),
+   created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+   updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+   -- 処理待ちのイベントを次の試行時刻順に取り出す用
+   INDEX idx_stripe_webhook_events_status_next_attempt_at (status, next_attempt_at, id),
+   -- 期限の切れた処理中のイベントと、保持期間を過ぎた処理済みのイベントを探す用
+   INDEX idx_stripe_webhook_events_status_locked_until (status, locked_until),
+   INDEX idx_stripe_webhook_events_status_updated_at (status, updated_at)
+);
+
+-- 予約に伴う後続の処理（確認メールの送信など）の送信待ち。予約の登録と同じトランザクションで書き込み、OutboxRelay が取り出して送る
+CREATE TABLE IF NOT EXISTS outbox_events
+(
+   id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+   event_type VARCHAR(50) NOT NULL,
+   reservation_id INT NOT NULL,
+   status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+   attempts INT NOT NULL DEFAULT 0,
+   next_attempt_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+   -- 送信中の期限（この時刻を過ぎても送信中のままのイベントは、ほかのリレーが取り出し直す）
+   locked_until DATETIME,
+   last_error VARCHAR(1000),
+   created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+   updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+   FOREIGN KEY (reservation_id) REFERENCES reservations (id),
+   -- 送信待ちのイベントを次の試行時刻順に取り出す用
+   INDEX idx_outbox_events_status_next_attempt_at (status, next_attempt_at, id),
+   -- 期限の切れた送信中のイベントと、保持期間を過ぎた送信済みのイベントを探す用
+   INDEX idx_outbox_events_status_locked_until (status, locked_until),
+   INDEX idx_outbox_events_status_updated_at (status, updated_at)
+);
+
 CREATE TABLE IF NOT EXISTS review
 (
    id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
@@ -73,6 +127,24 @@ CREATE TABLE IF NOT EXISTS review
    FOREIGN KEY (house_id) REFERENCES houses (id),
    FOREIGN KEY (user_id) REFERENCES users (id)
 );
+
+-- 民宿ごとのレビューの集計（件数・合計点・星1〜5の件数）。ReviewService の登録・更新・削除と同じトランザクションで更新する
+CREATE TABLE IF NOT EXISTS house_ratings
+(
+   house_id INT NOT NULL PRIMARY KEY,
+   review_count INT NOT NULL DEFAULT 0,
+   score_sum INT NOT NULL DEFAULT 0,
+   star1_count INT NOT NULL DEFAULT 0,
+   star2_count INT NOT NULL DEFAULT 0,
+   star3_count INT NOT NULL DEFAULT 0,
+   star4_count INT NOT NULL DEFAULT 0,
+   star5_count INT NOT NULL DEFAULT 0,
+   average_score DECIMAL(4, 3) AS (IF(review_count = 0, NULL, score_sum / review_count)) STORED,
+   updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+   FOREIGN KEY (house_id) REFERENCES houses (id) ON DELETE CASCADE,
+   -- 評価が高い順の並び替え用
+   INDEX idx_house_ratings_average_score (average_score, review_count, house_id)
+);
 CREATE TABLE IF NOT EXISTS samuraitravel_db.favorites (
     id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
     house_id INT NOT NULL,
@@ -81,5 +153,80 @@ CREATE TABLE IF NOT EXISTS samuraitravel_db.favorites (
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     UNIQUE (house_id, user_id),
     FOREIGN KEY (house_id) REFERENCES houses (id),
-    FOREIGN KEY (user_id) REFERENCES users (id)  
+    FOREIGN KEY (user_id) REFERENCES users (id)
 );
+
+-- テーブルの作成後に追加するインデックス。CREATE TABLE IF NOT EXISTS はテーブルがあると何もしないため、
+-- 既存のデータベースにも追加されるよう、同じ名前のインデックスがない場合だけ作成する（MySQLの CREATE INDEX には IF NOT EXISTS がない）
+
+-- 民宿一覧の絞り込み・並び替え用の複合インデックス（価格順）
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'houses' AND index_name = 'idx_houses_price_id') = 0,
+   'CREATE INDEX idx_houses_price_id ON houses (price, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 民宿一覧の絞り込み・並び替え用の複合インデックス（新着順）
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'houses' AND index_name = 'idx_houses_created_at_id') = 0,
+   'CREATE INDEX idx_houses_created_at_id ON houses (created_at, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 民宿一覧の絞り込み・並び替え用の複合インデックス（定員と価格の範囲）
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'houses' AND index_name = 'idx_houses_capacity_price') = 0,
+   'CREATE INDEX idx_houses_capacity_price ON houses (capacity, price)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 民宿一覧の絞り込み・並び替え用の複合インデックス（住所の前方一致）
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'houses' AND index_name = 'idx_houses_address') = 0,
+   'CREATE INDEX idx_houses_address ON houses (address)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 予約一覧のキーセット方式ページネーション用
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'reservations' AND index_name = 'idx_reservations_user_created_at_id') = 0,
+   'CREATE INDEX idx_reservations_user_created_at_id ON reservations (user_id, created_at, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- レビュー一覧のキーセット方式ページネーション用
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'review' AND index_name = 'idx_review_house_created_at_id') = 0,
+   'CREATE INDEX idx_review_house_created_at_id ON review (house_id, created_at, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- お気に入り一覧のキーセット方式ページネーション用
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'favorites' AND index_name = 'idx_favorites_user_created_at_id') = 0,
+   'CREATE INDEX idx_favorites_user_created_at_id ON favorites (user_id, created_at, id)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 予約の登録時に宿泊期間の重複を確認する用（民宿の行ロックを持ったまま検索するため、全件走査にしない）
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'reservations' AND index_name = 'idx_reservations_house_checkin_date') = 0,
+   'CREATE INDEX idx_reservations_house_checkin_date ON reservations (house_id, checkin_date, checkout_date)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 画像の参照数の確認用
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+      AND table_name = 'houses' AND index_name = 'idx_houses_image_name') = 0,
+   'CREATE INDEX idx_houses_image_name ON houses (image_name)', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,90 @@
+package com.example.samuraitravel.availability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.samuraitravel.repository.ReservationRepository;
+
+/**
+ * AvailabilityCalendar の日付とビット位置の対応を、月・年をまたぐ予約とチェックアウト日の扱いで確認する。
+ * 基準日は起動した年の1月1日のため、日付はすべて今年の1月1日からの相対で指定する。
+ */
+class AvailabilityCalendarTest {
+	private static final int HOUSE_ID = 1;
+	private static final int OTHER_HOUSE_ID = 2;
+
+	private final LocalDate newYearsDay = LocalDate.now().withDayOfYear(1);
+	private ReservationRepository reservationRepository;
+	private AvailabilityCalendar availabilityCalendar;
+
+	@BeforeEach
+	void setUp() {
+		reservationRepository = mock(ReservationRepository.class);
+		when(reservationRepository.findStaysCheckingOutAfter(any())).thenReturn(List.of());
+		availabilityCalendar = new AvailabilityCalendar(reservationRepository);
+		availabilityCalendar.rebuild();
+	}
+
+	@Test
+	void checkoutDayIsNotReserved() {
+		LocalDate checkin = newYearsDay.plusDays(10);
+		availabilityCalendar.reserve(HOUSE_ID, checkin, checkin.plusDays(2));
+
+		// チェックアウト日の夜からは次の予約を受け付ける
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkin.plusDays(2), checkin.plusDays(4))).isTrue();
+		// 前の予約のチェックアウト日にチェックアウトする予約も重ならない
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkin.minusDays(2), checkin)).isTrue();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkin.plusDays(1), checkin.plusDays(3))).isFalse();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkin.minusDays(1), checkin.plusDays(1))).isFalse();
+		assertThat(availabilityCalendar.isAvailable(OTHER_HOUSE_ID, checkin, checkin.plusDays(2))).isTrue();
+	}
+
+	@Test
+	void staysAcrossMonthEnd() {
+		// 2月末（うるう年は29日）をまたいで3月に入る予約
+		LocalDate checkin = newYearsDay.withMonth(2).withDayOfMonth(newYearsDay.withMonth(2).lengthOfMonth() - 1);
+		LocalDate checkout = newYearsDay.withMonth(3).withDayOfMonth(2);
+		availabilityCalendar.reserve(HOUSE_ID, checkin, checkout);
+
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, newYearsDay.withMonth(3).withDayOfMonth(1),
+				newYearsDay.withMonth(3).withDayOfMonth(3))).isFalse();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkout, checkout.plusDays(1))).isTrue();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkin.minusDays(1), checkin)).isTrue();
+	}
+
+	@Test
+	void staysAcrossYearEnd() {
+		// 12月30日から翌年1月2日まで（ビット位置は1年分の日数を超える）
+		LocalDate checkin = newYearsDay.withMonth(12).withDayOfMonth(30);
+		LocalDate checkout = newYearsDay.plusYears(1).plusDays(1);
+		availabilityCalendar.reserve(HOUSE_ID, checkin, checkout);
+
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, newYearsDay.plusYears(1), checkout)).isFalse();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, checkout, checkout.plusDays(3))).isTrue();
+		assertThat(availabilityCalendar.findReservedHouseIds(newYearsDay.withMonth(12).withDayOfMonth(31),
+				newYearsDay.plusYears(1))).containsExactly(HOUSE_ID);
+		assertThat(availabilityCalendar.findReservedHouseIds(checkout, checkout.plusDays(7))).isEmpty();
+	}
+
+	@Test
+	void staysBeforeBaseDateOnlyReserveNightsFromBaseDate() {
+		// 前年の12月30日から今年の1月2日まで（基準日より前の宿泊日は管理しない）
+		when(reservationRepository.findStaysCheckingOutAfter(any())).thenReturn(List.<Object[]> of(
+				new Object[] { HOUSE_ID, newYearsDay.minusDays(2), newYearsDay.plusDays(1) }));
+		availabilityCalendar.rebuild();
+
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, newYearsDay, newYearsDay.plusDays(1))).isFalse();
+		assertThat(availabilityCalendar.isAvailable(HOUSE_ID, newYearsDay.plusDays(1), newYearsDay.plusDays(2)))
+				.isTrue();
+		assertThat(availabilityCalendar.findReservedHouseIds(newYearsDay.minusDays(5), newYearsDay.plusDays(1)))
+				.containsExactly(HOUSE_ID);
+	}
+}
@@ -0,0 +1,116 @@
+package com.example.samuraitravel.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.OutboxEvent;
+import com.example.samuraitravel.entity.Reservation;
+import com.example.samuraitravel.entity.User;
+import com.example.samuraitravel.repository.ReservationRepository;
+
+/**
+ * ReservationMailHandler が一部のメールだけを送れなかった場合に、そのメールの元のイベントだけを
+ * OutboxDeliveryException で知らせることを確認する。
+ */
+class ReservationMailHandlerTest {
+	private static final String HOST_ADDRESS = "host@example.com";
+
+	private ReservationRepository reservationRepository;
+	private JavaMailSender javaMailSender;
+	private ReservationMailHandler reservationMailHandler;
+	private final List<SimpleMailMessage> sentMessages = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		reservationRepository = mock(ReservationRepository.class);
+		javaMailSender = mock(JavaMailSender.class);
+		when(reservationRepository.findByIdIn(any()))
+				.thenReturn(List.of(reservation(100, "first@example.com"), reservation(200, "second@example.com")));
+		reservationMailHandler = new ReservationMailHandler(reservationRepository, javaMailSender,
+				"sender@example.com", HOST_ADDRESS);
+	}
+
+	@Test
+	void allMessagesAreSentInOneCall() throws Exception {
+		doAnswer(invocation -> {
+			for (Object argument : invocation.getArguments()) {
+				sentMessages.add((SimpleMailMessage) argument);
+			}
+			return null;
+		}).when(javaMailSender).send(any(SimpleMailMessage[].class));
+
+		reservationMailHandler.handle(List.of(event(1, 100), event(2, 200)));
+
+		assertThat(sentMessages).extracting(message -> message.getTo()[0])
+				.containsExactlyInAnyOrder("first@example.com", HOST_ADDRESS, "second@example.com", HOST_ADDRESS);
+	}
+
+	@Test
+	void onlyEventsOfFailedMessagesAreReported() {
+		doAnswer(invocation -> {
+			Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+			for (Object argument : invocation.getArguments()) {
+				SimpleMailMessage message = (SimpleMailMessage) argument;
+				if ("second@example.com".equals(message.getTo()[0])) {
+					failedMessages.put(message, new IllegalStateException("550 mailbox unavailable"));
+				}
+			}
+			throw new MailSendException(failedMessages);
+		}).when(javaMailSender).send(any(SimpleMailMessage[].class));
+
+		assertThatThrownBy(() -> reservationMailHandler.handle(List.of(event(1, 100), event(2, 200))))
+				.isInstanceOfSatisfying(OutboxDeliveryException.class,
+						e -> assertThat(e.getFailedEventIds()).containsExactly(2));
+	}
+
+	@Test
+	void unknownFailuresAreRethrown() {
+		doThrow(new MailSendException("connection refused")).when(javaMailSender).send(any(SimpleMailMessage[].class));
+
+		assertThatThrownBy(() -> reservationMailHandler.handle(List.of(event(1, 100), event(2, 200))))
+				.isInstanceOf(MailSendException.class);
+	}
+
+	private static OutboxEvent event(Integer id, Integer reservationId) {
+		OutboxEvent outboxEvent = new OutboxEvent();
+		outboxEvent.setId(id);
+		outboxEvent.setEventType(OutboxEvent.RESERVATION_CREATED);
+		outboxEvent.setReservationId(reservationId);
+		return outboxEvent;
+	}
+
+	private static Reservation reservation(Integer id, String email) {
+		House house = new House();
+		house.setName("SAMURAIの宿");
+		User user = new User();
+		user.setName("侍 太郎");
+		user.setEmail(email);
+		Reservation reservation = new Reservation();
+		reservation.setId(id);
+		reservation.setHouse(house);
+		reservation.setUser(user);
+		reservation.setCheckinDate(LocalDate.of(2026, 4, 1));
+		reservation.setCheckoutDate(LocalDate.of(2026, 4, 3));
+		reservation.setNumberOfPeople(2);
+		reservation.setAmount(20000);
+		return reservation;
+	}
+}
@@ -0,0 +1,164 @@
+package com.example.samuraitravel.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * S3ImageStorage の保存・取得・一覧・削除を、ローカルに立てたS3互換APIのスタブ（メモリ上のバケット）で確認する。
+ * スタブは一覧を LIST_PAGE_SIZE 件ずつ返し、続きの取得（continuation-token）も確認する。
+ */
+class S3ImageStorageTest {
+	private static final String BUCKET = "samuraitravel";
+	private static final String PREFIX = "houses/";
+	private static final int LIST_PAGE_SIZE = 2;
+
+	private final Map<String, byte[]> objects = new ConcurrentSkipListMap<>();
+	private final List<String> authorizations = new ArrayList<>();
+	private HttpServer s3Stub;
+	private S3ImageStorage s3ImageStorage;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		s3Stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		s3Stub.createContext("/" + BUCKET, this::handle);
+		s3Stub.start();
+		s3ImageStorage = new S3ImageStorage("http://127.0.0.1:" + s3Stub.getAddress().getPort(), "ap-northeast-1",
+				BUCKET, PREFIX, "AKIDEXAMPLE", "secret");
+	}
+
+	@AfterEach
+	void tearDown() {
+		s3Stub.stop(0);
+	}
+
+	@Test
+	void storesListsAndDeletesImages() throws IOException {
+		for (String imageName : List.of("a.jpg", "b.jpg", "b.card.jpg", "c.png", "d.jpg")) {
+			Path source = Files.createTempFile("s3-test-", ".tmp");
+			Files.writeString(source, "image:" + imageName);
+			s3ImageStorage.put(imageName, source);
+			Files.delete(source);
+		}
+
+		assertThat(objects).containsKey(PREFIX + "b.card.jpg");
+		assertThat(s3ImageStorage.exists("c.png")).isTrue();
+		assertThat(s3ImageStorage.exists("missing.jpg")).isFalse();
+		try (InputStream inputStream = s3ImageStorage.open("a.jpg")) {
+			assertThat(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("image:a.jpg");
+		}
+		Resource resource = s3ImageStorage.resource("d.jpg");
+		assertThat(resource.contentLength()).isEqualTo("image:d.jpg".length());
+		assertThat(s3ImageStorage.resource("missing.jpg")).isNull();
+
+		assertThat(s3ImageStorage.list()).containsExactly("a.jpg", "b.card.jpg", "b.jpg", "c.png", "d.jpg");
+
+		s3ImageStorage.delete("b.jpg");
+		s3ImageStorage.delete("missing.jpg");
+		assertThat(s3ImageStorage.list()).containsExactly("a.jpg", "b.card.jpg", "c.png", "d.jpg");
+
+		// すべてのリクエストに署名バージョン4の署名が付いている
+		assertThat(authorizations).allSatisfy(authorization -> assertThat(authorization)
+				.matches("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/\\d{8}/ap-northeast-1/s3/aws4_request, "
+						+ "SignedHeaders=host;x-amz-content-sha256;x-amz-date, Signature=[0-9a-f]{64}"));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		synchronized (authorizations) {
+			authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+		}
+		URI uri = exchange.getRequestURI();
+		String key = uri.getRawPath().substring(("/" + BUCKET).length());
+		key = URLDecoder.decode(key.startsWith("/") ? key.substring(1) : key, StandardCharsets.UTF_8);
+		switch (exchange.getRequestMethod()) {
+		case "PUT" -> {
+			objects.put(key, exchange.getRequestBody().readAllBytes());
+			respond(exchange, 200, new byte[0]);
+		}
+		case "HEAD" -> {
+			byte[] body = objects.get(key);
+			if (body == null) {
+				exchange.sendResponseHeaders(404, -1);
+			} else {
+				exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+				exchange.sendResponseHeaders(200, -1);
+			}
+			exchange.close();
+		}
+		case "GET" -> {
+			if (key.isEmpty()) {
+				respond(exchange, 200, list(query(uri)).getBytes(StandardCharsets.UTF_8));
+			} else {
+				byte[] body = objects.get(key);
+				respond(exchange, body == null ? 404 : 200, body == null ? new byte[0] : body);
+			}
+		}
+		case "DELETE" -> {
+			objects.remove(key);
+			respond(exchange, 204, null);
+		}
+		default -> respond(exchange, 405, new byte[0]);
+		}
+	}
+
+	private String list(Map<String, String> query) {
+		String prefix = query.getOrDefault("prefix", "");
+		int start = Integer.parseInt(query.getOrDefault("continuation-token", "0"));
+		List<String> keys = objects.keySet().stream().filter(key -> key.startsWith(prefix)).toList();
+		int end = Math.min(start + LIST_PAGE_SIZE, keys.size());
+		StringBuilder xml = new StringBuilder("<ListBucketResult>");
+		for (String key : keys.subList(start, end)) {
+			xml.append("<Contents><Key>").append(key).append("</Key></Contents>");
+		}
+		xml.append("<IsTruncated>").append(end < keys.size()).append("</IsTruncated>");
+		if (end < keys.size()) {
+			xml.append("<NextContinuationToken>").append(end).append("</NextContinuationToken>");
+		}
+		return xml.append("</ListBucketResult>").toString();
+	}
+
+	private static Map<String, String> query(URI uri) {
+		Map<String, String> query = new TreeMap<>();
+		if (uri.getRawQuery() != null) {
+			for (String parameter : uri.getRawQuery().split("&")) {
+				String[] nameAndValue = parameter.split("=", 2);
+				query.put(URLDecoder.decode(nameAndValue[0], StandardCharsets.UTF_8),
+						nameAndValue.length > 1 ? URLDecoder.decode(nameAndValue[1], StandardCharsets.UTF_8) : "");
+			}
+		}
+		return query;
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.samuraitravel.pricing;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * PricingEngine の累積和による見積もりと、1泊ずつ料金を足し合わせる見積もりを泊数ごとに比較するベンチマーク。
+ *
+ * 週末・繁忙期の割増と連泊割引を設定したうえで、料金カレンダーを作成済みの民宿の見積もりを計測する。
+ * mvn test-compile の後、main メソッドから実行する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingEngineBenchmark {
+	private static final Integer HOUSE_ID = 1;
+	private static final int BASE_PRICE = 8000;
+
+	@Param({ "7", "90", "365" })
+	private int nights;
+
+	private PricingRules pricingRules;
+	private PricingEngine pricingEngine;
+	private LocalDate checkinDate;
+	private LocalDate checkoutDate;
+
+	@Setup
+	public void setUp() {
+		pricingRules = new PricingRules(20, 30, "07-20/08-31,12-28/01-03", 10, 25);
+		pricingEngine = new PricingEngine(pricingRules, 730);
+		checkinDate = LocalDate.now().plusDays(30);
+		checkoutDate = checkinDate.plusDays(nights);
+		// 料金カレンダーの作成は計測に含めない
+		pricingEngine.quote(HOUSE_ID, BASE_PRICE, checkinDate, checkoutDate);
+	}
+
+	@Benchmark
+	public int prefixSum() {
+		return pricingEngine.quote(HOUSE_ID, BASE_PRICE, checkinDate, checkoutDate);
+	}
+
+	@Benchmark
+	public int nightByNight() {
+		long total = 0;
+		for (LocalDate date = checkinDate; date.isBefore(checkoutDate); date = date.plusDays(1)) {
+			total += pricingRules.nightlyRate(BASE_PRICE, date);
+		}
+		return pricingRules.applyLengthOfStayDiscount(total, nights);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(PricingEngineBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,76 @@
+package com.example.samuraitravel.pricing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * PricingRules の1泊ごとの料金（週末・繁忙期の割増）と連泊割引を確認する。
+ */
+class PricingRulesTest {
+	private static final int BASE_PRICE = 10000;
+
+	@Test
+	void peakSeasonWrappingOverNewYearIncludesBothEnds() {
+		PricingRules pricingRules = new PricingRules(0, 50, "12-28/01-03", 0, 0);
+
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 27))).isEqualTo(10000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 28))).isEqualTo(15000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 31))).isEqualTo(15000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2031, 1, 1))).isEqualTo(15000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2031, 1, 3))).isEqualTo(15000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2031, 1, 4))).isEqualTo(10000);
+		// 年をまたがない期間の外側（夏）は通常料金
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2031, 7, 1))).isEqualTo(10000);
+	}
+
+	@Test
+	void peakSeasonsWithinOneYearAndMultipleSeasons() {
+		PricingRules pricingRules = new PricingRules(0, 20, "04-29/05-05, 08-10/08-16", 0, 0);
+
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 4, 28))).isEqualTo(10000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 5, 5))).isEqualTo(12000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 5, 6))).isEqualTo(10000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 8, 10))).isEqualTo(12000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 31))).isEqualTo(10000);
+	}
+
+	@Test
+	void weekendAndPeakSurchargesAreAdded() {
+		PricingRules pricingRules = new PricingRules(20, 50, "12-28/01-03", 0, 0);
+
+		// 2030-12-27 は金曜（週末のみ）、12-28 は土曜（週末 + 繁忙期）、12-29・12-30 は日曜・月曜（繁忙期のみ）
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 27))).isEqualTo(12000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 28))).isEqualTo(17000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 29))).isEqualTo(15000);
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2030, 12, 30))).isEqualTo(15000);
+		// 日曜の夜は週末料金にしない
+		assertThat(pricingRules.nightlyRate(BASE_PRICE, LocalDate.of(2031, 1, 5))).isEqualTo(10000);
+	}
+
+	@Test
+	void lengthOfStayDiscountsDoNotStack() {
+		PricingRules pricingRules = new PricingRules(0, 0, "", 10, 25);
+
+		assertThat(pricingRules.applyLengthOfStayDiscount(60000, 6)).isEqualTo(60000);
+		assertThat(pricingRules.applyLengthOfStayDiscount(70000, 7)).isEqualTo(63000);
+		assertThat(pricingRules.applyLengthOfStayDiscount(270000, 27)).isEqualTo(243000);
+		// 28泊以上は月割引だけをかけ、週割引とは重ねない
+		assertThat(pricingRules.applyLengthOfStayDiscount(280000, 28)).isEqualTo(210000);
+	}
+
+	@Test
+	void discountAppliesToTheSurchargedTotal() {
+		PricingRules pricingRules = new PricingRules(20, 0, "", 10, 0);
+
+		// 2030-01-04（金）から7泊: 金・土の2泊が割増
+		long total = 0;
+		for (LocalDate date = LocalDate.of(2030, 1, 4); date.isBefore(LocalDate.of(2030, 1, 11)); date = date.plusDays(1)) {
+			total += pricingRules.nightlyRate(BASE_PRICE, date);
+		}
+		assertThat(total).isEqualTo(74000);
+		assertThat(pricingRules.applyLengthOfStayDiscount(total, 7)).isEqualTo(66600);
+	}
+}
@@ -0,0 +1,66 @@
+package com.example.samuraitravel.pricing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * RateCalendar の累積和による合計と、範囲（horizon）の境界での扱いを確認する。
+ */
+class RateCalendarTest {
+	private static final int BASE_PRICE = 10000;
+	private static final LocalDate START_DATE = LocalDate.of(2030, 12, 20);
+	private static final int DAYS = 30;
+
+	private final PricingRules pricingRules = new PricingRules(20, 50, "12-28/01-03", 10, 25);
+	private final RateCalendar rateCalendar = RateCalendar.build(pricingRules, BASE_PRICE, START_DATE, DAYS);
+
+	@Test
+	void totalMatchesNightlySumAcrossNewYear() {
+		LocalDate checkinDate = LocalDate.of(2030, 12, 26);
+		LocalDate checkoutDate = LocalDate.of(2031, 1, 6);
+
+		assertThat(rateCalendar.total(checkinDate, checkoutDate)).isEqualTo(sumNightly(checkinDate, checkoutDate));
+	}
+
+	@Test
+	void horizonBoundary() {
+		LocalDate lastCheckout = START_DATE.plusDays(DAYS);
+
+		// 最後の夜（開始日 + DAYS - 1）まではカレンダーで求まる
+		assertThat(rateCalendar.total(START_DATE, lastCheckout)).isEqualTo(sumNightly(START_DATE, lastCheckout));
+		assertThat(rateCalendar.total(lastCheckout.minusDays(1), lastCheckout))
+				.isEqualTo(pricingRules.nightlyRate(BASE_PRICE, lastCheckout.minusDays(1)));
+		// 範囲外の夜を含む期間・開始日より前のチェックインは -1
+		assertThat(rateCalendar.total(lastCheckout.minusDays(1), lastCheckout.plusDays(1))).isEqualTo(-1);
+		assertThat(rateCalendar.total(START_DATE.minusDays(1), START_DATE.plusDays(1))).isEqualTo(-1);
+		// チェックアウト日がチェックイン日より前の場合も -1、同じ日は0泊
+		assertThat(rateCalendar.total(START_DATE.plusDays(2), START_DATE.plusDays(1))).isEqualTo(-1);
+		assertThat(rateCalendar.total(START_DATE.plusDays(1), START_DATE.plusDays(1))).isZero();
+	}
+
+	@Test
+	void engineQuotesStaysBeyondTheHorizonNightByNight() {
+		int horizonDays = 10;
+		PricingEngine pricingEngine = new PricingEngine(pricingRules, horizonDays);
+		LocalDate today = LocalDate.now();
+
+		// 範囲内の期間と、範囲の終わりをまたぐ期間（1泊ずつ足し合わせる）のどちらも同じ料金の決め方で求まる
+		LocalDate inside = today.plusDays(horizonDays);
+		assertThat(pricingEngine.quote(1, BASE_PRICE, today, inside))
+				.isEqualTo(pricingRules.applyLengthOfStayDiscount(sumNightly(today, inside), horizonDays));
+		LocalDate beyond = today.plusDays(horizonDays + 20);
+		assertThat(pricingEngine.quote(1, BASE_PRICE, today.plusDays(5), beyond))
+				.isEqualTo(pricingRules.applyLengthOfStayDiscount(sumNightly(today.plusDays(5), beyond), 25));
+	}
+
+	private long sumNightly(LocalDate checkinDate, LocalDate checkoutDate) {
+		long total = 0;
+		for (LocalDate date = checkinDate; date.isBefore(checkoutDate); date = date.plusDays(1)) {
+			total += pricingRules.nightlyRate(BASE_PRICE, date);
+		}
+		return total;
+	}
+}
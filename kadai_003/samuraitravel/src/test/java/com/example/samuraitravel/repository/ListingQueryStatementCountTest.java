@@ -0,0 +1,188 @@
+package com.example.samuraitravel.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.samuraitravel.entity.Favorite;
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.Reservation;
+import com.example.samuraitravel.entity.Review;
+import com.example.samuraitravel.entity.Role;
+import com.example.samuraitravel.entity.User;
+
+/**
+ * レビュー・お気に入り・予約の一覧ページのクエリが、行数によらず決まった数のSQLで済むことを
+ * Hibernateの統計情報で確認する（投稿者・民宿を行ごとに読み込む N+1 が起きていないこと）。
+ */
+@DataJpaTest(properties = {
+		"spring.sql.init.mode=never",
+		"spring.jpa.properties.hibernate.generate_statistics=true" })
+class ListingQueryStatementCountTest {
+	private static final int ROW_COUNT = 4;
+	private static final Pageable FIRST_PAGE = PageRequest.of(0, ROW_COUNT - 1);
+
+	@Autowired
+	private TestEntityManager testEntityManager;
+
+	@Autowired
+	private ReviewRepository reviewRepository;
+
+	@Autowired
+	private FavoriteRepository favoriteRepository;
+
+	@Autowired
+	private ReservationRepository reservationRepository;
+
+	private Statistics statistics;
+	private House house;
+	private User user;
+
+	@BeforeEach
+	void setUp() {
+		Role role = new Role();
+		role.setName("ROLE_GENERAL");
+		testEntityManager.persist(role);
+
+		// 行ごとに異なるユーザー・民宿にして、関連を個別に読み込むとSQLの数が増えるようにする
+		for (int i = 0; i < ROW_COUNT; i++) {
+			User reviewer = persistUser(role, "user" + i);
+			House otherHouse = persistHouse("house" + i);
+			if (i == 0) {
+				user = reviewer;
+				house = otherHouse;
+			}
+
+			Review review = new Review();
+			review.setHouse(house);
+			review.setUser(reviewer);
+			review.setReviewScore(5);
+			review.setReviewText("review" + i);
+			testEntityManager.persist(review);
+
+			Favorite favorite = new Favorite();
+			favorite.setHouse(otherHouse);
+			favorite.setUser(user);
+			testEntityManager.persist(favorite);
+
+			Reservation reservation = new Reservation();
+			reservation.setHouse(otherHouse);
+			reservation.setUser(user);
+			reservation.setCheckinDate(LocalDate.of(2025, 4, 1));
+			reservation.setCheckoutDate(LocalDate.of(2025, 4, 2));
+			reservation.setNumberOfPeople(2);
+			reservation.setAmount(10000);
+			testEntityManager.persist(reservation);
+		}
+		// created_at はDBの既定値で埋める列のため、テストではまとめて設定する
+		for (String table : List.of("review", "favorites", "reservations")) {
+			testEntityManager.getEntityManager()
+					.createNativeQuery("UPDATE " + table + " SET created_at = CURRENT_TIMESTAMP")
+					.executeUpdate();
+		}
+		testEntityManager.flush();
+		testEntityManager.clear();
+
+		statistics = testEntityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class)
+				.getStatistics();
+	}
+
+	@Test
+	void reviewPageLoadsAuthorsWithSingleSelect() {
+		House reference = testEntityManager.getEntityManager().getReference(House.class, house.getId());
+
+		// データ取得 + 件数取得（COUNT）
+		assertStatementCount(2, () -> reviewRepository.findByHouseOrderByCreatedAtDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> reviewRepository.findSliceByHouseOrderByCreatedAtDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> reviewRepository.findByHouseAfter(reference,
+				java.time.LocalDateTime.now().plusDays(1), Integer.MAX_VALUE, FIRST_PAGE).getContent());
+	}
+
+	@Test
+	void favoritePageLoadsHousesWithSingleSelect() {
+		User reference = testEntityManager.getEntityManager().getReference(User.class, user.getId());
+
+		assertStatementCount(2, () -> favoriteRepository.findByUserOrderByCreatedAtDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> favoriteRepository.findByUserOrderByCreatedAtDescIdDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> favoriteRepository.findByUserAfter(reference,
+				new Timestamp(System.currentTimeMillis() + 86_400_000L), Integer.MAX_VALUE, FIRST_PAGE).getContent());
+	}
+
+	@Test
+	void reservationPageLoadsHousesWithSingleSelect() {
+		User reference = testEntityManager.getEntityManager().getReference(User.class, user.getId());
+
+		assertStatementCount(2, () -> reservationRepository.findByUserOrderByCreatedAtDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> reservationRepository.findByUserOrderByCreatedAtDescIdDesc(reference, FIRST_PAGE).getContent());
+		assertStatementCount(1, () -> reservationRepository.findByUserAfter(reference,
+				new Timestamp(System.currentTimeMillis() + 86_400_000L), Integer.MAX_VALUE, FIRST_PAGE).getContent());
+	}
+
+	@Test
+	void keysetSliceReportsNextPage() {
+		User reference = testEntityManager.getEntityManager().getReference(User.class, user.getId());
+
+		Slice<Favorite> favoriteSlice = favoriteRepository.findByUserOrderByCreatedAtDescIdDesc(reference, FIRST_PAGE);
+
+		assertThat(favoriteSlice.getNumberOfElements()).isEqualTo(ROW_COUNT - 1);
+		assertThat(favoriteSlice.hasNext()).isTrue();
+	}
+
+	// 一覧の取得とテンプレートが参照する関連の読み込みを合わせて、発行されたSQLの数を確認する
+	private <T> void assertStatementCount(long expected, Supplier<List<T>> query) {
+		testEntityManager.clear();
+		statistics.clear();
+
+		List<T> rows = query.get();
+		for (T row : rows) {
+			touchAssociations(row);
+		}
+
+		assertThat(rows).hasSize(ROW_COUNT - 1);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+	}
+
+	private static void touchAssociations(Object row) {
+		if (row instanceof Review review) {
+			review.getUser().getName();
+			review.getHouse().getName();
+		} else if (row instanceof Favorite favorite) {
+			favorite.getHouse().getName();
+			favorite.getUser().getName();
+		} else if (row instanceof Reservation reservation) {
+			reservation.getHouse().getName();
+			reservation.getUser().getName();
+		}
+	}
+
+	private User persistUser(Role role, String name) {
+		User user = new User();
+		user.setName(name);
+		user.setEmail(name + "@example.com");
+		user.setRole(role);
+		user.setEnabled(true);
+		return testEntityManager.persist(user);
+	}
+
+	private House persistHouse(String name) {
+		House house = new House();
+		house.setName(name);
+		house.setPrice(10000);
+		house.setCapacity(2);
+		return testEntityManager.persist(house);
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.samuraitravel.search;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.samuraitravel.entity.House;
+
+/**
+ * HousePriceIndex とリポジトリのクエリ（price <= ? ORDER BY price, id のページ取得と件数取得）を比較するベンチマーク。
+ *
+ * リポジトリ側はMySQLの代わりにインメモリのH2へ、schema.sql と同じ (price, id) の複合インデックスを張って
+ * Spring Data JPA が発行するものと同じ形のSQL（データ取得 + COUNT）をJDBCで直接実行する。
+ * H2 は同じパラメーターで繰り返したクエリの結果を再利用してしまうため、OPTIMIZE_REUSE_RESULTS=FALSE で毎回実行させる。
+ * mvn test-compile の後、main メソッドから実行する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HousePriceIndexBenchmark {
+	private static final int PAGE_SIZE = 10;
+
+	@Param({ "10000", "300000" })
+	private int houseCount;
+
+	@Param({ "6000", "9900" })
+	private int maxPrice;
+
+	@Param({ "0", "100" })
+	private int pageNumber;
+
+	private HousePriceIndex housePriceIndex;
+	private Connection connection;
+	private PreparedStatement selectStatement;
+	private PreparedStatement countStatement;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		housePriceIndex = new HousePriceIndex(null);
+		connection = DriverManager.getConnection("jdbc:h2:mem:house_price_" + houseCount + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS houses");
+			statement.execute("CREATE TABLE houses (id INT PRIMARY KEY, price INT NOT NULL, created_at TIMESTAMP NOT NULL)");
+			statement.execute("CREATE INDEX idx_houses_price_id ON houses (price, id)");
+		}
+
+		// 1件ずつ put すると挿入位置より後ろをずらすため O(n^2) になる。起動時と同じくまとめて構築する
+		List<House> houses = new ArrayList<>(houseCount);
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO houses VALUES (?, ?, ?)")) {
+			for (int i = 1; i <= houseCount; i++) {
+				House house = new House();
+				house.setId(i);
+				house.setPrice(5000 + (i * 7919 % 50) * 100);
+				house.setCreatedAt(new Timestamp(1_700_000_000_000L + i));
+				houses.add(house);
+
+				insert.setInt(1, house.getId());
+				insert.setInt(2, house.getPrice());
+				insert.setTimestamp(3, house.getCreatedAt());
+				insert.addBatch();
+				if (i % 10_000 == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+		}
+		housePriceIndex.load(houses);
+
+		selectStatement = connection.prepareStatement(
+				"SELECT id FROM houses WHERE price <= ? ORDER BY price ASC, id ASC LIMIT ? OFFSET ?");
+		countStatement = connection.prepareStatement("SELECT COUNT(id) FROM houses WHERE price <= ?");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Benchmark
+	public void priceIndex(Blackhole blackhole) {
+		blackhole.consume(housePriceIndex.findIdsAtMost(maxPrice, (long) pageNumber * PAGE_SIZE, PAGE_SIZE));
+		blackhole.consume(housePriceIndex.countAtMost(maxPrice));
+	}
+
+	@Benchmark
+	public void repositoryQuery(Blackhole blackhole) throws SQLException {
+		selectStatement.setInt(1, maxPrice);
+		selectStatement.setInt(2, PAGE_SIZE);
+		selectStatement.setInt(3, pageNumber * PAGE_SIZE);
+		List<Integer> houseIds = new ArrayList<>(PAGE_SIZE);
+		try (ResultSet resultSet = selectStatement.executeQuery()) {
+			while (resultSet.next()) {
+				houseIds.add(resultSet.getInt(1));
+			}
+		}
+		blackhole.consume(houseIds);
+
+		countStatement.setInt(1, maxPrice);
+		try (ResultSet resultSet = countStatement.executeQuery()) {
+			resultSet.next();
+			blackhole.consume(resultSet.getLong(1));
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HousePriceIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
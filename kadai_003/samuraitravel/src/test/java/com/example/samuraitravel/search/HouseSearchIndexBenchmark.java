@@ -0,0 +1,101 @@
+package com.example.samuraitravel.search;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.samuraitravel.entity.House;
+
+/**
+ * HouseSearchIndex と LIKE '%キーワード%' 相当の全件走査を比較するベンチマーク。
+ *
+ * 検索対象は民宿名・住所・説明の3項目。
+ *
+ * LIKE検索はインデックスが効かず全行の部分一致判定になるため、同じ件数の民宿に対する
+ * String#contains の全件走査を比較対象とする。
+ * mvn test-compile の後、main メソッドから実行する。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HouseSearchIndexBenchmark {
+	private static final String[] PREFECTURES = { "北海道", "青森県", "東京都", "神奈川県", "京都府", "大阪府", "福岡県", "沖縄県" };
+	private static final String[] TYPES = { "SAMURAIの宿", "ペンション", "ゲストハウス", "民宿", "ロッジ", "山荘", "温泉旅館" };
+
+	private static final String[] DESCRIPTIONS = { "最寄り駅から徒歩10分。自然豊かで閑静な場所にあります。",
+			"源泉かけ流しの温泉付き。長期滞在も可能です。", "ｵｰｼｬﾝﾋﾞｭｰの客室から海を一望できます。" };
+
+	@Param({ "10000", "300000" })
+	private int houseCount;
+
+	@Param({ "東京都", "温泉", "温泉旅館 12", "市町村123丁目" })
+	private String keyword;
+
+	private HouseSearchIndex houseSearchIndex;
+	private List<House> houses;
+
+	@Setup
+	public void setUp() {
+		houseSearchIndex = new HouseSearchIndex(null);
+		houses = new ArrayList<>(houseCount);
+		for (int i = 1; i <= houseCount; i++) {
+			House house = new House();
+			house.setId(i);
+			house.setName(TYPES[i % TYPES.length] + " " + i);
+			house.setAddress(PREFECTURES[i % PREFECTURES.length] + "市町村" + (i % 1000) + "丁目");
+			house.setDescription(DESCRIPTIONS[i % DESCRIPTIONS.length]);
+			house.setPrice(5000 + (i % 50) * 100);
+			house.setCreatedAt(new Timestamp(1_700_000_000_000L + i));
+			houses.add(house);
+			houseSearchIndex.put(house);
+		}
+	}
+
+	@Benchmark
+	public List<Integer> invertedIndex() {
+		return houseSearchIndex.search(keyword, "createdAtDesc");
+	}
+
+	@Benchmark
+	public List<Integer> likeScan() {
+		List<House> hits = new ArrayList<>();
+		for (House house : houses) {
+			if (house.getName().contains(keyword) || house.getAddress().contains(keyword)
+					|| house.getDescription().contains(keyword)) {
+				hits.add(house);
+			}
+		}
+		// ORDER BY created_at DESC 相当
+		hits.sort(Comparator.comparing(House::getCreatedAt).reversed());
+
+		List<Integer> houseIds = new ArrayList<>(hits.size());
+		for (House house : hits) {
+			houseIds.add(house.getId());
+		}
+		return houseIds;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HouseSearchIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.samuraitravel.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.samuraitravel.entity.OutboxEvent;
+import com.example.samuraitravel.event.OutboxDeliveryException;
+import com.example.samuraitravel.event.OutboxEventHandler;
+import com.example.samuraitravel.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * OutboxRelay が取り出したイベントを送信済み・再試行待ちにする扱いを、実際のトランザクションとDB（H2）で確認する。
+ * 一部のイベントだけを届けられなかった場合はそのイベントだけを再試行し、期限の切れた送信中のイベントは取り出し直す。
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Import({ OutboxService.class, SimpleMeterRegistry.class })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxRelayTest {
+	@Autowired
+	private OutboxEventRepository outboxEventRepository;
+	@Autowired
+	private OutboxService outboxService;
+
+	private final List<Integer> handledReservationIds = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		outboxEventRepository.deleteAll();
+	}
+
+	@Test
+	void onlyUndeliveredEventsAreRetried() {
+		OutboxEvent delivered = append(1);
+		OutboxEvent undelivered = append(2);
+		OutboxEvent otherDelivered = append(3);
+
+		relay(outboxEvents -> {
+			outboxEvents.forEach(outboxEvent -> handledReservationIds.add(outboxEvent.getReservationId()));
+			throw new OutboxDeliveryException(Set.of(undelivered.getId()), new IllegalStateException("550"));
+		});
+
+		assertThat(handledReservationIds).containsExactlyInAnyOrder(1, 2, 3);
+		assertThat(reload(delivered).getStatus()).isEqualTo(OutboxEvent.DONE);
+		assertThat(reload(otherDelivered).getStatus()).isEqualTo(OutboxEvent.DONE);
+		OutboxEvent retried = reload(undelivered);
+		assertThat(retried.getStatus()).isEqualTo(OutboxEvent.PENDING);
+		assertThat(retried.getAttempts()).isEqualTo(1);
+		assertThat(retried.getNextAttemptAt()).isAfter(Timestamp.from(Instant.now()));
+		assertThat(retried.getLastError()).contains(OutboxDeliveryException.class.getName());
+	}
+
+	@Test
+	void allEventsAreRetriedWhenTheHandlerFails() {
+		OutboxEvent first = append(1);
+		OutboxEvent second = append(2);
+
+		relay(outboxEvents -> {
+			throw new IllegalStateException("SMTPサーバーに接続できません");
+		});
+
+		assertThat(reload(first).getStatus()).isEqualTo(OutboxEvent.PENDING);
+		assertThat(reload(second).getStatus()).isEqualTo(OutboxEvent.PENDING);
+		assertThat(reload(second).getAttempts()).isEqualTo(1);
+	}
+
+	@Test
+	void processingEventsAreReclaimedOnlyAfterTheLeaseExpires() {
+		OutboxEvent expired = append(1);
+		OutboxEvent leased = append(2);
+		markProcessing(expired, Instant.now().minusSeconds(60));
+		markProcessing(leased, Instant.now().plusSeconds(60));
+
+		relay(outboxEvents -> outboxEvents.forEach(
+				outboxEvent -> handledReservationIds.add(outboxEvent.getReservationId())));
+
+		assertThat(handledReservationIds).containsExactly(1);
+		assertThat(reload(expired).getStatus()).isEqualTo(OutboxEvent.DONE);
+		assertThat(reload(leased).getStatus()).isEqualTo(OutboxEvent.PROCESSING);
+	}
+
+	private void relay(Handler handler) {
+		OutboxEventHandler outboxEventHandler = new OutboxEventHandler() {
+			@Override
+			public boolean supports(String eventType) {
+				return OutboxEvent.RESERVATION_CREATED.equals(eventType);
+			}
+
+			@Override
+			public void handle(List<OutboxEvent> outboxEvents) throws Exception {
+				handler.handle(outboxEvents);
+			}
+		};
+		new OutboxRelay(outboxService, List.of(outboxEventHandler), new SimpleMeterRegistry(), 50).relayPending();
+	}
+
+	private OutboxEvent append(Integer reservationId) {
+		OutboxEvent outboxEvent = new OutboxEvent();
+		outboxEvent.setEventType(OutboxEvent.RESERVATION_CREATED);
+		outboxEvent.setReservationId(reservationId);
+		return outboxEventRepository.save(outboxEvent);
+	}
+
+	private void markProcessing(OutboxEvent outboxEvent, Instant lockedUntil) {
+		OutboxEvent saved = reload(outboxEvent);
+		saved.setStatus(OutboxEvent.PROCESSING);
+		saved.setAttempts(1);
+		saved.setLockedUntil(Timestamp.from(lockedUntil));
+		outboxEventRepository.save(saved);
+	}
+
+	private OutboxEvent reload(OutboxEvent outboxEvent) {
+		return outboxEventRepository.findById(outboxEvent.getId()).orElseThrow();
+	}
+
+	private interface Handler {
+		void handle(List<OutboxEvent> outboxEvents) throws Exception;
+	}
+}
@@ -0,0 +1,229 @@
+package com.example.samuraitravel.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.samuraitravel.availability.AvailabilityCalendar;
+import com.example.samuraitravel.availability.HouseLocks;
+import com.example.samuraitravel.entity.House;
+import com.example.samuraitravel.entity.Role;
+import com.example.samuraitravel.entity.User;
+import com.example.samuraitravel.pricing.PricingEngine;
+import com.example.samuraitravel.repository.HouseRepository;
+import com.example.samuraitravel.repository.OutboxEventRepository;
+import com.example.samuraitravel.repository.ReservationRepository;
+import com.example.samuraitravel.repository.RoleRepository;
+import com.example.samuraitravel.repository.StripeProcessedEventRepository;
+import com.example.samuraitravel.repository.UserRepository;
+import com.example.samuraitravel.service.ReservationService.CreateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 多数のスレッドから同時に予約を登録しても、同じ民宿の重複する宿泊期間は1件しか登録されず、
+ * 別の民宿や重複しない期間の予約はすべて登録されることを、実際のトランザクションとDB（H2）で確認する。
+ * 民宿ごとのロックと空室カレンダーを別々に持つ2つのインスタンス（複数台のサーバー）から登録した場合も確認する。
+ */
+@DataJpaTest(properties = "spring.sql.init.mode=never")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReservationServiceConcurrencyTest {
+	private static final int THREAD_COUNT = 16;
+	private static final int HOUSE_COUNT = 8;
+	private static final LocalDate CHECKIN_DATE = LocalDate.now().plusDays(30);
+
+	@Autowired
+	private ReservationRepository reservationRepository;
+	@Autowired
+	private HouseRepository houseRepository;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private RoleRepository roleRepository;
+	@Autowired
+	private StripeProcessedEventRepository stripeProcessedEventRepository;
+	@Autowired
+	private OutboxEventRepository outboxEventRepository;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final List<Integer> houseIds = new ArrayList<>();
+	private Integer userId;
+	private ExecutorService executorService;
+	private ReservationService reservationService;
+	private ReservationService otherServerReservationService;
+
+	@BeforeEach
+	void setUp() {
+		Role role = new Role();
+		role.setName("ROLE_GENERAL");
+		User user = new User();
+		user.setName("user");
+		user.setEmail("user@example.com");
+		user.setRole(roleRepository.save(role));
+		userId = userRepository.save(user).getId();
+		for (int i = 0; i < HOUSE_COUNT; i++) {
+			House house = new House();
+			house.setName("house" + i);
+			house.setPrice(10000);
+			house.setCapacity(4);
+			houseIds.add(houseRepository.save(house).getId());
+		}
+
+		reservationService = reservationService();
+		otherServerReservationService = reservationService();
+		executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executorService.shutdownNow();
+		outboxEventRepository.deleteAll();
+		stripeProcessedEventRepository.deleteAll();
+		reservationRepository.deleteAll();
+		houseRepository.deleteAll();
+		userRepository.deleteAll();
+		roleRepository.deleteAll();
+	}
+
+	@Test
+	void overlappingReservationsForOneHouseAreRegisteredOnlyOnce() throws Exception {
+		// 全スレッドが同じ民宿の、1日ずつずれた3泊の予約を同時に登録する
+		List<Callable<CreateResult>> tasks = new ArrayList<>();
+		for (int i = 0; i < THREAD_COUNT * 4; i++) {
+			int offset = i % 4;
+			tasks.add(() -> create(reservationService, 0, CHECKIN_DATE.plusDays(offset),
+					CHECKIN_DATE.plusDays(offset + 3)));
+		}
+
+		long registered = countRegistered(runConcurrently(tasks));
+
+		// 重複しないのは [0, 3) と [3, 6) の組み合わせだけなので、登録されるのは1件か2件
+		assertThat(registered).isEqualTo(reservationRepository.count());
+		assertThat(registered).isBetween(1L, 2L);
+		assertNoOverlaps();
+	}
+
+	@Test
+	void overlappingReservationsFromTwoServersAreRegisteredOnlyOnce() throws Exception {
+		// 2台のサーバーから交互に、同じ民宿の同じ期間の予約を同時に登録する（JVM内のロックでは直列化されない）
+		List<Callable<CreateResult>> tasks = new ArrayList<>();
+		for (int i = 0; i < THREAD_COUNT * 2; i++) {
+			ReservationService service = i % 2 == 0 ? reservationService : otherServerReservationService;
+			tasks.add(() -> create(service, 0, CHECKIN_DATE, CHECKIN_DATE.plusDays(2)));
+		}
+
+		long registered = countRegistered(runConcurrently(tasks));
+
+		assertThat(registered).isEqualTo(1);
+		assertThat(reservationRepository.count()).isEqualTo(1);
+		// 登録できなかった支払いは返金するまで処理済みとして記録しない
+		assertThat(stripeProcessedEventRepository.count()).isEqualTo(1);
+	}
+
+	@Test
+	void reservationsForDifferentHousesAreAllRegistered() throws Exception {
+		// 民宿ごとに同じ期間の予約を1件ずつ、全スレッドから同時に登録する
+		List<Callable<CreateResult>> tasks = new ArrayList<>();
+		for (int house = 0; house < HOUSE_COUNT; house++) {
+			int index = house;
+			tasks.add(() -> create(reservationService, index, CHECKIN_DATE, CHECKIN_DATE.plusDays(2)));
+		}
+		// 同じ民宿・同じ期間の予約をもう一度ずつ登録する（すべて重複になる）
+		tasks.addAll(new ArrayList<>(tasks));
+
+		long registered = countRegistered(runConcurrently(tasks));
+
+		assertThat(registered).isEqualTo(HOUSE_COUNT);
+		assertThat(reservationRepository.count()).isEqualTo(HOUSE_COUNT);
+		assertNoOverlaps();
+	}
+
+	// 1台のサーバー分の ReservationService（民宿ごとのロックと空室カレンダーはインスタンスごとに持つ）
+	private ReservationService reservationService() {
+		AvailabilityCalendar availabilityCalendar = new AvailabilityCalendar(reservationRepository);
+		availabilityCalendar.rebuild();
+		return new ReservationService(reservationRepository, houseRepository, userRepository, availabilityCalendar,
+				new HouseLocks(4), new TransactionTemplate(transactionManager),
+				new StripeProcessedEventService(stripeProcessedEventRepository), mock(PricingEngine.class),
+				new OutboxService(outboxEventRepository, new SimpleMeterRegistry(), 8, 30, 300, 7));
+	}
+
+	// すべてのタスクを一斉に開始し、結果を待つ
+	private List<Future<CreateResult>> runConcurrently(List<Callable<CreateResult>> tasks) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Callable<CreateResult>> gatedTasks = new ArrayList<>();
+		for (Callable<CreateResult> task : tasks) {
+			gatedTasks.add(() -> {
+				start.await();
+				return task.call();
+			});
+		}
+		List<Future<CreateResult>> futures = new ArrayList<>();
+		for (Callable<CreateResult> task : gatedTasks) {
+			futures.add(executorService.submit(task));
+		}
+		start.countDown();
+		return futures;
+	}
+
+	private static long countRegistered(List<Future<CreateResult>> futures) throws Exception {
+		long registered = 0;
+		for (Future<CreateResult> future : futures) {
+			if (future.get() == CreateResult.CREATED) {
+				registered++;
+			}
+		}
+		return registered;
+	}
+
+	// 登録された予約のうち、同じ民宿で宿泊期間が重なるものがない
+	private void assertNoOverlaps() {
+		List<Object[]> stays = reservationRepository.findStaysCheckingOutAfter(LocalDate.MIN);
+		for (int i = 0; i < stays.size(); i++) {
+			for (int j = i + 1; j < stays.size(); j++) {
+				Object[] a = stays.get(i);
+				Object[] b = stays.get(j);
+				boolean sameHouse = a[0].equals(b[0]);
+				boolean overlaps = ((LocalDate) a[1]).isBefore((LocalDate) b[2])
+						&& ((LocalDate) b[1]).isBefore((LocalDate) a[2]);
+				assertThat(sameHouse && overlaps).as("民宿%d の %s〜%s と %s〜%s が重複", a[0], a[1], a[2], b[1], b[2])
+						.isFalse();
+			}
+		}
+	}
+
+	private CreateResult create(ReservationService service, int houseIndex, LocalDate checkinDate,
+			LocalDate checkoutDate) {
+		String id = UUID.randomUUID().toString();
+		return service.create(metadata(houseIds.get(houseIndex), userId, checkinDate, checkoutDate), "evt_" + id,
+				"pi_" + id);
+	}
+
+	private static Map<String, String> metadata(int houseId, int userId, LocalDate checkinDate,
+			LocalDate checkoutDate) {
+		return Map.of("houseId", String.valueOf(houseId), "userId", String.valueOf(userId), "checkinDate",
+				checkinDate.toString(), "checkoutDate", checkoutDate.toString(), "numberOfPeople", "2", "amount",
+				"10000");
+	}
+}
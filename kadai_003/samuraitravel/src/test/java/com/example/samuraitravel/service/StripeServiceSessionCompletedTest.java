@@ -0,0 +1,188 @@
+package com.example.samuraitravel.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.samuraitravel.cache.CheckoutSessionCache;
+import com.example.samuraitravel.stripe.StripeGateway;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * checkout.session.completed の処理で、セッションに予約情報がある場合は Stripe API を呼ばずに予約を登録し、
+ * ない場合だけ Session.retrieve で取得し直すこと、宿泊期間が重複した支払いは返金してから処理済みにすることを、
+ * ローカルに立てた Stripe API のスタブで確認する。
+ * スタブは応答を STUB_LATENCY_MILLIS だけ遅らせ、外部への往復1回分の時間を再現する。
+ */
+class StripeServiceSessionCompletedTest {
+	private static final int STUB_LATENCY_MILLIS = 20;
+	private static final int EVENT_COUNT = 20;
+	private static final String METADATA = "{\"houseId\":\"1\",\"userId\":\"2\",\"checkinDate\":\"2030-01-10\","
+			+ "\"checkoutDate\":\"2030-01-12\",\"numberOfPeople\":\"2\",\"amount\":\"20000\"}";
+
+	private final AtomicInteger retrieveCount = new AtomicInteger();
+	private final List<String> refundIdempotencyKeys = new CopyOnWriteArrayList<>();
+	private volatile int refundStatus = 200;
+	private HttpServer stripeStub;
+	private MeterRegistry meterRegistry;
+	private StripeGateway stripeGateway;
+	private ReservationService reservationService;
+	private StripeProcessedEventService stripeProcessedEventService;
+	private StripeService stripeService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		// セッションの取得（GET /v1/checkout/sessions/{id}）に、PaymentIntentを展開した応答を返すスタブ
+		stripeStub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stripeStub.createContext("/v1/checkout/sessions/", this::retrieveSession);
+		stripeStub.createContext("/v1/refunds", this::createRefund);
+		stripeStub.start();
+		meterRegistry = new SimpleMeterRegistry();
+		stripeGateway = new StripeGateway("sk_test_stub", "http://127.0.0.1:" + stripeStub.getAddress().getPort(),
+				1000, 1000, 0, meterRegistry);
+
+		reservationService = mock(ReservationService.class);
+		when(reservationService.create(any(), any(), any())).thenReturn(ReservationService.CreateResult.CREATED);
+		stripeProcessedEventService = mock(StripeProcessedEventService.class);
+		stripeService = new StripeService(reservationService, stripeProcessedEventService,
+				stripeGateway, new CheckoutSessionCache(600, meterRegistry));
+
+		// クラスの読み込みや接続の確立を計測に含めないよう、両方の経路を一度ずつ通しておく
+		stripeService.processSessionCompleted(event("evt_warmup_1", true));
+		stripeService.processSessionCompleted(event("evt_warmup_2", false));
+		clearInvocations(reservationService);
+		retrieveCount.set(0);
+	}
+
+	@AfterEach
+	void tearDown() {
+		stripeStub.stop(0);
+	}
+
+	@Test
+	void sessionMetadataIsUsedWithoutRetrievingTheSession() throws Exception {
+		processEvents(true);
+
+		// Stripe API を呼ばないため、スタブの遅延を1回も待たない
+		assertThat(retrieveCount).hasValue(0);
+		verify(reservationService, times(EVENT_COUNT)).create(eq(expectedMetadata()), any(), eq("pi_test"));
+	}
+
+	@Test
+	void sessionIsRetrievedWhenMetadataIsMissing() throws Exception {
+		long elapsed = processEvents(false);
+
+		assertThat(retrieveCount).hasValue(EVENT_COUNT);
+		verify(reservationService, times(EVENT_COUNT)).create(eq(expectedMetadata()), any(), eq("pi_test"));
+		assertThat(elapsed).isGreaterThanOrEqualTo(EVENT_COUNT * STUB_LATENCY_MILLIS * 1_000_000L);
+		// 準備で通した1件を含め、取得の所要時間が操作ごとのタイマーに記録されている
+		assertThat(meterRegistry.get("samuraitravel.stripe.requests").tag("operation", "checkout.session.retrieve")
+				.tag("outcome", "success").timer().count()).isEqualTo(EVENT_COUNT + 1);
+	}
+
+	@Test
+	void conflictingPaymentIsRefundedBeforeTheEventIsRecorded() throws Exception {
+		when(reservationService.create(any(), any(), any())).thenReturn(ReservationService.CreateResult.CONFLICT);
+
+		stripeService.processSessionCompleted(event("evt_conflict", true));
+
+		assertThat(refundIdempotencyKeys).containsExactly("refund-pi_test");
+		verify(stripeProcessedEventService).record("evt_conflict", "pi_test");
+	}
+
+	@Test
+	void failedRefundIsRetriedWithoutRecordingTheEvent() throws Exception {
+		when(reservationService.create(any(), any(), any())).thenReturn(ReservationService.CreateResult.CONFLICT);
+		refundStatus = 500;
+
+		// 例外を投げれば、Webhookの受信キューが同じイベントを再試行する
+		assertThatThrownBy(() -> stripeService.processSessionCompleted(event("evt_conflict", true)))
+				.isInstanceOf(StripeException.class);
+		verify(stripeProcessedEventService, never()).record(any(), any());
+
+		refundStatus = 200;
+		stripeService.processSessionCompleted(event("evt_conflict", true));
+		// 再試行でも同じ冪等キーで返金するため、Stripe側で二重に返金されない
+		assertThat(refundIdempotencyKeys).containsExactly("refund-pi_test", "refund-pi_test");
+		verify(stripeProcessedEventService).record("evt_conflict", "pi_test");
+	}
+
+	// イベントを EVENT_COUNT 件処理し、かかった時間（ナノ秒）を返す
+	private long processEvents(boolean withMetadata) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			stripeService.processSessionCompleted(event("evt_test_" + i, withMetadata));
+		}
+		return System.nanoTime() - start;
+	}
+
+	private Event event(String eventId, boolean withMetadata) {
+		String session = "{\"id\":\"cs_test\",\"object\":\"checkout.session\",\"payment_intent\":\"pi_test\""
+				+ (withMetadata ? ",\"metadata\":" + METADATA : ",\"metadata\":{}") + "}";
+		String payload = "{\"id\":\"" + eventId + "\",\"object\":\"event\",\"api_version\":\"" + Stripe.API_VERSION
+				+ "\",\"type\":\"checkout.session.completed\",\"data\":{\"object\":" + session + "}}";
+		return stripeGateway.parseEvent(payload);
+	}
+
+	private void retrieveSession(HttpExchange exchange) throws IOException {
+		retrieveCount.incrementAndGet();
+		try {
+			Thread.sleep(STUB_LATENCY_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		byte[] body = ("{\"id\":\"cs_test\",\"object\":\"checkout.session\",\"metadata\":{},"
+				+ "\"payment_intent\":{\"id\":\"pi_test\",\"object\":\"payment_intent\",\"metadata\":" + METADATA + "}}")
+				.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	private void createRefund(HttpExchange exchange) throws IOException {
+		refundIdempotencyKeys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+		byte[] body = (refundStatus == 200
+				? "{\"id\":\"re_test\",\"object\":\"refund\",\"payment_intent\":\"pi_test\",\"status\":\"succeeded\"}"
+				: "{\"error\":{\"type\":\"api_error\",\"message\":\"stub error\"}}")
+				.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(refundStatus, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	private static Map<String, String> expectedMetadata() {
+		return Map.of("houseId", "1", "userId", "2", "checkinDate", "2030-01-10", "checkoutDate", "2030-01-12",
+				"numberOfPeople", "2", "amount", "20000");
+	}
+}